@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2025 Parisi Alessandro - alessandro.parisi406@gmail.com
+ * This file is part of ImCache (https://github.com/palexdev/imcache)
+ *
+ * ImCache is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * ImCache is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ImCache. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.palexdev.imcache.cache;
+
+import java.awt.image.BufferedImage;
+import java.util.Optional;
+
+import io.github.palexdev.imcache.core.ImCache;
+import io.github.palexdev.imcache.core.ImImage;
+import io.github.palexdev.imcache.core.ImRequest;
+import io.github.palexdev.imcache.utils.ImageUtils;
+
+/// A cache for decoded images ([BufferedImage]), meant to be used as a second tier next to the cache of encoded images,
+/// see [ImCache#bitmapConfig(java.util.function.Supplier)].
+///
+/// Decoding (PNG, JPEG, ...) is often the most expensive part of applying transforms to an image. [#decode(ImImage)]
+/// returns the bitmap previously decoded from the same data, if still cached, and decodes and caches it otherwise.
+/// It's used by [ImRequest] before applying transforms, and by [ImImage#asImage()] and [ImImage#sharedImage()].
+///
+/// Bitmaps are keyed by [#key(ImImage)], which accounts for the image's content with a 128-bit hash, so that the
+/// original and the transformed versions of the same resource are cached separately. The hash is computed once per
+/// image and kept on it, see [ImImage#contentKey()].
+///
+/// Entries are weighed by their size in memory ([Weigher#bitmapSize()]), which is usually much bigger than the
+/// encoded data, so you probably want to bound this cache with [#setMaxWeight(long)], independently of the other cache.
+///
+/// _Note:_
+///
+/// Bitmaps returned by this cache are shared, and they must not be modified.
+public class BitmapCache extends ImgCache<BufferedImage> {
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    public BitmapCache() {
+        super(Weigher.bitmapSize());
+    }
+
+    public BitmapCache(long maxWeight) {
+        this();
+        // The cache is empty, nothing to evict
+        this.maxWeight = maxWeight;
+    }
+
+    //================================================================================
+    // Static Methods
+    //================================================================================
+
+    /// @return the key for the given image's bitmap, made of the 128-bit hash of its data ([ImImage#contentKey()]) and
+    /// its size
+    public static String key(ImImage img) {
+        return "%s-%d".formatted(img.contentKey(), img.size());
+    }
+
+    //================================================================================
+    // Methods
+    //================================================================================
+
+    /// @return the bitmap decoded from the given image. If it's not cached, decodes it with [ImageUtils#toImage(Object)]
+    /// and caches it under [#key(ImImage)]
+    public BufferedImage decode(ImImage img) {
+        String key = key(img);
+        Optional<BufferedImage> cached = get(key);
+        if (cached.isPresent()) return cached.get();
+        BufferedImage bitmap = ImageUtils.toImage(img.buffer());
+        if (bitmap != null) put(key, bitmap);
+        return bitmap;
+    }
+
+    //================================================================================
+    // Overridden Methods
+    //================================================================================
+
+    /// Decodes the given image with [ImageUtils#toImage(Object)] and caches the bitmap under the given id.
+    @Override
+    public void store(String id, ImImage img) {
+        BufferedImage bitmap = ImageUtils.toImage(img.buffer());
+        if (bitmap != null) put(id, bitmap);
+    }
+
+    /// Encodes the bitmap mapped to the given id as a `png`. Since bitmaps don't retain their source, the image's url
+    /// is `null`.
+    @Override
+    public Optional<ImImage> getImage(String id) {
+        return get(id).map(b -> ImImage.wrap(null, ImageUtils.toBytes("png", b)));
+    }
+
+    /// Variant of [#getImage(String)] that looks up the bitmap by [Key], without recording the lookup in the
+    /// statistics, see [ImgCache#probeImage(Key)].
+    @Override
+    public Optional<ImImage> probeImage(Key key) {
+        return probe(key).map(b -> ImImage.wrap(null, ImageUtils.toBytes("png", b)));
+    }
+
+    /// Untracked variant of [#getImage(String)], see [ImgCache#peekImage(String)].
+    @Override
+    protected Optional<ImImage> peekImage(String id) {
+        BufferedImage bitmap = contains(id) ? peek(id) : null;
+        return Optional.ofNullable(bitmap).map(b -> ImImage.wrap(null, ImageUtils.toBytes("png", b)));
+    }
+}
@@ -19,13 +19,15 @@
 package io.github.palexdev.imcache.cache;
 
 import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 
 /// Generic cache API to store items by a unique string key, often referred to as 'id' (see also [WithID]).
 ///
 /// Features:
-/// 1) Allows checking, getting, storing and removing entries
+/// 1) Allows checking, getting, storing and removing entries, also in bulk
 /// 2) Allows removing the oldest entry
 /// 3) Can be limited to a certain capacity beyond which oldest entries are removed
 ///
@@ -67,6 +69,34 @@ public interface Cache<V> {
         return remove(id.id());
     }
 
+    /// @return the cached values mapped to the given ids, ids that are not cached are not included. By default, this
+    /// simply calls [#get(String)] for each id, implementations may offer a more efficient version
+    default Map<String, V> getAll(Collection<String> ids) {
+        Map<String, V> values = new LinkedHashMap<>();
+        for (String id : ids) {
+            get(id).ifPresent(v -> values.put(id, v));
+        }
+        return values;
+    }
+
+    /// Stores all the given entries. By default, this simply calls [#store(String, V)] for each entry, implementations
+    /// may offer a more efficient version
+    default void storeAll(Map<String, ? extends V> values) {
+        values.forEach(this::store);
+    }
+
+    /// Removes all the given ids from the cache. By default, this simply calls [#remove(String)] for each id,
+    /// implementations may offer a more efficient version
+    ///
+    /// @return the number of entries that were removed
+    default int removeAll(Collection<String> ids) {
+        int removed = 0;
+        for (String id : ids) {
+            if (remove(id)) removed++;
+        }
+        return removed;
+    }
+
     /// Implementations should define the logic to remove the oldest entry from the cache
     boolean removeOldest();
 
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2025 Parisi Alessandro - alessandro.parisi406@gmail.com
+ * This file is part of ImCache (https://github.com/palexdev/imcache)
+ *
+ * ImCache is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * ImCache is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ImCache. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.palexdev.imcache.cache;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+import io.github.palexdev.imcache.core.ImCache;
+import io.github.palexdev.imcache.core.ImRequest;
+
+/// Immutable snapshot of the statistics of a cache, see [ImgCache#stats()] and [ImCache#stats()].
+///
+/// Lookup, store and removal counts are recorded by [ImgCache]. Loads and their times are recorded by [ImRequest]: a load
+/// happens when a resource is fetched from its source, and its time is split into the [Stage] of the loading process.
+/// Requests also record their own lookups, exactly one hit or miss per request, see [ImCache#stats()].
+/// Note that transforms are applied to cached resources too, so the times of the last three stages also include the
+/// requests that hit the cache.
+///
+/// Snapshots can be combined with [#plus(CacheStats)] and compared with [#minus(CacheStats)], e.g. to measure the
+/// effect of a configuration change over a certain period.
+///
+/// @param hitCount the number of lookups that found a cached value
+/// @param missCount the number of lookups that found nothing (or an expired value)
+/// @param loadSuccessCount the number of resources successfully loaded from their source
+/// @param loadFailureCount the number of resources that failed to load from their source
+/// @param storeCount the number of entries stored (including replacements)
+/// @param bytesStored the total weight of the stored entries, which is in bytes for the default weighers
+/// @param removals the number of removed entries by [RemovalCause]
+/// @param loadTimes the total time spent in each [Stage] of the loading process, in nanoseconds
+public record CacheStats(
+    long hitCount,
+    long missCount,
+    long loadSuccessCount,
+    long loadFailureCount,
+    long storeCount,
+    long bytesStored,
+    Map<RemovalCause, Long> removals,
+    Map<Stage, Long> loadTimes
+) {
+    //================================================================================
+    // Static Properties
+    //================================================================================
+    private static final CacheStats EMPTY = new CacheStats(0, 0, 0, 0, 0, 0, Map.of(), Map.of());
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    public CacheStats {
+        removals = copy(removals, RemovalCause.class);
+        loadTimes = copy(loadTimes, Stage.class);
+    }
+
+    /// @return a snapshot with all the counters set to zero
+    public static CacheStats empty() {
+        return EMPTY;
+    }
+
+    //================================================================================
+    // Methods
+    //================================================================================
+
+    /// @return the number of lookups, hits plus misses
+    public long requestCount() {
+        return hitCount + missCount;
+    }
+
+    /// @return the ratio of lookups that found a cached value, 1.0 if there were no lookups
+    public double hitRate() {
+        long requests = requestCount();
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    /// @return the ratio of lookups that found nothing, 0.0 if there were no lookups
+    public double missRate() {
+        long requests = requestCount();
+        return requests == 0 ? 0.0 : (double) missCount / requests;
+    }
+
+    /// @return the number of loads, successful or not
+    public long loadCount() {
+        return loadSuccessCount + loadFailureCount;
+    }
+
+    /// @return the number of entries removed for the given cause
+    public long removalCount(RemovalCause cause) {
+        return removals.getOrDefault(cause, 0L);
+    }
+
+    /// @return the number of entries evicted by the cache, see [RemovalCause#wasEvicted()]
+    public long evictionCount() {
+        return removals.entrySet().stream()
+            .filter(e -> e.getKey().wasEvicted())
+            .mapToLong(Map.Entry::getValue)
+            .sum();
+    }
+
+    /// @return the total time spent in the given stage of the loading process
+    public Duration loadTime(Stage stage) {
+        return Duration.ofNanos(loadTimes.getOrDefault(stage, 0L));
+    }
+
+    /// @return the total time spent loading resources, all stages included
+    public Duration totalLoadTime() {
+        return Duration.ofNanos(loadTimes.values().stream().mapToLong(Long::longValue).sum());
+    }
+
+    /// @return the average time spent fetching a resource from its source ([Stage#RESOLVE]). The other stages are not
+    /// included, since they are recorded for the requests that hit the cache too, see [#loadTime(Stage)].
+    /// [Duration#ZERO] if there were no loads
+    public Duration averageLoadPenalty() {
+        long loads = loadCount();
+        return loads == 0 ? Duration.ZERO : loadTime(Stage.RESOLVE).dividedBy(loads);
+    }
+
+    /// @return a new snapshot whose counters are the sum of this and the given one
+    public CacheStats plus(CacheStats other) {
+        return combine(other, 1);
+    }
+
+    /// @return a new snapshot whose counters are the difference between this and the given one, never negative
+    public CacheStats minus(CacheStats other) {
+        return combine(other, -1);
+    }
+
+    private CacheStats combine(CacheStats other, int sign) {
+        Map<RemovalCause, Long> removals = new EnumMap<>(RemovalCause.class);
+        for (RemovalCause cause : RemovalCause.values()) {
+            removals.put(cause, sum(removalCount(cause), other.removalCount(cause), sign));
+        }
+        Map<Stage, Long> loadTimes = new EnumMap<>(Stage.class);
+        for (Stage stage : Stage.values()) {
+            loadTimes.put(stage, sum(
+                this.loadTimes.getOrDefault(stage, 0L),
+                other.loadTimes.getOrDefault(stage, 0L),
+                sign
+            ));
+        }
+        return new CacheStats(
+            sum(hitCount, other.hitCount, sign),
+            sum(missCount, other.missCount, sign),
+            sum(loadSuccessCount, other.loadSuccessCount, sign),
+            sum(loadFailureCount, other.loadFailureCount, sign),
+            sum(storeCount, other.storeCount, sign),
+            sum(bytesStored, other.bytesStored, sign),
+            removals,
+            loadTimes
+        );
+    }
+
+    private static long sum(long a, long b, int sign) {
+        return sign > 0 ? a + b : Math.max(0L, a - b);
+    }
+
+    private static <E extends Enum<E>> Map<E, Long> copy(Map<E, Long> map, Class<E> type) {
+        EnumMap<E, Long> copy = new EnumMap<>(type);
+        if (map != null) map.forEach((k, v) -> {
+            if (v != null && v != 0L) copy.put(k, v);
+        });
+        return Collections.unmodifiableMap(copy);
+    }
+
+    //================================================================================
+    // Inner Classes
+    //================================================================================
+
+    /// The stages of loading a resource, see [ImRequest#execute()].
+    public enum Stage {
+        /// Fetching the raw data from the source.
+        RESOLVE,
+
+        /// Converting the raw data to a bitmap, before applying the transforms.
+        DECODE,
+
+        /// Applying the transforms.
+        TRANSFORM,
+
+        /// Converting the transformed bitmap back to raw data.
+        ENCODE,
+    }
+}
@@ -22,11 +22,12 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Arrays;
-import java.util.Comparator;
-import java.util.Optional;
-import java.util.SequencedMap;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
 
+import io.github.palexdev.imcache.cache.policy.AdmissionFilter;
 import io.github.palexdev.imcache.core.ImImage;
 import io.github.palexdev.imcache.exceptions.ImCacheException;
 import io.github.palexdev.imcache.utils.ImageUtils;
@@ -40,6 +41,17 @@ import io.github.palexdev.imcache.utils.ImageUtils;
 /// Methods such as [#store(String, ImImage)] and [#getImage(String)] automatically perform the aforementioned operations
 /// for you, allowing to work directly with images.
 ///
+/// By default, entries are weighed by their file size ([Weigher#fileSize()]), so the cache can be bounded to a disk
+/// budget with [#setMaxWeight(long)].
+///
+/// If a [RemovalListener] is set, the files of removed and replaced entries are moved aside (to a temporary file in the
+/// same directory) rather than deleted, so that the listener can still read them while the entry is stored again.
+/// They are deleted once the listener returns.
+///
+/// Expiration settings (see [ImgCache#setExpireAfterWrite(Duration)]) are honored across restarts, since the
+/// write time of an entry is the last modified time of its file. This means that entries reloaded by [#load(Path)]
+/// can expire immediately.
+///
 /// _Note:_
 ///
 /// When changing the save path, you are also asked to decide what to do with previously cached entries. The behavior is
@@ -70,8 +82,14 @@ public class DiskCache extends ImgCache<File> {
         DISK_AND_MEMORY {
             @Override
             void clear(DiskCache cache) {
-                cache.cache.values().forEach(cache::delete);
-                cache.clear();
+                cache.lock.lock();
+                try {
+                    cache.clearingFiles = true;
+                    cache.clear();
+                } finally {
+                    cache.clearingFiles = false;
+                    cache.lock.unlock();
+                }
             }
         };
 
@@ -81,22 +99,29 @@ public class DiskCache extends ImgCache<File> {
     //================================================================================
     // Properties
     //================================================================================
+    private static final String TEMP_SUFFIX = ".tmp";
     private Path savePath = DEFAULT_CACHE_PATH;
+    private final Set<File> asides = ConcurrentHashMap.newKeySet();
+    private final Map<String, File> replacedFiles = new HashMap<>();
+    private boolean clearingFiles = false;
 
     //================================================================================
     // Constructors
     //================================================================================
     public DiskCache() {
-        super();
+        this(DEFAULT_CACHE_PATH);
     }
 
     public DiskCache(Path savePath) {
+        super(Weigher.fileSize());
         this.savePath = savePath;
     }
 
+    /// @deprecated the cache is not backed by a map anymore, see [ImgCache#ImgCache(SequencedMap)]
+    @Deprecated
     protected DiskCache(SequencedMap<String, File> cache, Path savePath) {
-        super(cache);
-        this.savePath = savePath;
+        this(savePath);
+        seed(cache);
     }
 
     /// Delegates to [#load(Path, int)] with capacity set to [#DEFAULT_CAPACITY].
@@ -110,6 +135,7 @@ public class DiskCache extends ImgCache<File> {
     /// indirectly as [Files][File]. They are deserialized only when requested by [#getImage(String)].
     ///
     /// File names are expected to be valid ids already, so [WithID#generateId(File)] is not used!
+    /// Leftover temporary files (see [#store(String, ImImage)]) are ignored.
     public static DiskCache load(Path loadPath, int capacity) {
         if (loadPath == null || !Files.isDirectory(loadPath)) {
             throw new ImCacheException(
@@ -122,7 +148,7 @@ public class DiskCache extends ImgCache<File> {
 
         try {
             File[] files = Optional.of(loadPath.toFile())
-                .map(f -> f.listFiles(File::isFile))
+                .map(f -> f.listFiles(c -> c.isFile() && !c.getName().endsWith(TEMP_SUFFIX)))
                 .orElse(new File[0]);
             Arrays.stream(files)
                 .sorted(Comparator.comparingLong(File::lastModified))
@@ -154,6 +180,81 @@ public class DiskCache extends ImgCache<File> {
         return true;
     }
 
+    /// Deserializes the given file with [ImageUtils#deserialize(File)].
+    ///
+    /// @throws ImCacheException if the deserialization fails
+    protected ImImage deserialize(File file) {
+        try {
+            return ImageUtils.deserialize(file);
+        } catch (IOException ex) {
+            throw new ImCacheException(
+                "Failed to deserialize image from file %s because: %s"
+                    .formatted(file.getName(), ex.getMessage()),
+                ex
+            );
+        }
+    }
+
+    /// Replacements are only rejected if the new file is too heavy (see [#put(String, Object)]), in which case the cached
+    /// entry is kept. Since the file is moved over the cached one, this must be checked before the move, otherwise the
+    /// entry would be left pointing at a deleted file. Must be called while holding the lock.
+    ///
+    /// @return whether the given temporary file would be rejected as the new value of an already cached id
+    private boolean rejectsReplacement(String id, File tmp) {
+        return peek(id) != null && (capacity <= 0 || weigh(id, tmp) > maxWeight);
+    }
+
+    /// Moves the given temporary file to the given path, which is the final destination of the given id. If the id is
+    /// cached and a [RemovalListener] is set, the cached file is moved aside first (see [#moveAside(File)]), so that
+    /// the listener is notified of the replacement with the old file. Must be called while holding the lock.
+    ///
+    /// @return the moved file
+    private File moveIn(String id, Path tmp, Path path) throws IOException {
+        File old = (removalListener != null) ? peek(id) : null;
+        File aside = (old != null) ? moveAside(old) : null;
+        try {
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            if (aside != null && asides.remove(aside)) {
+                try {
+                    Files.move(aside.toPath(), old.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException suppressed) {
+                    ex.addSuppressed(suppressed);
+                }
+            }
+            throw ex;
+        }
+        if (aside != null) replacedFiles.put(id, aside);
+        return path.toFile();
+    }
+
+    /// Moves the given file to a new temporary file in the same directory, which is deleted by
+    /// [#dispose(String, File, RemovalCause)].
+    ///
+    /// @return the moved file, `null` if the move failed
+    private File moveAside(File file) {
+        Path aside = null;
+        try {
+            aside = Files.createTempFile(file.toPath().getParent(), file.getName(), TEMP_SUFFIX);
+            Files.move(file.toPath(), aside, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            File moved = aside.toFile();
+            asides.add(moved);
+            return moved;
+        } catch (IOException ex) {
+            try {
+                if (aside != null) Files.deleteIfExists(aside);
+            } catch (IOException ignored) {}
+            return null;
+        }
+    }
+
+    /// Deletes the file moved aside by [#moveIn(String, Path, Path)] for the given id, if the replacement wasn't notified
+    /// (e.g. because it was rejected). Must be called while holding the lock.
+    private void dropAside(String id) {
+        File aside = replacedFiles.remove(id);
+        if (aside != null && asides.remove(aside)) delete(aside);
+    }
+
     public void clear(ClearMode mode) {
         mode.clear(this);
     }
@@ -163,16 +264,34 @@ public class DiskCache extends ImgCache<File> {
     //================================================================================
 
     /// Creates a file in the cache directory ([#getSavePath()]) with the given id as the name. Serialized the given image
-    /// to the file with [ImageUtils#serialize(ImImage, File)] and finally delegates to [#store(String, Object)] to cache
-    /// the entry.
+    /// to the file with [ImageUtils#serialize(ImImage, File)] and finally delegates to [#put(String, Object)] to cache
+    /// the entry. If the entry is rejected (see [ImgCache#setAdmissionFilter(AdmissionFilter)]), the file is deleted.
+    ///
+    /// The image is first written to a temporary file (outside the lock) which is then atomically moved to its final
+    /// destination. This way, concurrent stores for the same id never interleave their writes, and readers never see a
+    /// partially written file. If the id is already cached and the new file is too heavy to be stored, the move is
+    /// skipped and the cached entry is kept.
     @Override
     public void store(String id, ImImage img) {
         try {
             Path path = savePath.resolve(id);
-            File file = path.toFile();
             Files.createDirectories(path.getParent());
-            ImageUtils.serialize(img, file);
-            store(id, file);
+            Path tmp = Files.createTempFile(path.getParent(), id, TEMP_SUFFIX);
+            try {
+                ImageUtils.serialize(img, tmp.toFile());
+                // The move is cheap, do it under the lock so that it cannot interleave with the removal of the same id
+                lock.lock();
+                try {
+                    if (rejectsReplacement(id, tmp.toFile())) return;
+                    File file = moveIn(id, tmp, path);
+                    if (!put(id, file)) delete(file);
+                    dropAside(id);
+                } finally {
+                    lock.unlock();
+                }
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
         } catch (Exception ex) {
             throw new ImCacheException(
                 "Failed to store image %s in cache"
@@ -182,31 +301,142 @@ public class DiskCache extends ImgCache<File> {
         }
     }
 
+    /// Bulk version of [#store(String, ImImage)].
+    ///
+    /// Directories are created once per distinct parent, then all the images are serialized to temporary files in
+    /// parallel (on a pool bounded by the number of available processors). Finally, the files are moved to their
+    /// destinations and cached with [#putAll(Map)] while acquiring the lock only once. Rejected files are deleted.
+    ///
+    /// If some images fail to be serialized, the others are still stored, and an [ImCacheException] is thrown at the end
+    /// with the other failures as suppressed exceptions.
+    @Override
+    public void storeImages(Map<String, ? extends ImImage> images) {
+        if (images.isEmpty()) return;
+        Map<String, Path> temps = new ConcurrentHashMap<>();
+        List<ImCacheException> failures = new CopyOnWriteArrayList<>();
+        try {
+            Set<Path> parents = new HashSet<>();
+            for (String id : images.keySet()) {
+                parents.add(savePath.resolve(id).getParent());
+            }
+            for (Path parent : parents) {
+                Files.createDirectories(parent);
+            }
+
+            int parallelism = Math.min(images.size(), Runtime.getRuntime().availableProcessors());
+            try (ExecutorService executor = Executors.newFixedThreadPool(parallelism, Thread.ofVirtual().factory())) {
+                images.forEach((id, img) -> executor.execute(() -> {
+                    try {
+                        Path path = savePath.resolve(id);
+                        Path tmp = Files.createTempFile(path.getParent(), id, TEMP_SUFFIX);
+                        temps.put(id, tmp);
+                        ImageUtils.serialize(img, tmp.toFile());
+                    } catch (Exception ex) {
+                        temps.remove(id);
+                        failures.add(new ImCacheException("Failed to store image %s in cache".formatted(id), ex));
+                    }
+                }));
+            }
+
+            lock.lock();
+            try {
+                Map<String, File> files = new LinkedHashMap<>();
+                for (String id : images.keySet()) {
+                    Path tmp = temps.get(id);
+                    if (tmp == null || rejectsReplacement(id, tmp.toFile())) continue;
+                    Path path = savePath.resolve(id);
+                    try {
+                        files.put(id, moveIn(id, tmp, path));
+                    } catch (IOException ex) {
+                        failures.add(new ImCacheException("Failed to store image %s in cache".formatted(id), ex));
+                    }
+                }
+                putAll(files).values().forEach(this::delete);
+                files.keySet().forEach(this::dropAside);
+            } finally {
+                lock.unlock();
+            }
+        } catch (IOException ex) {
+            failures.add(0, new ImCacheException("Failed to create cache directories in " + savePath, ex));
+        } finally {
+            for (Path tmp : temps.values()) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {}
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            ImCacheException ex = failures.getFirst();
+            failures.stream().skip(1).forEach(ex::addSuppressed);
+            throw ex;
+        }
+    }
+
+    /// Updates the file's last modified time, so that the new write time survives restarts, see
+    /// [#writeTime(String, File)].
+    @Override
+    protected void touched(String id, File file) {
+        file.setLastModified(System.currentTimeMillis());
+    }
+
+    /// @return the write time of the given file, computed from its last modified time, so that entries persisted by a
+    /// previous session keep their age. Never later than [#now()]
+    @Override
+    protected long writeTime(String id, File file) {
+        long now = now();
+        long modified = file.lastModified();
+        if (modified <= 0L) return now;
+        long age = Math.max(0L, System.currentTimeMillis() - modified);
+        return now - TimeUnit.MILLISECONDS.toNanos(age);
+    }
+
     /// Retrieves the cached file for the given id and then deserializes it with [ImageUtils#deserialize(File)],
     /// returning an [Optional] to indicate whether the cache entry was present and successfully deserialized or not.
     @Override
     public Optional<ImImage> getImage(String id) {
-        return get(id).flatMap(f -> {
-            try {
-                return Optional.of(ImageUtils.deserialize(f));
-            } catch (IOException ex) {
-                throw new ImCacheException(
-                    "Failed to deserialize image from file %s because: %s"
-                        .formatted(f.getName(), ex.getMessage()),
-                    ex
-                );
-            }
-        });
+        return get(id).map(this::deserialize);
     }
 
-    /// Attempts to remove a cached entry for the given id, and if it is found, it's also deleted from the disk with [#delete(File)].
+    /// Untracked variant of [#getImage(String)], see [ImgCache#peekImage(String)].
+    @Override
+    protected Optional<ImImage> peekImage(String id) {
+        return contains(id) ? Optional.ofNullable(peek(id)).map(this::deserialize) : Optional.empty();
+    }
+
+    /// Variant of [#getImage(String)] that looks up the file by [Key].
+    @Override
+    public Optional<ImImage> getImage(Key key) {
+        return get(key).map(this::deserialize);
+    }
+
+    /// Variant of [#getImage(Key)] that is not recorded in the statistics, see [ImgCache#probeImage(Key)].
+    @Override
+    public Optional<ImImage> probeImage(Key key) {
+        return probe(key).map(this::deserialize);
+    }
+
+    /// Files of removed entries are deleted from the disk with [#delete(File)]. This applies to explicit removals,
+    /// evictions and expirations, as well as to [ClearMode#DISK_AND_MEMORY], while [#clear()] only affects the memory.
     ///
-    /// @return true if the entry was present and deleted, otherwise false.
+    /// If a [RemovalListener] is set, the file is moved aside rather than deleted (see [#moveAside(File)]), and the
+    /// listener is notified with the moved file, which is then deleted by [#dispose(String, File, RemovalCause)]. The
+    /// same goes for replaced files, which are moved aside by [#store(String, ImImage)].
+    @Override
+    protected void notifyRemoval(String id, File file, RemovalCause cause) {
+        File removed = (cause == RemovalCause.REPLACED) ? replacedFiles.remove(id) : null;
+        boolean delete = (cause == RemovalCause.CLEARED) ? clearingFiles : cause != RemovalCause.REPLACED;
+        if (delete) {
+            if (removalListener != null) removed = moveAside(file);
+            if (removed == null) delete(file);
+        }
+        super.notifyRemoval(id, removed != null ? removed : file, cause);
+    }
+
+    /// Deletes the files moved aside for the [RemovalListener], see [#notifyRemoval(String, File, RemovalCause)].
     @Override
-    public boolean remove(String id) {
-        return Optional.ofNullable(cache.remove(id))
-            .map(this::delete)
-            .orElse(false);
+    protected void dispose(String id, File file, RemovalCause cause) {
+        if (asides.remove(file)) delete(file);
     }
 
     //================================================================================
@@ -18,16 +18,31 @@
 
 package io.github.palexdev.imcache.cache;
 
+import io.github.palexdev.imcache.cache.policy.AdmissionFilter;
+import io.github.palexdev.imcache.cache.policy.EvictionPolicy;
+import io.github.palexdev.imcache.cache.policy.FIFOPolicy;
+import io.github.palexdev.imcache.core.ImCache;
 import io.github.palexdev.imcache.core.ImImage;
+import io.github.palexdev.imcache.exceptions.ImCacheException;
+import io.github.palexdev.imcache.utils.AsyncUtils;
 import io.github.palexdev.imcache.utils.ImageUtils;
 
 import java.io.File;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 /// Abstract specialization of [Cache] which implements common functionalities such as:
-/// - the backing data structure, which is a [LinkedHashMap] by default
-/// - the cache's capacity
+/// - the backing data structure, a primitive hash map of the entries by [Key] (see [KeyIndex])
+/// - the cache's capacity, both in number of entries and in total weight (see [Weigher])
+/// - the [EvictionPolicy] which decides which entry to remove when the capacity is reached, [FIFOPolicy] by default
+/// - an optional [AdmissionFilter] which decides whether a new entry is worth evicting another one
+/// - optional expiration of the entries, see below
+/// - statistics on lookups, stores and removals, see [#stats()]
+/// - an optional [RemovalListener] notified asynchronously of every removal, see [#setRemovalListener(RemovalListener)]
 /// - common operations: contains, get, store, remove
 /// - additional methods to work with [ImImage] objects
 ///
@@ -37,6 +52,24 @@ import java.util.function.BiConsumer;
 /// 2) ImRequest implements [WithID], transforms the resource's src to a string
 /// 3) Asks ImCache to store the resource once it's done
 ///
+/// _Thread Safety_
+///
+/// Requests executed asynchronously (see `ImRequest#executeAsync(Consumer)`) may access the cache from many threads at
+/// once, so this class is thread-safe. Lookups ([#get(String)], [#contains(String)], [#size()]) go straight to the
+/// backing [KeyIndex] and never block. Operations that change the cache's structure (store, remove, eviction, clear)
+/// are serialized by a [ReentrantLock] which also guards the [EvictionPolicy]. This way the capacity check and the
+/// eviction are atomic with the insertion, and the cache can never grow beyond its capacity.
+///
+/// _Expiration_
+///
+/// Entries can expire after a certain amount of time since they were written ([#setExpireAfterWrite(Duration)]) or
+/// last accessed ([#setExpireAfterAccess(Duration)]). The write TTL can also be overridden per entry, see
+/// [#setExpiry(String, Duration)] and [#store(String, ImImage, Duration)].
+/// Deadlines are tracked by a [TimerWheel], which is advanced incrementally by [#store(String, Object)] and, when it
+/// can acquire the lock without waiting, by [#get(String)]. Expired entries are never returned by lookups even if they
+/// were not removed yet. For caches that are rarely accessed, expired entries can be removed periodically by a
+/// background virtual thread, see [#setSweepInterval(Duration)], or manually with [#cleanUp()].
+///
 /// **Note:**
 ///
 /// Despite the name and the fact that this is made to be used specifically for images, it still uses a generic `V` type
@@ -51,18 +84,45 @@ public abstract class ImgCache<V> implements Cache<V>, Iterable<Map.Entry<String
     //================================================================================
     // Properties
     //================================================================================
-    protected final SequencedMap<String, V> cache;
-    protected int capacity = DEFAULT_CAPACITY;
+    protected final ReentrantLock lock = new ReentrantLock();
+    protected volatile EvictionPolicy policy = EvictionPolicy.fifo();
+    protected volatile AdmissionFilter admission;
+    protected volatile int capacity = DEFAULT_CAPACITY;
+    protected volatile Weigher<V> weigher;
+    protected volatile long maxWeight = Long.MAX_VALUE;
+    protected volatile long totalWeight = 0;
+    protected volatile long expireAfterWrite = 0;
+    protected volatile long expireAfterAccess = 0;
+    protected final StatsCounter stats = new StatsCounter();
+    protected volatile RemovalListener<V> removalListener;
+    protected volatile Executor listenerExecutor = AsyncUtils::runAsync;
+    private final KeyIndex<Entry> index = new KeyIndex<>();
+    private final ConcurrentMap<String, CompletableFuture<ImImage>> loading = new ConcurrentHashMap<>();
+    private final TimerWheel wheel = new TimerWheel(0);
+    private volatile boolean expiring = false;
+    private volatile long nextSweep = 0;
+    private Thread sweeper;
+
+    private static final long EPOCH = System.nanoTime();
+    private static final long SWEEP_PERIOD = TimeUnit.SECONDS.toNanos(1);
 
     //================================================================================
     // Constructors
     //================================================================================
     public ImgCache() {
-        this.cache = new LinkedHashMap<>();
+        this(Weigher.singleton());
+    }
+
+    protected ImgCache(Weigher<V> weigher) {
+        this.weigher = weigher;
     }
 
+    /// @deprecated the cache is not backed by the given map anymore, but by a [KeyIndex]. The map's entries are copied
+    /// into the cache as its initial content, in iteration order, and later changes to the map are not reflected
+    @Deprecated
     protected ImgCache(SequencedMap<String, V> cache) {
-        this.cache = cache;
+        this();
+        seed(cache);
     }
 
     //================================================================================
@@ -89,9 +149,581 @@ public abstract class ImgCache<V> implements Cache<V>, Iterable<Map.Entry<String
         return getImage(id.id());
     }
 
-    /// Delegates to [SequencedMap#forEach(BiConsumer)].
+    /// Variant of [#getImage(String)] which resolves the id through the [Key] index, see [#idOf(Key)].
+    /// Implementations that can load the image directly from the value should override this.
+    public Optional<ImImage> getImage(Key key) {
+        return idOf(key).flatMap(this::getImage);
+    }
+
+    /// Lock-free lookup by [Key], with the same semantics as [#get(String)].
+    ///
+    /// Entries are stored by their key in a primitive map (see [KeyIndex]), so this never hashes nor compares strings.
+    /// Once the entry is found, the [EvictionPolicy] is notified with the same id instance used to store it, whose hash
+    /// is cached and whose equality check is an identity check.
+    ///
+    /// Note that misses are not recorded by the [AdmissionFilter], since the id is unknown.
+    public Optional<V> get(Key key) {
+        return get(key, true);
+    }
+
+    /// Variant of [#getImage(Key)] whose lookup is not recorded in the statistics, while the [EvictionPolicy] and the
+    /// [AdmissionFilter] are notified as usual. This is meant for callers that may look up more than one key to serve a
+    /// single request, and record a single hit or miss themselves (e.g. [ImCache] requests, which look up a variant
+    /// and then its original, see [ImCache#stats()]).
+    ///
+    /// By default, returns the value if it's an [ImImage], otherwise falls back to [#getImage(Key)]. Implementations that
+    /// store other types should override this.
+    public Optional<ImImage> probeImage(Key key) {
+        return probe(key).flatMap(v -> (v instanceof ImImage img) ? Optional.of(img) : getImage(key));
+    }
+
+    /// Variant of [#get(Key)] whose lookup is not recorded in the statistics, see [#probeImage(Key)].
+    protected Optional<V> probe(Key key) {
+        return get(key, false);
+    }
+
+    /// Common part of [#get(Key)] and [#probe(Key)].
+    private Optional<V> get(Key key, boolean record) {
+        Entry entry = index.get(key);
+        if (entry == null) {
+            if (record) stats.recordMiss();
+            return Optional.empty();
+        }
+        String id = entry.id();
+        AdmissionFilter admission = this.admission;
+        if (admission != null) admission.record(id);
+        return lookup(id, entry, entry.value(), record);
+    }
+
+    /// @return whether the cache contains a value for the given [Key], see [#contains(String)]
+    public boolean contains(Key key) {
+        return isLive(index.get(key), now());
+    }
+
+    /// Removes the entry mapped to the given [Key], see [#remove(String)].
+    public boolean remove(Key key) {
+        return idOf(key).map(this::remove).orElse(false);
+    }
+
+    /// @return the id of the entry mapped to the given [Key], if present (even if expired)
+    public Optional<String> idOf(Key key) {
+        Entry entry = index.get(key);
+        return Optional.ofNullable(entry).map(TimerWheel.Node::id);
+    }
+
+    /// Stores all the given images. By default, this simply calls [#store(String, ImImage)] for each image,
+    /// implementations may offer a more efficient version (e.g. [DiskCache] writes the files in parallel).
+    public void storeImages(Map<String, ? extends ImImage> images) {
+        images.forEach((id, img) -> store(id, img));
+    }
+
+    /// Iterates over a snapshot of the cache, see [#asMap()].
     public void forEach(BiConsumer<String, V> consumer) {
-        cache.forEach(consumer);
+        asMap().forEach(consumer);
+    }
+
+    /// Core logic of [#store(String, Object)].
+    ///
+    /// - Expired entries are removed first, see [#cleanUp()]
+    /// - If the capacity is 0 or the entry alone weighs more than the max weight, exits immediately.
+    /// - If the id is already present, the value is replaced, and this counts as an access for the [EvictionPolicy]
+    /// - If the id is new and the cache is full (by count or weight), the [AdmissionFilter] (if set) is asked whether
+    /// the new entry is worth evicting the victim chosen by the [EvictionPolicy]. If it is not, the new entry is rejected
+    /// - Entries are evicted until both the new entry's slot and its weight fit. If the policy picks the entry being
+    /// replaced, its old value is considered evicted, and the new value is inserted as a new entry
+    ///
+    /// The entry's weight ([Weigher]) and write time ([#writeTime(String, Object)]) are computed before acquiring the
+    /// lock. Replacing an entry resets its per-entry TTL, if any.
+    ///
+    /// @return whether the entry was stored
+    protected boolean put(String id, V value) {
+        AdmissionFilter admission = this.admission;
+        if (admission != null) admission.record(id);
+        Key key = Key.of(id);
+        long weight = weigh(id, value);
+        long writeTime = writeTime(id, value);
+        lock.lock();
+        try {
+            long now = now();
+            if (expiring) expire(now);
+            return insert(id, key, value, weight, writeTime, now);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// Stores the given entries as the initial content of the cache, for the deprecated constructors that take a map.
+    /// The store methods are not called, since subclasses may not be fully initialized yet.
+    final void seed(Map<String, ? extends V> values) {
+        lock.lock();
+        try {
+            long now = now();
+            values.forEach((id, value) -> insert(id, Key.of(id), value, weigh(id, value), writeTime(id, value), now));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// Bulk version of [#put(String, Object)], which amortizes the locking: weights and write times are computed for all
+    /// the entries first, then the entries are inserted one after the other while holding the lock only once.
+    ///
+    /// @return the entries that were rejected, in iteration order
+    protected Map<String, V> putAll(Map<String, ? extends V> values) {
+        AdmissionFilter admission = this.admission;
+        List<String> ids = new ArrayList<>(values.size());
+        List<Key> keys = new ArrayList<>(values.size());
+        List<V> vals = new ArrayList<>(values.size());
+        long[] weights = new long[values.size()];
+        long[] writeTimes = new long[values.size()];
+        values.forEach((id, value) -> {
+            if (admission != null) admission.record(id);
+            int i = ids.size();
+            weights[i] = weigh(id, value);
+            writeTimes[i] = writeTime(id, value);
+            ids.add(id);
+            keys.add(Key.of(id));
+            vals.add(value);
+        });
+
+        Map<String, V> rejected = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            long now = now();
+            if (expiring) expire(now);
+            for (int i = 0; i < ids.size(); i++) {
+                if (!insert(ids.get(i), keys.get(i), vals.get(i), weights[i], writeTimes[i], now)) {
+                    rejected.put(ids.get(i), vals.get(i));
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return rejected;
+    }
+
+    /// Inserts the given entry, evicting others if needed, see [#put(String, Object)]. Must be called while holding the lock.
+    private boolean insert(String id, Key key, V value, long weight, long writeTime, long now) {
+        if (capacity <= 0 || weight > maxWeight) return false;
+        Entry entry = index.get(key);
+        if (entry != null && !entry.id().equals(id)) {
+            // Two ids with the same key, practically impossible, the old one makes room for the new one
+            discard(entry.id(), RemovalCause.EXPLICIT);
+            entry = null;
+        }
+        boolean present = entry != null;
+        long previous = present ? entry.weight : 0L;
+        AdmissionFilter admission = this.admission;
+        if (!present && admission != null && (size() >= capacity || totalWeight + weight > maxWeight)) {
+            String victim = policy.victim(id);
+            if (victim != null && !admission.admit(id, victim)) return false;
+        }
+        if (present) policy.onAccess(id);
+
+        // Make room, the entry being replaced (if any) doesn't count
+        while (true) {
+            int others = size() - (entry != null ? 1 : 0);
+            if (others < capacity && totalWeight - previous + weight <= maxWeight) break;
+
+            String victim = policy.victim(id);
+            if (victim == null) break;
+            if (victim.equals(id)) {
+                policy.onEvict(id);
+                totalWeight -= previous;
+                previous = 0L;
+                present = false;
+            } else if (discard(victim, RemovalCause.SIZE) == null) {
+                break;
+            }
+        }
+
+        if (!present) policy.onInsert(id);
+        boolean created = (entry == null);
+        if (created) entry = new Entry(id, key);
+        totalWeight += weight - previous;
+        entry.weight = weight;
+        entry.writeTime = writeTime;
+        entry.ttl = -1L;
+        schedule(entry, now);
+        V old = entry.value();
+        entry.value = value;
+        if (created) index.put(key, entry);
+        stats.recordStore(weight);
+        if (old != null && old != value) {
+            stats.recordRemoval(RemovalCause.REPLACED, 1);
+            notifyRemoval(id, old, RemovalCause.REPLACED);
+        }
+        return true;
+    }
+
+    /// Computes the weight of the given entry with the [Weigher] set on this cache.
+    ///
+    /// @throws ImCacheException if the weight is negative
+    protected long weigh(String id, V value) {
+        long weight = weigher.weigh(id, value);
+        if (weight < 0) throw new ImCacheException("Negative weight %d for entry %s".formatted(weight, id));
+        return weight;
+    }
+
+    /// @return the time at which the given entry was written, in the same time frame as [#now()]. This is the starting
+    /// point for [#setExpireAfterWrite(Duration)] and per-entry TTLs. By default, returns [#now()]
+    protected long writeTime(String id, V value) {
+        return now();
+    }
+
+    /// @return the current time in nanoseconds used to compute the expiration of the entries. The value is derived from
+    /// [System#nanoTime()], but it's never negative
+    protected long now() {
+        return System.nanoTime() - EPOCH;
+    }
+
+    /// Removes all the expired entries from the cache.
+    ///
+    /// This happens automatically when storing new entries and, opportunistically, when looking up entries. It can be
+    /// useful to call this manually if the cache is not accessed for a long time, or see [#setSweepInterval(Duration)].
+    public void cleanUp() {
+        lock.lock();
+        try {
+            expire(now());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// Sets a write TTL specific to the entry mapped by the given id, overriding the one set by
+    /// [#setExpireAfterWrite(Duration)]. The TTL is measured from the moment the entry was written, and it's reset when
+    /// the entry is replaced.
+    ///
+    /// A `null` TTL restores the cache's default, while a zero or negative TTL disables the write expiration for the entry.
+    ///
+    /// @return false if the cache doesn't contain the given id
+    public boolean setExpiry(String id, Duration ttl) {
+        lock.lock();
+        try {
+            Entry entry = entry(id);
+            if (entry == null) return false;
+            entry.ttl = (ttl == null) ? -1L : toNanos(ttl);
+            if (entry.ttl > 0) expiring = true;
+            schedule(entry, now());
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// Resets the write time of the entry mapped by the given id to [#now()], as if it was just written, but without
+    /// replacing its value. Its age (see [#getAge(String)]) and write expiration start over, and no removal notification
+    /// is sent. Used when a cached image is revalidated, see [#touched(String, Object)].
+    ///
+    /// @return false if the cache doesn't contain the given id
+    public boolean touch(String id) {
+        lock.lock();
+        try {
+            Entry entry = entry(id);
+            if (entry == null) return false;
+            long now = now();
+            entry.writeTime = now;
+            schedule(entry, now);
+            touched(id, entry.value());
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// Hook called by [#touch(String)] while holding the lock, allows subclasses to persist the new write time. Does
+    /// nothing by default.
+    protected void touched(String id, V value) {}
+
+    /// Returns the image mapped to the given id, loading and storing it with the given loader if absent.
+    ///
+    /// Concurrent calls for the same id perform at most one load: the first caller runs the loader, while the others
+    /// wait for its result (or its exception). No lock is held during the load, so other ids keep progressing. The
+    /// loaded image is stored with [#store(String, ImImage)], which evicts other entries if needed, before the waiters
+    /// are released, so that subsequent lookups find it in the cache.
+    ///
+    /// Loads are recorded in the statistics, see [#stats()]. Each call records exactly one hit or one miss.
+    ///
+    /// @return the cached or loaded image, `null` if the loader returned `null` (nothing is stored in such case)
+    /// @throws RuntimeException the exception thrown by the loader, to all the callers waiting for it
+    /// @throws ImCacheException if the caller was interrupted while waiting for another caller's load, the interrupted
+    /// status is preserved
+    public ImImage get(String id, Function<String, ? extends ImImage> loader) {
+        Optional<ImImage> img = getImage(id);
+        return img.isPresent() ? img.get() : load(id, loader);
+    }
+
+    /// Asynchronous variant of [#get(String, Function)], the load runs on a virtual thread.
+    public CompletableFuture<ImImage> getAsync(String id, Function<String, ? extends ImImage> loader) {
+        return getAsync(id, loader, AsyncUtils::runAsync);
+    }
+
+    /// Asynchronous variant of [#get(String, Function)], the load runs on the given [Executor]. If the image is cached,
+    /// the returned future is already completed.
+    public CompletableFuture<ImImage> getAsync(String id, Function<String, ? extends ImImage> loader, Executor executor) {
+        Optional<ImImage> img = getImage(id);
+        if (img.isPresent()) return CompletableFuture.completedFuture(img.get());
+        return CompletableFuture.supplyAsync(() -> load(id, loader), executor);
+    }
+
+    /// Single-flight load for [#get(String, Function)].
+    private ImImage load(String id, Function<String, ? extends ImImage> loader) {
+        CompletableFuture<ImImage> created = new CompletableFuture<>();
+        CompletableFuture<ImImage> existing = loading.putIfAbsent(id, created);
+        if (existing != null) {
+            try {
+                return existing.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new ImCacheException("Interrupted while loading entry " + id, ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException rex) throw rex;
+                throw new ImCacheException("Failed to load entry " + id, ex.getCause());
+            }
+        }
+
+        try {
+            // A load may have completed between the lookup and the registration of this one. The miss was already
+            // recorded by the lookup, so this one is not tracked
+            Optional<ImImage> cached = peekImage(id);
+            if (cached.isPresent()) {
+                created.complete(cached.get());
+                return cached.get();
+            }
+
+            long start = System.nanoTime();
+            ImImage img;
+            try {
+                img = loader.apply(id);
+            } catch (RuntimeException ex) {
+                stats.recordLoadFailure();
+                throw ex;
+            }
+            stats.recordLoadTime(CacheStats.Stage.RESOLVE, System.nanoTime() - start);
+            stats.recordLoadSuccess();
+            if (img != null) store(id, img);
+            created.complete(img);
+            return img;
+        } catch (Throwable ex) {
+            created.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            loading.remove(id, created);
+        }
+    }
+
+    /// @return the time elapsed since the entry mapped to the given id was written (or replaced), if present. This is
+    /// measured from [#writeTime(String, Object)], so for [DiskCache] it's the age of the file
+    public Optional<Duration> getAge(String id) {
+        return age(entry(id));
+    }
+
+    /// Variant of [#getAge(String)] that looks up the entry by [Key].
+    public Optional<Duration> getAge(Key key) {
+        return age(index.get(key));
+    }
+
+    private Optional<Duration> age(Entry entry) {
+        if (entry == null) return Optional.empty();
+        return Optional.of(Duration.ofNanos(Math.max(0L, now() - entry.writeTime)));
+    }
+
+    /// Delegates to [#store(String, ImImage)] and then sets the given TTL for the entry with [#setExpiry(String, Duration)].
+    public void store(String id, ImImage img, Duration ttl) {
+        store(id, img);
+        setExpiry(id, ttl);
+    }
+
+    /// Removes the entry mapped to the given id from the backing data structure and notifies the [EvictionPolicy].
+    ///
+    /// Every removal, explicit, caused by eviction or expiration, goes through this method. Resources held by the removed
+    /// value must not be released here, but in [#dispose(String, Object, RemovalCause)], so that the [RemovalListener]
+    /// can still access the value.
+    ///
+    /// @param cause why the entry is being removed, only [RemovalCause#SIZE] counts as an eviction for the [EvictionPolicy]
+    /// @return the removed value or `null` if there was no entry for the given id
+    protected V discard(String id, RemovalCause cause) {
+        lock.lock();
+        try {
+            Entry entry = entry(id);
+            if (entry == null || !index.remove(entry.hi, entry.lo, entry)) return null;
+            V removed = entry.value();
+            totalWeight -= entry.weight;
+            wheel.deschedule(entry);
+            if (cause == RemovalCause.SIZE) {
+                policy.onEvict(id);
+            } else {
+                policy.onRemove(id);
+            }
+            stats.recordRemoval(cause, 1);
+            notifyRemoval(id, removed, cause);
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// Dispatches a removal notification to the [RemovalListener], if set, on the listener executor, and then disposes
+    /// of the value with [#dispose(String, Object, RemovalCause)]. Called while holding the lock for every value that
+    /// leaves the cache, for any [RemovalCause].
+    ///
+    /// If a listener is set, the value is disposed on the listener executor, right after the listener returns. Otherwise,
+    /// it's disposed right away. Exceptions thrown by the listener or by the executor (e.g. if it rejects the task) are
+    /// ignored, so that they cannot break the cache.
+    protected void notifyRemoval(String id, V value, RemovalCause cause) {
+        RemovalListener<V> listener = this.removalListener;
+        if (listener == null) {
+            dispose(id, value, cause);
+            return;
+        }
+        try {
+            listenerExecutor.execute(() -> {
+                try {
+                    listener.onRemoval(id, value, cause);
+                } catch (Exception ignored) {}
+                try {
+                    dispose(id, value, cause);
+                } catch (Exception ignored) {}
+            });
+        } catch (Exception ex) {
+            dispose(id, value, cause);
+        }
+    }
+
+    /// Releases the resources held by a value that left the cache (e.g. [OffHeapMemoryCache] releasing the memory),
+    /// see [#notifyRemoval(String, Object, RemovalCause)]. This happens only after the [RemovalListener], if any, was
+    /// notified, so that the listener can still access the value. Does nothing by default.
+    ///
+    /// Note that, if a listener is set, this runs on the listener executor, without holding the lock.
+    protected void dispose(String id, V value, RemovalCause cause) {}
+
+    /// Evicts entries, as chosen by the [EvictionPolicy], until both the cache's size and total weight are within the
+    /// given limits.
+    protected void evict(int maxSize, long maxWeight) {
+        lock.lock();
+        try {
+            while (size() > maxSize || totalWeight > maxWeight) {
+                String victim = policy.victim(null);
+                if (victim == null || discard(victim, RemovalCause.SIZE) == null) break;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// Advances the [TimerWheel] and removes the expired entries. Must be called while holding the lock.
+    private void expire(long now) {
+        nextSweep = now + SWEEP_PERIOD;
+        wheel.advance(now, node -> discard(node.id(), RemovalCause.EXPIRED));
+    }
+
+    /// Removes the expired entries if the sweep period has passed and the lock is free, never blocks.
+    private void trySweep(long now) {
+        if (now - nextSweep >= 0 && lock.tryLock()) {
+            try {
+                expire(now);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /// Computes the deadline of the given entry and (re)schedules it in the [TimerWheel]. Must be called while holding
+    /// the lock.
+    private void schedule(Entry entry, long now) {
+        long deadline = deadline(entry, now);
+        entry.setDeadline(deadline);
+        if (deadline == Long.MAX_VALUE) {
+            wheel.deschedule(entry);
+        } else {
+            wheel.schedule(entry);
+        }
+    }
+
+    /// @return the deadline of the given entry, which is the earliest between its write and access deadlines.
+    /// [Long#MAX_VALUE] if the entry doesn't expire
+    private long deadline(Entry entry, long accessTime) {
+        long ttl = entry.ttl >= 0 ? entry.ttl : expireAfterWrite;
+        long deadline = ttl > 0 ? saturatedAdd(entry.writeTime, ttl) : Long.MAX_VALUE;
+        if (expireAfterAccess > 0) deadline = Math.min(deadline, saturatedAdd(accessTime, expireAfterAccess));
+        return deadline;
+    }
+
+    /// Recomputes the deadlines of all the entries after a change in the expiration settings, and removes the ones that
+    /// have expired. Must be called while holding the lock.
+    private void rescheduleAll() {
+        if (expireAfterWrite > 0 || expireAfterAccess > 0) expiring = true;
+        long now = now();
+        index.forEach(e -> schedule(e, now));
+        expire(now);
+    }
+
+    /// @return the entry mapped to the given id, or `null` if not present. The entry is found by [Key], and its id is
+    /// compared to tell apart (practically impossible) collisions
+    private Entry entry(String id) {
+        Entry entry = index.get(Key.of(id));
+        return (entry != null && entry.id().equals(id)) ? entry : null;
+    }
+
+    /// @return whether the given entry is present and not expired
+    private boolean isLive(Entry entry, long now) {
+        return entry != null && !(expiring && entry.isExpired(now));
+    }
+
+    /// @return the value mapped to the given id, without checking the expiration, notifying the [EvictionPolicy] nor
+    /// recording the stats. `null` if not present
+    protected V peek(String id) {
+        Entry entry = entry(id);
+        return (entry != null) ? entry.value() : null;
+    }
+
+    /// Untracked variant of [#getImage(String)]: the lookup is not recorded in the statistics, and neither the
+    /// [EvictionPolicy] nor the [AdmissionFilter] are notified. Expired entries are not returned.
+    ///
+    /// By default, returns the value if it's an [ImImage], otherwise falls back to [#getImage(String)].
+    /// Implementations that store other types should override this.
+    protected Optional<ImImage> peekImage(String id) {
+        Entry entry = entry(id);
+        if (!isLive(entry, now())) return Optional.empty();
+        return (entry.value instanceof ImImage img) ? Optional.of(img) : getImage(id);
+    }
+
+    /// Common part of [#get(String)] and [#get(Key)]: checks the expiration, notifies the [EvictionPolicy] and records
+    /// the stats, if requested.
+    private Optional<V> lookup(String id, Entry entry, V value, boolean record) {
+        if (expiring) {
+            long now = now();
+            if (value != null) {
+                if (entry.isExpired(now)) {
+                    value = null;
+                } else if (expireAfterAccess > 0) {
+                    entry.extend(deadline(entry, now));
+                }
+            }
+            trySweep(now);
+        }
+        if (value != null) {
+            policy.onAccess(id);
+            if (record) stats.recordHit();
+        } else if (record) {
+            stats.recordMiss();
+        }
+        return Optional.ofNullable(value);
+    }
+
+    /// Converts the given duration to nanoseconds, saturating on overflow. `null` and negative durations are converted to 0.
+    private static long toNanos(Duration duration) {
+        if (duration == null || duration.isNegative()) return 0L;
+        try {
+            return duration.toNanos();
+        } catch (ArithmeticException ex) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        long r = a + b;
+        if (((a ^ r) & (b ^ r)) < 0) return a < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        return r;
     }
 
     //================================================================================
@@ -102,20 +734,35 @@ public abstract class ImgCache<V> implements Cache<V>, Iterable<Map.Entry<String
         return asMap().entrySet().iterator();
     }
 
+    /// Lock-free lookup in the backing data structure. In case of a hit, the [EvictionPolicy] is notified with
+    /// [EvictionPolicy#onAccess(String)]. Both hits and misses are recorded by the [AdmissionFilter], if set.
+    ///
+    /// If expiration is enabled, an expired entry is treated as a miss, while a hit extends the entry's deadline when
+    /// [#setExpireAfterAccess(Duration)] is set. The extension doesn't need the lock, see [TimerWheel.Node#extend(long)].
+    /// Finally, expired entries are removed if the lock is free, see [#cleanUp()].
     @Override
     public Optional<V> get(String id) {
-        return Optional.ofNullable(cache.get(id));
+        AdmissionFilter admission = this.admission;
+        if (admission != null) admission.record(id);
+        Entry entry = entry(id);
+        return lookup(id, entry, (entry != null) ? entry.value() : null, true);
     }
 
-    /// Stores the given cache entry in the backing data structure.
+    /// Stores the given cache entry in the backing data structure, see [#put(String, Object)].
     ///
-    /// - If the capacity is 0, exits immediately.
-    /// - If capacity is reached, the oldest entry is removed first, see [#removeOldest()]
+    /// Note that the entry may be rejected if an [AdmissionFilter] is set.
     @Override
     public void store(String id, V value) {
-        if (capacity == 0) return;
-        if (size() == capacity) removeOldest();
-        cache.put(id, value);
+        put(id, value);
+    }
+
+    /// Stores all the given entries by acquiring the lock only once, see [#putAll(Map)].
+    ///
+    /// Note that entries may be rejected if an [AdmissionFilter] is set, and that if the entries are more than the
+    /// capacity, the ones stored first may be evicted by the ones stored later.
+    @Override
+    public void storeAll(Map<String, ? extends V> values) {
+        putAll(values);
     }
 
     /// Removes the cached resource associated with the given id.
@@ -123,44 +770,85 @@ public abstract class ImgCache<V> implements Cache<V>, Iterable<Map.Entry<String
     /// @return true if the resource was present and removed
     @Override
     public boolean remove(String id) {
-        return Optional.ofNullable(cache.remove(id)).isPresent();
+        return discard(id, RemovalCause.EXPLICIT) != null;
     }
 
-    /// Remove the oldest cached entry.
-    /// Since the default backing data structure is a [LinkedHashMap], the [SequencedMap#firstEntry()] is also the oldest.
-    ///
-    /// The logic here must be changed in case the type of data structure is changed.
+    /// Removes all the given ids by acquiring the lock only once.
+    @Override
+    public int removeAll(Collection<String> ids) {
+        lock.lock();
+        try {
+            int removed = 0;
+            for (String id : ids) {
+                if (discard(id, RemovalCause.EXPLICIT) != null) removed++;
+            }
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// Evicts the entry chosen by the [EvictionPolicy]. With the default [FIFOPolicy], this is the oldest entry.
     ///
-    /// @return false if the cache is empty, otherwise the result of [#remove(String)]
+    /// @return false if the cache is empty, otherwise whether the entry was removed
     @Override
     public boolean removeOldest() {
-        if (cache.isEmpty()) return false;
-        return remove(cache.firstEntry().getKey());
+        lock.lock();
+        try {
+            String victim = policy.victim(null);
+            return victim != null && discard(victim, RemovalCause.SIZE) != null;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /// @return whether the backing data structure contains a cached value for the given id
     @Override
     public boolean contains(String id) {
-        return cache.containsKey(id);
+        return isLive(entry(id), now());
     }
 
     /// Removes all entries from the backing data structure.
     @Override
     public void clear() {
-        cache.clear();
+        lock.lock();
+        try {
+            stats.recordRemoval(RemovalCause.CLEARED, size());
+            index.forEach(e -> notifyRemoval(e.id(), e.value(), RemovalCause.CLEARED));
+            index.clear();
+            policy.clear();
+            wheel.clear();
+            totalWeight = 0;
+        } finally {
+            lock.unlock();
+        }
     }
 
-    /// @return the number of cached items in the backing data structure
+    /// @return the number of cached items in the backing data structure. This may include expired entries that were not
+    /// removed yet
     @Override
     public int size() {
-        return cache.size();
+        return index.size();
     }
 
-    /// @return an unmodifiable view of the backing data structure. The cache should be manipulated exclusively by the
-    /// exposed API as implementations may define additional needed operations
+    /// @return an unmodifiable snapshot of the cache with entries sorted by the [EvictionPolicy], from the first candidate
+    /// for eviction to the last one (for [FIFOPolicy] this is the insertion order). Since the cache may be
+    /// accessed concurrently, changes made after this call are not reflected by the returned map. The cache should be
+    /// manipulated exclusively by the exposed API as implementations may define additional needed operations
     @Override
     public SequencedMap<String, V> asMap() {
-        return Collections.unmodifiableSequencedMap(cache);
+        lock.lock();
+        try {
+            SequencedMap<String, V> snapshot = new LinkedHashMap<>();
+            long now = now();
+            for (String id : policy.keys()) {
+                Entry entry = entry(id);
+                if (isLive(entry, now)) snapshot.put(id, entry.value());
+            }
+            return Collections.unmodifiableSequencedMap(snapshot);
+        } finally {
+            lock.unlock();
+        }
     }
 
     //================================================================================
@@ -172,9 +860,247 @@ public abstract class ImgCache<V> implements Cache<V>, Iterable<Map.Entry<String
     }
 
     @Override
-    public Cache<V> setCapacity(int capacity) {
-        while (size() > capacity) removeOldest();
-        this.capacity = capacity;
+    public ImgCache<V> setCapacity(int capacity) {
+        lock.lock();
+        try {
+            evict(Math.max(capacity, 0), maxWeight);
+            this.capacity = capacity;
+            return this;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// @return the maximum allowed total weight of the entries, [Long#MAX_VALUE] by default (unbounded)
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /// Sets the maximum allowed total weight of the entries, as computed by the [Weigher]. This works together with the
+    /// capacity: entries are evicted as soon as either of the two limits is exceeded.
+    ///
+    /// If the max weight shrinks, entries are evicted until the total weight fits.
+    public ImgCache<V> setMaxWeight(long maxWeight) {
+        lock.lock();
+        try {
+            evict(capacity, Math.max(maxWeight, 0));
+            this.maxWeight = maxWeight;
+            return this;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// @return the current total weight of the cached entries
+    public long getTotalWeight() {
+        return totalWeight;
+    }
+
+    /// @return the [Weigher] used by this cache
+    public Weigher<V> getWeigher() {
+        return weigher;
+    }
+
+    /// Sets the [Weigher] used by this cache. The weights of the entries currently cached are recomputed, and entries
+    /// are evicted if the total weight exceeds the max weight.
+    ///
+    /// @see Weigher#imageSize()
+    /// @see Weigher#fileSize()
+    public ImgCache<V> setWeigher(Weigher<V> weigher) {
+        Objects.requireNonNull(weigher);
+        lock.lock();
+        try {
+            this.weigher = weigher;
+            totalWeight = 0;
+            index.forEach(entry -> {
+                entry.weight = weigh(entry.id(), entry.value());
+                totalWeight += entry.weight;
+            });
+            evict(capacity, maxWeight);
+            return this;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// @return the time after which entries expire since they were written, [Duration#ZERO] if disabled
+    public Duration getExpireAfterWrite() {
+        return Duration.ofNanos(expireAfterWrite);
+    }
+
+    /// Sets the time after which entries expire since they were written (or replaced). `null` or [Duration#ZERO] disable
+    /// this kind of expiration (default). Entries with a specific TTL (see [#setExpiry(String, Duration)]) are not affected.
+    public ImgCache<V> setExpireAfterWrite(Duration duration) {
+        lock.lock();
+        try {
+            this.expireAfterWrite = toNanos(duration);
+            rescheduleAll();
+            return this;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// @return the time after which entries expire since they were last accessed, [Duration#ZERO] if disabled
+    public Duration getExpireAfterAccess() {
+        return Duration.ofNanos(expireAfterAccess);
+    }
+
+    /// Sets the time after which entries expire since they were last accessed (looked up or replaced). `null` or
+    /// [Duration#ZERO] disable this kind of expiration (default).
+    ///
+    /// When changed, entries currently cached are considered as accessed now.
+    public ImgCache<V> setExpireAfterAccess(Duration duration) {
+        lock.lock();
+        try {
+            this.expireAfterAccess = toNanos(duration);
+            rescheduleAll();
+            return this;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// Starts a background virtual thread which removes expired entries at the given interval, see [#cleanUp()].
+    /// `null` stops the thread (default).
+    ///
+    /// This is useful only for caches that are accessed rarely, as expired entries are otherwise removed during
+    /// lookups and stores. Note that the thread holds a reference to this cache, so it must be stopped when the cache
+    /// is not needed anymore.
+    public ImgCache<V> setSweepInterval(Duration interval) {
+        lock.lock();
+        try {
+            if (sweeper != null) sweeper.interrupt();
+            sweeper = null;
+            if (interval == null || toNanos(interval) == 0L) return this;
+            sweeper = Thread.ofVirtual()
+                .name("ImgCache-Sweeper")
+                .start(() -> {
+                    try {
+                        while (!Thread.currentThread().isInterrupted()) {
+                            Thread.sleep(interval);
+                            cleanUp();
+                        }
+                    } catch (InterruptedException ignored) {}
+                });
+            return this;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// @return a snapshot of the statistics of this cache. Load counts and times are not recorded by the cache itself,
+    /// see [ImCache#stats()]
+    public CacheStats stats() {
+        return stats.snapshot();
+    }
+
+    /// Resets the statistics of this cache to zero.
+    public void resetStats() {
+        stats.reset();
+    }
+
+    /// @return whether this cache records statistics, true by default
+    public boolean isRecordStats() {
+        return stats.isEnabled();
+    }
+
+    /// Sets whether this cache records statistics, see [StatsCounter#setEnabled(boolean)].
+    public ImgCache<V> setRecordStats(boolean recordStats) {
+        stats.setEnabled(recordStats);
+        return this;
+    }
+
+    /// @return the [RemovalListener] notified when entries are removed, `null` if not set
+    public RemovalListener<V> getRemovalListener() {
+        return removalListener;
+    }
+
+    /// Sets the [RemovalListener] notified when entries are removed, for any [RemovalCause]. `null` removes the listener.
+    ///
+    /// Notifications are dispatched on the listener executor, see [#setListenerExecutor(Executor)].
+    public ImgCache<V> setRemovalListener(RemovalListener<V> removalListener) {
+        this.removalListener = removalListener;
         return this;
     }
+
+    /// @return the [Executor] used to dispatch removal notifications
+    public Executor getListenerExecutor() {
+        return listenerExecutor;
+    }
+
+    /// Sets the [Executor] used to dispatch removal notifications. By default, each notification runs on a new virtual
+    /// thread ([AsyncUtils#runAsync(Runnable)]), which means that the order of the notifications is not guaranteed.
+    /// Use a single-threaded executor if the order matters, or `Runnable::run` to notify on the calling thread (while
+    /// holding the cache's lock, so the listener must be fast and must not access the cache).
+    public ImgCache<V> setListenerExecutor(Executor listenerExecutor) {
+        this.listenerExecutor = Objects.requireNonNull(listenerExecutor);
+        return this;
+    }
+
+    /// @return the [AdmissionFilter] used by this cache, `null` if not set
+    public AdmissionFilter getAdmissionFilter() {
+        return admission;
+    }
+
+    /// Sets the [AdmissionFilter] used by this cache, `null` to disable admission filtering (default).
+    ///
+    /// @see AdmissionFilter#tinyLFU(int)
+    public ImgCache<V> setAdmissionFilter(AdmissionFilter admission) {
+        this.admission = admission;
+        return this;
+    }
+
+    /// @return the [EvictionPolicy] used by this cache
+    public EvictionPolicy getEvictionPolicy() {
+        return policy;
+    }
+
+    /// Replaces the [EvictionPolicy] used by this cache. The ids currently cached are handed over to the new policy in
+    /// the eviction order of the old one.
+    ///
+    /// @see EvictionPolicy#fifo()
+    /// @see EvictionPolicy#lru()
+    /// @see EvictionPolicy#clock()
+    /// @see EvictionPolicy#arc()
+    public ImgCache<V> setEvictionPolicy(EvictionPolicy policy) {
+        Objects.requireNonNull(policy);
+        lock.lock();
+        try {
+            policy.clear();
+            for (String id : this.policy.keys()) {
+                if (entry(id) != null) policy.onInsert(id);
+            }
+            this.policy = policy;
+            return this;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //================================================================================
+    // Inner Classes
+    //================================================================================
+
+    /// A cached entry: its value, its key (inline), its weight, when it was written and its specific TTL (if any). Also
+    /// acts as the [TimerWheel] node tracking the entry's deadline.
+    private static class Entry extends TimerWheel.Node {
+        private final long hi;
+        private final long lo;
+        private long weight;
+        private volatile long writeTime;
+        private volatile long ttl = -1L; // -1 means use the cache's default
+        private volatile Object value;
+
+        Entry(String id, Key key) {
+            super(id);
+            this.hi = key.hi();
+            this.lo = key.lo();
+        }
+
+        @SuppressWarnings("unchecked")
+        <V> V value() {
+            return (V) value;
+        }
+    }
 }
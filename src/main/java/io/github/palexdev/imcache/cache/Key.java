@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2025 Parisi Alessandro - alessandro.parisi406@gmail.com
+ * This file is part of ImCache (https://github.com/palexdev/imcache)
+ *
+ * ImCache is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * ImCache is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ImCache. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.palexdev.imcache.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HexFormat;
+
+/// A compact, 128-bit representation of an id, packed into two `long`s.
+///
+/// Keys are computed from the ids with a fast non-cryptographic hash (MurmurHash3 x64 128-bit, over the UTF-16 code
+/// units of the string), so they are always derived from the same strings used by the [Cache] API. This means that the
+/// mapping between ids and keys is stable, and that caches which persist their entries by id (e.g. [DiskCache], which
+/// uses ids as file names) are not affected at all.
+///
+/// [ImgCache] indexes its entries by key internally, see [KeyIndex], and lookups can also be made by key, see
+/// [ImgCache#get(Key)]. A lookup by key never hashes nor compares strings, which is convenient for callers that perform
+/// many lookups for the same id, see [WithID#key()].
+///
+/// The same hash is also used to identify arbitrary data, see [#of(ByteBuffer)].
+///
+/// Collisions are theoretically possible, but with 128 bits they are negligible for any realistic number of entries.
+public record Key(long hi, long lo) {
+    //================================================================================
+    // Properties
+    //================================================================================
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    //================================================================================
+    // Static Methods
+    //================================================================================
+
+    /// Computes the key for the given id.
+    public static Key of(CharSequence id) {
+        long h1 = 0;
+        long h2 = 0;
+        int len = id.length();
+        int blocks = len >>> 3; // 8 chars per 128-bit block
+        for (int b = 0; b < blocks; b++) {
+            int i = b << 3;
+            long k1 = pack(id, i);
+            long k2 = pack(id, i + 4);
+
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        // Tail, up to 7 chars
+        long k1 = 0;
+        long k2 = 0;
+        int i = blocks << 3;
+        int rem = len - i;
+        for (int c = 0; c < rem; c++) {
+            long v = id.charAt(i + c);
+            if (c < 4) {
+                k1 |= v << (c << 4);
+            } else {
+                k2 |= v << ((c - 4) << 4);
+            }
+        }
+        if (rem > 4) h2 ^= mixK2(k2);
+        if (rem > 0) h1 ^= mixK1(k1);
+
+        // Finalization, the length is in bytes as in the reference implementation
+        h1 ^= (long) len << 1;
+        h2 ^= (long) len << 1;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        return new Key(h1, h2);
+    }
+
+    /// Computes the key for the given data, from its position to its limit. The buffer is not modified.
+    ///
+    /// Used to identify images by their content, see [io.github.palexdev.imcache.core.ImImage#contentKey()].
+    public static Key of(ByteBuffer data) {
+        ByteBuffer buf = data.slice().order(ByteOrder.LITTLE_ENDIAN);
+        long h1 = 0;
+        long h2 = 0;
+        int len = buf.remaining();
+        int blocks = len >>> 4; // 16 bytes per 128-bit block
+        for (int b = 0; b < blocks; b++) {
+            int i = b << 4;
+            h1 ^= mixK1(buf.getLong(i));
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(buf.getLong(i + 8));
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        // Tail, up to 15 bytes
+        long k1 = 0;
+        long k2 = 0;
+        int i = blocks << 4;
+        int rem = len - i;
+        for (int c = 0; c < rem; c++) {
+            long v = buf.get(i + c) & 0xFFL;
+            if (c < 8) {
+                k1 |= v << (c << 3);
+            } else {
+                k2 |= v << ((c - 8) << 3);
+            }
+        }
+        if (rem > 8) h2 ^= mixK2(k2);
+        if (rem > 0) h1 ^= mixK1(k1);
+
+        h1 ^= len;
+        h2 ^= len;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        return new Key(h1, h2);
+    }
+
+    /// Delegates to [#of(CharSequence)] with the given object's [WithID#id()].
+    public static Key of(WithID id) {
+        return of(id.id());
+    }
+
+    /// Packs four chars starting at the given index in a `long`, little-endian.
+    private static long pack(CharSequence s, int i) {
+        return (long) s.charAt(i) |
+               (long) s.charAt(i + 1) << 16 |
+               (long) s.charAt(i + 2) << 32 |
+               (long) s.charAt(i + 3) << 48;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        return k1 * C2;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        return k2 * C1;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    //================================================================================
+    // Overridden Methods
+    //================================================================================
+
+    /// @return the key as a 32 characters hexadecimal string
+    @Override
+    public String toString() {
+        HexFormat hex = HexFormat.of();
+        return hex.toHexDigits(hi) + hex.toHexDigits(lo);
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2025 Parisi Alessandro - alessandro.parisi406@gmail.com
+ * This file is part of ImCache (https://github.com/palexdev/imcache)
+ *
+ * ImCache is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * ImCache is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ImCache. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.palexdev.imcache.cache;
+
+import java.util.function.Consumer;
+import java.util.concurrent.locks.StampedLock;
+
+/// A hash map specialized for [Keys][Key], the backing data structure of [ImgCache].
+///
+/// Keys are stored inline in a `long[]` (two slots per key) and resolved by open addressing with linear probing, so
+/// lookups neither allocate nor hash or compare strings. Removed keys leave a tombstone which is purged when the table
+/// is rebuilt.
+///
+/// Lookups are lock-free in the common case: they are optimistic reads validated by a [StampedLock], and fall back to a
+/// read lock only if a write happened concurrently. Writes are exclusive.
+///
+/// @param <T> the type of the values
+public class KeyIndex<T> {
+    //================================================================================
+    // Properties
+    //================================================================================
+    private static final Object TOMBSTONE = new Object();
+    private static final int MIN_CAPACITY = 16;
+
+    private final StampedLock lock = new StampedLock();
+    private long[] keys;
+    private Object[] values;
+    private volatile int size = 0;
+    private int used = 0; // Includes tombstones
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    public KeyIndex() {
+        this(MIN_CAPACITY);
+    }
+
+    public KeyIndex(int expectedSize) {
+        int capacity = tableSize(expectedSize);
+        keys = new long[capacity << 1];
+        values = new Object[capacity];
+    }
+
+    //================================================================================
+    // Methods
+    //================================================================================
+
+    /// @return the value mapped to the given key, or `null` if not present
+    public T get(Key key) {
+        return get(key.hi(), key.lo());
+    }
+
+    /// @return the value mapped to the given key, or `null` if not present
+    public T get(long hi, long lo) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            T value = find(hi, lo);
+            if (lock.validate(stamp)) return value;
+        }
+        stamp = lock.readLock();
+        try {
+            return find(hi, lo);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /// Maps the given value to the given key, replacing the previous one if any.
+    ///
+    /// @return the previous value, or `null` if there was none
+    @SuppressWarnings("unchecked")
+    public T put(Key key, T value) {
+        if (value == null) throw new NullPointerException("Null values are not allowed");
+        long hi = key.hi();
+        long lo = key.lo();
+        long stamp = lock.writeLock();
+        try {
+            int mask = values.length - 1;
+            int i = spread(hi, lo) & mask;
+            int free = -1;
+            while (true) {
+                Object v = values[i];
+                if (v == null) break;
+                if (v == TOMBSTONE) {
+                    if (free < 0) free = i;
+                } else if (keys[i << 1] == hi && keys[(i << 1) + 1] == lo) {
+                    values[i] = value;
+                    return (T) v;
+                }
+                i = (i + 1) & mask;
+            }
+
+            if (free < 0) {
+                // Keep the load factor (including tombstones) below 1/2
+                if ((used + 1) << 1 > values.length) {
+                    rebuild((size + 1) << 2 > values.length ? values.length << 1 : values.length);
+                    place(hi, lo, value);
+                    size++;
+                    used++;
+                    return null;
+                }
+                free = i;
+                used++;
+            }
+            keys[free << 1] = hi;
+            keys[(free << 1) + 1] = lo;
+            values[free] = value;
+            size++;
+            return null;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /// Removes the given key only if it's mapped to the given value (the same instance).
+    ///
+    /// @return whether the mapping was removed
+    public boolean remove(Key key, T value) {
+        return remove(key.hi(), key.lo(), value);
+    }
+
+    /// Removes the given key only if it's mapped to the given value (the same instance).
+    ///
+    /// @return whether the mapping was removed
+    public boolean remove(long hi, long lo, T value) {
+        long stamp = lock.writeLock();
+        try {
+            int i = indexOf(hi, lo);
+            if (i < 0 || values[i] != value) return false;
+            values[i] = TOMBSTONE;
+            size--;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /// Removes all the mappings and shrinks the table.
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            keys = new long[MIN_CAPACITY << 1];
+            values = new Object[MIN_CAPACITY];
+            size = 0;
+            used = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /// Performs the given action for each value, while holding the read lock. The action must not modify the index.
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super T> action) {
+        long stamp = lock.readLock();
+        try {
+            for (Object v : values) {
+                if (v != null && v != TOMBSTONE) action.accept((T) v);
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /// @return the number of mappings
+    public int size() {
+        return size;
+    }
+
+    /// Probes the table for the given key. Safe to call during optimistic reads, the result is discarded if the table
+    /// was modified concurrently.
+    @SuppressWarnings("unchecked")
+    private T find(long hi, long lo) {
+        long[] keys = this.keys;
+        Object[] values = this.values;
+        if (keys.length != values.length << 1) return null; // Torn read of a rebuild, will be validated
+        int mask = values.length - 1;
+        int i = spread(hi, lo) & mask;
+        for (int n = 0; n <= mask; n++) {
+            Object v = values[i];
+            if (v == null) return null;
+            if (v != TOMBSTONE && keys[i << 1] == hi && keys[(i << 1) + 1] == lo) return (T) v;
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /// @return the slot of the given key, or -1 if not present. Must be called while holding the lock
+    private int indexOf(long hi, long lo) {
+        int mask = values.length - 1;
+        int i = spread(hi, lo) & mask;
+        while (true) {
+            Object v = values[i];
+            if (v == null) return -1;
+            if (v != TOMBSTONE && keys[i << 1] == hi && keys[(i << 1) + 1] == lo) return i;
+            i = (i + 1) & mask;
+        }
+    }
+
+    /// Stores the given mapping in the first free slot, without updating the counters. The lock must be held, the table
+    /// must have room and the key must not be present.
+    private void place(long hi, long lo, Object value) {
+        int mask = values.length - 1;
+        int i = spread(hi, lo) & mask;
+        while (values[i] != null) i = (i + 1) & mask;
+        keys[i << 1] = hi;
+        keys[(i << 1) + 1] = lo;
+        values[i] = value;
+    }
+
+    /// Rehashes all the live mappings in a new table with the given capacity, discarding tombstones. The size doesn't
+    /// change, so that it can be read without the lock.
+    private void rebuild(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity << 1];
+        values = new Object[capacity];
+        for (int i = 0; i < oldValues.length; i++) {
+            Object v = oldValues[i];
+            if (v != null && v != TOMBSTONE) place(oldKeys[i << 1], oldKeys[(i << 1) + 1], v);
+        }
+        used = size;
+    }
+
+    /// @return a power of two table size able to hold the given number of entries at a load factor of 1/2
+    private static int tableSize(int expectedSize) {
+        int n = Math.max(MIN_CAPACITY, expectedSize << 1);
+        return Integer.highestOneBit(n - 1) << 1;
+    }
+
+    private static int spread(long hi, long lo) {
+        long h = (hi ^ lo) * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32);
+    }
+}
@@ -25,6 +25,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Map;
 import java.util.Optional;
 import java.util.SequencedMap;
 
@@ -35,6 +36,9 @@ import io.github.palexdev.imcache.utils.ImageUtils;
 /// Simplest concrete implementation of [ImgCache]. Images are directly stored in memory as they are, and therefore
 /// [#getImage(String)] is a direct call to the backing data structure.
 ///
+/// By default, entries are weighed by the size of their raw data ([Weigher#imageSize()]), so the cache can be bounded
+/// to a memory budget with [#setMaxWeight(long)].
+///
 /// That said, this cache still offers some operations that involve persistent storage.
 /// 1) It's possible to convert this to a [DiskCache] via [#toDisk(Path)]
 /// 2) It's possible to load previously persisted images via [#load(Path)] or [#load(Path, int)]
@@ -44,11 +48,14 @@ public class MemoryCache extends ImgCache<ImImage> {
     // Constructors
     //================================================================================
     public MemoryCache() {
-        super();
+        super(Weigher.imageSize());
     }
 
+    /// @deprecated the cache is not backed by a map anymore, see [ImgCache#ImgCache(SequencedMap)]
+    @Deprecated
     protected MemoryCache(SequencedMap<String, ImImage> cache) {
-        super(cache);
+        this();
+        seed(cache);
     }
 
     /// Delegates to [#load(Path, int)] with capacity set to [#DEFAULT_CAPACITY]
@@ -100,11 +107,12 @@ public class MemoryCache extends ImgCache<ImImage> {
     // Methods
     //================================================================================
 
-    /// Creates a new [DiskCache] object, sets its capacity the same as this cache and finally calls [DiskCache#store(String, ImImage)]
-    /// on each entry in this cache.
+    /// Creates a new [DiskCache] object, sets its capacity and max weight the same as this cache and finally calls
+    /// [DiskCache#store(String, ImImage)] on each entry in this cache.
     public DiskCache toDisk(Path savePath) {
         DiskCache dCache = new DiskCache(savePath);
         dCache.setCapacity(capacity);
+        dCache.setMaxWeight(maxWeight);
         forEach(dCache::store);
         return dCache;
     }
@@ -113,9 +121,21 @@ public class MemoryCache extends ImgCache<ImImage> {
     // Overridden Methods
     //================================================================================
 
+    /// Delegates to [#storeAll(Map)], which acquires the lock only once.
+    @Override
+    public void storeImages(Map<String, ? extends ImImage> images) {
+        storeAll(images);
+    }
+
     /// Direct access to the backing data structure, [#get(String)].
     @Override
     public Optional<ImImage> getImage(String id) {
         return get(id);
     }
+
+    /// Direct access to the backing data structure, [#get(Key)].
+    @Override
+    public Optional<ImImage> getImage(Key key) {
+        return get(key);
+    }
 }
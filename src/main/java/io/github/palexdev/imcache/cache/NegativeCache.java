@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2025 Parisi Alessandro - alessandro.parisi406@gmail.com
+ * This file is part of ImCache (https://github.com/palexdev/imcache)
+ *
+ * ImCache is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * ImCache is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ImCache. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.palexdev.imcache.cache;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import io.github.palexdev.imcache.core.ImCache;
+import io.github.palexdev.imcache.exceptions.HostUnavailableException;
+import io.github.palexdev.imcache.exceptions.UnsupportedMediaTypeException;
+
+/// A small, bounded cache of failures, mapping ids to the exception that caused a resource to fail loading. It's used by
+/// [ImCache] to fail fast, without hitting the network again, for resources that failed recently, see
+/// [ImCache#negativeCacheConfig(java.util.function.Supplier)].
+///
+/// Failures are remembered for a short time, which depends on their [FailureKind]:
+/// - [FailureKind#TRANSIENT] failures (e.g. I/O errors, timeouts) may resolve by themselves soon, by default they are
+/// remembered for 5 seconds
+/// - [FailureKind#PERMANENT] failures (e.g. not found, unsupported type) are not likely to change, by default they are
+/// remembered for 5 minutes
+///
+/// Failures are classified by the function set with [#setClassifier(Function)], the default is [#classify(Throwable)].
+/// Failures that are not classified (e.g. loads that were interrupted) are not remembered. When the capacity is exceeded, the oldest failures are removed first.
+public class NegativeCache {
+    //================================================================================
+    // Properties
+    //================================================================================
+    private final Map<String, Failure> failures = new LinkedHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private int capacity;
+    private volatile long transientTtl = TimeUnit.SECONDS.toNanos(5);
+    private volatile long permanentTtl = TimeUnit.MINUTES.toNanos(5);
+    private volatile Function<Throwable, FailureKind> classifier = NegativeCache::classify;
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    public NegativeCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public NegativeCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    //================================================================================
+    // Methods
+    //================================================================================
+
+    /// @return the failure remembered for the given id, if any and not expired yet
+    public Optional<Throwable> get(String id) {
+        lock.lock();
+        try {
+            Failure failure = failures.get(id);
+            if (failure == null) return Optional.empty();
+            if (failure.deadline() - now() <= 0) {
+                failures.remove(id);
+                return Optional.empty();
+            }
+            return Optional.of(failure.error());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// Remembers the given failure for the given id, for a time that depends on its [FailureKind]. If the classifier
+    /// returns `null` or the TTL for the kind is zero, the failure is not remembered.
+    public void record(String id, Throwable error) {
+        FailureKind kind = classifier.apply(error);
+        if (kind == null) return;
+        long ttl = (kind == FailureKind.PERMANENT) ? permanentTtl : transientTtl;
+        if (ttl <= 0 || capacity <= 0) return;
+        lock.lock();
+        try {
+            // Re-insert so that the failure becomes the youngest
+            failures.remove(id);
+            failures.put(id, new Failure(error, kind, now() + ttl));
+            trim();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// Forgets the failure for the given id.
+    ///
+    /// @return whether a failure was remembered
+    public boolean remove(String id) {
+        lock.lock();
+        try {
+            return failures.remove(id) != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// Forgets all the failures.
+    public void clear() {
+        lock.lock();
+        try {
+            failures.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// @return the number of remembered failures, including the expired ones that were not removed yet
+    public int size() {
+        lock.lock();
+        try {
+            return failures.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// @return the current time in nanoseconds, used to compute the deadlines
+    protected long now() {
+        return System.nanoTime();
+    }
+
+    /// Removes the oldest failures until the size is within the capacity. Must be called while holding the lock.
+    private void trim() {
+        var it = failures.values().iterator();
+        while (failures.size() > capacity && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private static long toNanos(Duration duration) {
+        if (duration == null || duration.isNegative()) return 0L;
+        try {
+            return duration.toNanos();
+        } catch (ArithmeticException ex) {
+            return Long.MAX_VALUE / 2;
+        }
+    }
+
+    //================================================================================
+    // Static Methods
+    //================================================================================
+
+    /// Default classifier. Walks the causes of the given exception and returns [FailureKind#PERMANENT] if it finds an
+    /// [UnsupportedMediaTypeException] or a [FileNotFoundException] (which is how [java.net.HttpURLConnection] reports
+    /// 404 and 410 responses), [FailureKind#TRANSIENT] if it finds any other [IOException] or a
+    /// [HostUnavailableException]. Other failures are considered permanent, since retrying is not going to fix them.
+    ///
+    /// Returns `null` if the load was abandoned rather than failed, see [#isAbandoned(Throwable)], since there's nothing
+    /// to remember.
+    public static FailureKind classify(Throwable error) {
+        if (isAbandoned(error)) return null;
+        for (Throwable t = error; t != null; t = (t.getCause() == t) ? null : t.getCause()) {
+            if (t instanceof UnsupportedMediaTypeException || t instanceof FileNotFoundException) {
+                return FailureKind.PERMANENT;
+            }
+            if (t instanceof IOException || t instanceof HostUnavailableException) return FailureKind.TRANSIENT;
+        }
+        return FailureKind.PERMANENT;
+    }
+
+    /// @return whether the given exception, or any of its causes, is an [InterruptedException], a
+    /// [ClosedByInterruptException] or a [CancellationException], meaning that the load was abandoned by its callers
+    public static boolean isAbandoned(Throwable error) {
+        for (Throwable t = error; t != null; t = (t.getCause() == t) ? null : t.getCause()) {
+            if (t instanceof InterruptedException || t instanceof ClosedByInterruptException ||
+                t instanceof CancellationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //================================================================================
+    // Getters/Setters
+    //================================================================================
+
+    /// @return the maximum number of remembered failures
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /// Sets the maximum number of remembered failures, removing the oldest ones if it shrinks.
+    public NegativeCache setCapacity(int capacity) {
+        lock.lock();
+        try {
+            this.capacity = capacity;
+            trim();
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    /// @return for how long transient failures are remembered
+    public Duration getTransientTtl() {
+        return Duration.ofNanos(transientTtl);
+    }
+
+    /// Sets for how long transient failures are remembered. `null` or [Duration#ZERO] disable caching them.
+    public NegativeCache setTransientTtl(Duration ttl) {
+        this.transientTtl = toNanos(ttl);
+        return this;
+    }
+
+    /// @return for how long permanent failures are remembered
+    public Duration getPermanentTtl() {
+        return Duration.ofNanos(permanentTtl);
+    }
+
+    /// Sets for how long permanent failures are remembered. `null` or [Duration#ZERO] disable caching them.
+    public NegativeCache setPermanentTtl(Duration ttl) {
+        this.permanentTtl = toNanos(ttl);
+        return this;
+    }
+
+    /// @return the function used to classify failures
+    public Function<Throwable, FailureKind> getClassifier() {
+        return classifier;
+    }
+
+    /// Sets the function used to classify failures, `null` restores the default one, [#classify(Throwable)]. The
+    /// function may return `null` for failures that must not be remembered.
+    public NegativeCache setClassifier(Function<Throwable, FailureKind> classifier) {
+        this.classifier = (classifier != null) ? classifier : NegativeCache::classify;
+        return this;
+    }
+
+    //================================================================================
+    // Inner Classes
+    //================================================================================
+
+    /// Enumeration of the kinds of failures, which determine for how long they are remembered.
+    public enum FailureKind {
+        /// The failure may resolve by itself soon, e.g. an I/O error or a timeout.
+        TRANSIENT,
+
+        /// The failure is not likely to change, e.g. the resource was not found or its type is not supported.
+        PERMANENT,
+    }
+
+    /// A remembered failure.
+    ///
+    /// @param deadline the time after which the failure is forgotten, see [#now()]
+    private record Failure(Throwable error, FailureKind kind, long deadline) {}
+}
@@ -0,0 +1,433 @@
+/*
+ * Copyright (C) 2025 Parisi Alessandro - alessandro.parisi406@gmail.com
+ * This file is part of ImCache (https://github.com/palexdev/imcache)
+ *
+ * ImCache is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * ImCache is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ImCache. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.palexdev.imcache.cache;
+
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import io.github.palexdev.imcache.exceptions.ImCacheException;
+
+/// An off-heap allocator for image data, used by [OffHeapMemoryCache].
+///
+/// Memory is reserved in large slabs of direct memory ([ByteBuffer#allocateDirect(int)]), so that the data of many
+/// images lives outside the Java heap and doesn't weigh on the garbage collector. Each allocation takes a [Block] from a
+/// slab; allocations are aligned to 64 bytes. Data bigger than a slab gets a dedicated slab.
+///
+/// Released blocks go back to the free-list of their slab, and adjacent free ranges are coalesced, so that the space can
+/// be reused by following allocations (first-fit). Slabs left empty are dropped, except for the last one.
+///
+/// Over time, the slabs can become fragmented. [#compact()] moves the live blocks to the start of their slabs and then
+/// tries to move the blocks of the emptiest slabs into the fuller ones, dropping the slabs that become empty.
+///
+/// All the operations are synchronized on the arena.
+///
+/// _Note:_
+///
+/// The memory of a block is reused once it's released, and it's moved by [#compact()]. Data can be copied
+/// ([Block#copy()]) or read in place while holding the arena's lock ([Block#read(Function)]). Views of the data that
+/// can be retained are handed out by [Block#pin()]: as long as a block is pinned, it's neither moved nor reused, even
+/// if it's released meanwhile, in which case its memory is reclaimed when the last [Pin] is closed. All of them fail
+/// fast if the block was released.
+public class OffHeapArena {
+    //================================================================================
+    // Static Properties
+    //================================================================================
+    /// Default slab size: 64 MiB
+    public static final int DEFAULT_SLAB_SIZE = 64 * 1024 * 1024;
+    private static final int ALIGNMENT = 64;
+    private static final int COPY_CHUNK = 64 * 1024;
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    //================================================================================
+    // Properties
+    //================================================================================
+    private final int slabSize;
+    private final List<Slab> slabs = new ArrayList<>();
+    private long used = 0;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    public OffHeapArena() {
+        this(DEFAULT_SLAB_SIZE);
+    }
+
+    public OffHeapArena(int slabSize) {
+        if (slabSize < ALIGNMENT) {
+            throw new ImCacheException("Slab size must be at least %d bytes: %d".formatted(ALIGNMENT, slabSize));
+        }
+        this.slabSize = slabSize - (slabSize % ALIGNMENT);
+    }
+
+    //================================================================================
+    // Methods
+    //================================================================================
+
+    /// Allocates a new [Block] and copies the remaining bytes of the given buffer into it. The buffer's position is not
+    /// changed.
+    public synchronized Block allocate(ByteBuffer src) {
+        int length = src.remaining();
+        int size = align(length);
+        Slab slab = null;
+        int offset = -1;
+        if (size > slabSize) {
+            slab = new Slab(size, true);
+            slabs.add(slab);
+            offset = slab.take(size);
+        } else {
+            for (Slab s : slabs) {
+                if (s.dedicated) continue;
+                offset = s.take(size);
+                if (offset >= 0) {
+                    slab = s;
+                    break;
+                }
+            }
+            if (slab == null) {
+                slab = new Slab(slabSize, false);
+                slabs.add(slab);
+                offset = slab.take(size);
+            }
+        }
+
+        Block block = new Block(slab, offset, length, size);
+        slab.buffer.put(offset, src, src.position(), length);
+        slab.live.put(offset, block);
+        used += size;
+        return block;
+    }
+
+    /// Delegates to [#allocate(ByteBuffer)] by wrapping the given array.
+    public Block allocate(byte[] data) {
+        return allocate(ByteBuffer.wrap(data));
+    }
+
+    /// Returns the given block's memory to its slab's free-list. No-op if the block was already released.
+    ///
+    /// If the block is pinned (see [Block#pin()]), the memory is returned only when the last pin is closed.
+    public synchronized void free(Block block) {
+        if (block.released) return;
+        block.released = true;
+        if (block.pins == 0) reclaim(block);
+    }
+
+    /// Compacts the arena to reduce fragmentation, see the class documentation.
+    ///
+    public synchronized void compact() {
+        byte[] chunk = new byte[COPY_CHUNK];
+        for (Slab slab : slabs) {
+            if (!slab.dedicated) slab.compact(chunk);
+        }
+
+        // Empty the sparsest slabs into the fullest ones
+        List<Slab> candidates = slabs.stream()
+            .filter(s -> !s.dedicated)
+            .sorted(Comparator.comparingInt(s -> s.used))
+            .toList();
+        for (Slab slab : candidates) {
+            for (Block block : new ArrayList<>(slab.live.values())) {
+                if (block.pins > 0) continue;
+                if (!move(block, slab)) break;
+            }
+            dropIfEmpty(slab);
+        }
+    }
+
+    /// Releases all the blocks and drops all the slabs. The views of pinned blocks stay valid, since dropped slabs are
+    /// never reused.
+    public synchronized void clear() {
+        for (Slab slab : slabs) {
+            slab.live.values().forEach(b -> {
+                b.released = true;
+                b.reclaimed = true;
+            });
+        }
+        slabs.clear();
+        used = 0;
+    }
+
+    /// Returns the memory of a released block to its slab's free-list, see [#free(Block)].
+    private void reclaim(Block block) {
+        block.reclaimed = true;
+        Slab slab = block.slab;
+        slab.live.remove(block.offset);
+        slab.release(block.offset, block.size);
+        used -= block.size;
+        dropIfEmpty(slab);
+    }
+
+    /// Moves the given block from its slab to another non-dedicated slab that is at least as full.
+    ///
+    /// @return false if no slab has enough free space
+    private boolean move(Block block, Slab from) {
+        for (Slab to : slabs) {
+            if (to == from || to.dedicated || to.used < from.used) continue;
+            int offset = to.take(block.size);
+            if (offset < 0) continue;
+            to.buffer.put(offset, from.buffer, block.offset, block.length);
+            from.live.remove(block.offset);
+            from.release(block.offset, block.size);
+            to.live.put(offset, block);
+            block.slab = to;
+            block.offset = offset;
+            return true;
+        }
+        return false;
+    }
+
+    private void dropIfEmpty(Slab slab) {
+        if (!slab.live.isEmpty()) return;
+        if (slab.dedicated || slabs.stream().filter(s -> !s.dedicated).count() > 1) {
+            slabs.remove(slab);
+        }
+    }
+
+    private static int align(int length) {
+        int size = (length + ALIGNMENT - 1) & -ALIGNMENT;
+        return Math.max(size, ALIGNMENT);
+    }
+
+    //================================================================================
+    // Getters
+    //================================================================================
+
+    /// @return the size of the slabs allocated by this arena
+    public int getSlabSize() {
+        return slabSize;
+    }
+
+    /// @return the number of slabs currently allocated
+    public synchronized int getSlabCount() {
+        return slabs.size();
+    }
+
+    /// @return the total amount of direct memory reserved by the slabs, in bytes
+    public synchronized long getReserved() {
+        return slabs.stream().mapToLong(s -> s.buffer.capacity()).sum();
+    }
+
+    /// @return the amount of memory taken by live blocks, including the alignment padding, in bytes
+    public synchronized long getUsed() {
+        return used;
+    }
+
+    //================================================================================
+    // Inner Classes
+    //================================================================================
+
+    /// A chunk of memory allocated by the arena, see [OffHeapArena#allocate(ByteBuffer)].
+    public final class Block {
+        private Slab slab;
+        private int offset;
+        private final int length;
+        private final int size;
+        private int pins = 0;
+        private boolean released = false;
+        private boolean reclaimed = false;
+
+        private Block(Slab slab, int offset, int length, int size) {
+            this.slab = slab;
+            this.offset = offset;
+            this.length = length;
+            this.size = size;
+        }
+
+        /// Reads the block's data in place, without copying it on the heap. The reader receives a read-only view of the
+        /// data while the arena's lock is held, so that the block can be neither released nor moved meanwhile.
+        ///
+        /// The view **must not** escape the reader, as the memory is reused once the block is released or moved.
+        ///
+        /// @return the reader's result
+        /// @throws ImCacheException if the block was released
+        public <T> T read(Function<ByteBuffer, T> reader) {
+            synchronized (OffHeapArena.this) {
+                checkReleased();
+                return reader.apply(slab.buffer.slice(offset, length).asReadOnlyBuffer());
+            }
+        }
+
+        /// Pins the block and returns a read-only view of its data which, unlike the one given to [#read(Function)], can
+        /// be retained. While the block is pinned, it's neither moved by [OffHeapArena#compact()] nor reused, even if it's
+        /// released meanwhile, see [Pin].
+        ///
+        /// @throws ImCacheException if the block was released
+        public Pin pin() {
+            synchronized (OffHeapArena.this) {
+                checkReleased();
+                pins++;
+                return new Pin(this, slab.buffer.slice(offset, length).asReadOnlyBuffer());
+            }
+        }
+
+        /// Removes a pin, reclaiming the memory if the block was released and this was the last pin.
+        private void unpin() {
+            synchronized (OffHeapArena.this) {
+                if (--pins == 0 && released && !reclaimed) reclaim(this);
+            }
+        }
+
+        /// @return a copy of the block's data on the heap
+        /// @throws ImCacheException if the block was released
+        public byte[] copy() {
+            synchronized (OffHeapArena.this) {
+                checkReleased();
+                byte[] data = new byte[length];
+                slab.buffer.get(offset, data);
+                return data;
+            }
+        }
+
+        /// Delegates to [OffHeapArena#free(Block)].
+        public void release() {
+            free(this);
+        }
+
+        /// @return the length of the block's data in bytes
+        public int length() {
+            return length;
+        }
+
+        public boolean isReleased() {
+            synchronized (OffHeapArena.this) {
+                return released;
+            }
+        }
+
+        /// @return whether the block is pinned, see [#pin()]
+        public boolean isPinned() {
+            synchronized (OffHeapArena.this) {
+                return pins > 0;
+            }
+        }
+
+        private void checkReleased() {
+            if (released) throw new ImCacheException("The memory block was already released");
+        }
+    }
+
+    /// A view of the data of a pinned [Block], see [Block#pin()].
+    ///
+    /// The view is valid until the pin is closed with [#close()], or until the pin becomes unreachable, in which case
+    /// it's closed automatically. This means that the [ByteBuffer] returned by [#buffer()] **must not** be retained
+    /// without the pin.
+    public static final class Pin implements AutoCloseable {
+        private final ByteBuffer buffer;
+        private final Cleaner.Cleanable cleanable;
+
+        private Pin(Block block, ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.cleanable = CLEANER.register(this, block::unpin);
+        }
+
+        /// @return a read-only view of the block's data, with its own position and limit
+        public ByteBuffer buffer() {
+            return buffer.duplicate();
+        }
+
+        /// @return the length of the block's data in bytes
+        public int length() {
+            return buffer.capacity();
+        }
+
+        /// Unpins the block. No-op if the pin was already closed.
+        @Override
+        public void close() {
+            cleanable.clean();
+        }
+    }
+
+    /// A region of direct memory with its live blocks (by offset) and its free ranges (offset -> length).
+    private static class Slab {
+        private final ByteBuffer buffer;
+        private final boolean dedicated;
+        private final TreeMap<Integer, Block> live = new TreeMap<>();
+        private final TreeMap<Integer, Integer> free = new TreeMap<>();
+        private int used = 0;
+
+        Slab(int size, boolean dedicated) {
+            this.buffer = ByteBuffer.allocateDirect(size);
+            this.dedicated = dedicated;
+            free.put(0, size);
+        }
+
+        /// First-fit allocation from the free-list.
+        ///
+        /// @return the offset of the allocated range, -1 if no free range is big enough
+        int take(int size) {
+            for (Map.Entry<Integer, Integer> e : free.entrySet()) {
+                int offset = e.getKey();
+                int length = e.getValue();
+                if (length < size) continue;
+                free.remove(offset);
+                if (length > size) free.put(offset + size, length - size);
+                used += size;
+                return offset;
+            }
+            return -1;
+        }
+
+        /// Gives the given range back to the free-list, coalescing it with the adjacent free ranges.
+        void release(int offset, int size) {
+            used -= size;
+            int start = offset;
+            int end = offset + size;
+            Map.Entry<Integer, Integer> prev = free.floorEntry(offset);
+            if (prev != null && prev.getKey() + prev.getValue() == offset) {
+                start = prev.getKey();
+                free.remove(start);
+            }
+            Integer next = free.remove(end);
+            if (next != null) end += next;
+            free.put(start, end - start);
+        }
+
+        /// Moves all the live blocks to the start of the slab, leaving a single free range at the end. Pinned blocks
+        /// stay where they are, so the ranges before them may stay free.
+        void compact(byte[] chunk) {
+            TreeMap<Integer, Block> moved = new TreeMap<>();
+            free.clear();
+            int position = 0;
+            for (Block block : live.values()) {
+                if (block.pins > 0) {
+                    if (block.offset > position) free.put(position, block.offset - position);
+                    position = block.offset;
+                } else if (block.offset != position) {
+                    // The destination always precedes the source, copying forward in chunks is safe
+                    for (int i = 0; i < block.length; i += chunk.length) {
+                        int n = Math.min(chunk.length, block.length - i);
+                        buffer.get(block.offset + i, chunk, 0, n);
+                        buffer.put(position + i, chunk, 0, n);
+                    }
+                    block.offset = position;
+                }
+                moved.put(position, block);
+                position += block.size;
+            }
+            live.clear();
+            live.putAll(moved);
+            if (position < buffer.capacity()) free.put(position, buffer.capacity() - position);
+        }
+    }
+}
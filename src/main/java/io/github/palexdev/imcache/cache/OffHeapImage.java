@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2025 Parisi Alessandro - alessandro.parisi406@gmail.com
+ * This file is part of ImCache (https://github.com/palexdev/imcache)
+ *
+ * ImCache is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * ImCache is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ImCache. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.palexdev.imcache.cache;
+
+import java.awt.image.BufferedImage;
+import java.lang.ref.Reference;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.function.Function;
+
+import io.github.palexdev.imcache.cache.OffHeapArena.Block;
+import io.github.palexdev.imcache.cache.OffHeapArena.Pin;
+import io.github.palexdev.imcache.core.ImImage;
+import io.github.palexdev.imcache.exceptions.ImCacheException;
+import io.github.palexdev.imcache.utils.Validators;
+
+/// An [ImImage] whose data lives off-heap in a [Block] allocated by an [OffHeapArena], see [OffHeapMemoryCache].
+///
+/// [#rawData()], [#buffer()] and all the methods that depend on them copy the data on the heap, while [#read(Function)]
+/// reads it in place.
+///
+/// Once the image is removed from its cache, the block is released and any access to the data throws an
+/// [ImCacheException]. Since the memory is then reused by other images, views of it that can be retained are only
+/// given by [#pin()], which keeps the block's memory valid until the returned [Pinned] image is closed.
+public class OffHeapImage extends ImImage {
+    //================================================================================
+    // Properties
+    //================================================================================
+    private final Block block;
+    private volatile Key contentKey;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    public OffHeapImage(URL url, Block block) {
+        this(url, block, null);
+    }
+
+    public OffHeapImage(URL url, Block block, Validators validators) {
+        super(url, null, validators);
+        this.block = block;
+    }
+
+    //================================================================================
+    // Methods
+    //================================================================================
+
+    /// Reads the image's data in place, see [Block#read(Function)].
+    public <T> T read(Function<ByteBuffer, T> reader) {
+        return block.read(reader);
+    }
+
+    /// Pins the block holding this image's data and returns an image that reads it in place, see [Pinned].
+    ///
+    /// @throws ImCacheException if the block was already released
+    public Pinned pin() {
+        return new Pinned(this, block.pin());
+    }
+
+    /// Releases the block holding this image's data, see [Block#release()].
+    public void release() {
+        block.release();
+    }
+
+    //================================================================================
+    // Overridden Methods
+    //================================================================================
+
+    /// @return a copy of the off-heap data, see [Block#copy()]
+    @Override
+    public byte[] rawData() {
+        return block.copy();
+    }
+
+    /// @return a read-only buffer wrapping a copy of the off-heap data, see [#rawData()]
+    @Override
+    public ByteBuffer buffer() {
+        return ByteBuffer.wrap(block.copy()).asReadOnlyBuffer();
+    }
+
+    @Override
+    public int size() {
+        return block.length();
+    }
+
+    /// Computes the hash in place, see [#read(Function)]. It's shared with the images returned by [#pin()].
+    @Override
+    public Key contentKey() {
+        Key k = contentKey;
+        if (k == null) {
+            k = read(Key::of);
+            contentKey = k;
+        }
+        return k;
+    }
+
+    //================================================================================
+    // Getters
+    //================================================================================
+
+    /// @return the off-heap memory block holding the image's data
+    public Block getBlock() {
+        return block;
+    }
+
+    //================================================================================
+    // Internal Classes
+    //================================================================================
+
+    /// An [ImImage] that reads the data of a pinned [Block] in place, see [OffHeapImage#pin()].
+    ///
+    /// [#buffer()] returns a read-only view of the off-heap memory, and decoding (e.g. [#asImage()]) reads it
+    /// without copying it on the heap. The memory stays valid, even if the image is removed from its cache, until
+    /// the image is closed or becomes unreachable. For this reason, buffers returned by [#buffer()] **must not** be
+    /// retained without the image. [#rawData()] still returns a copy.
+    public static class Pinned extends ImImage implements AutoCloseable {
+        private final OffHeapImage owner;
+        private final Pin pin;
+
+        private Pinned(OffHeapImage owner, Pin pin) {
+            super(owner.url(), null, owner.validators());
+            this.owner = owner;
+            this.pin = pin;
+        }
+
+        /// @return a copy of the pinned data on the heap
+        @Override
+        public byte[] rawData() {
+            ByteBuffer buffer = pin.buffer();
+            byte[] data = new byte[buffer.remaining()];
+            buffer.get(data);
+            return data;
+        }
+
+        /// @return a read-only view of the pinned off-heap data, valid as long as this image is open
+        @Override
+        public ByteBuffer buffer() {
+            return pin.buffer();
+        }
+
+        @Override
+        public int size() {
+            return pin.length();
+        }
+
+        /// @return the hash of the cached image, see [OffHeapImage#contentKey()]. If not computed yet, it's computed
+        /// from the pinned data and shared with the cached image
+        @Override
+        public Key contentKey() {
+            Key k = owner.contentKey;
+            if (k == null) {
+                k = super.contentKey();
+                owner.contentKey = k;
+            }
+            return k;
+        }
+
+        @Override
+        public BufferedImage asImage(BitmapCache bitmaps) {
+            try {
+                return super.asImage(bitmaps);
+            } finally {
+                Reference.reachabilityFence(this);
+            }
+        }
+
+        @Override
+        public BufferedImage sharedImage(BitmapCache bitmaps) {
+            try {
+                return super.sharedImage(bitmaps);
+            } finally {
+                Reference.reachabilityFence(this);
+            }
+        }
+
+        /// Unpins the block, see [Pin#close()]. The image's data must not be accessed anymore.
+        @Override
+        public void close() {
+            pin.close();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2025 Parisi Alessandro - alessandro.parisi406@gmail.com
+ * This file is part of ImCache (https://github.com/palexdev/imcache)
+ *
+ * ImCache is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * ImCache is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ImCache. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.palexdev.imcache.cache;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+import io.github.palexdev.imcache.core.ImImage;
+import io.github.palexdev.imcache.exceptions.ImCacheException;
+
+/// A [MemoryCache] that keeps the images' data off-heap, in an [OffHeapArena], to reduce the pressure on the garbage
+/// collector when caching a large amount of images.
+///
+/// Images stored in this cache are copied to the arena and wrapped in [OffHeapImage] objects. Their memory is released
+/// as soon as they are removed from the cache, whether explicitly, by eviction, expiration or replacement. If a
+/// [RemovalListener] is set, the memory is released only after the listener was notified, so that it can still read
+/// the removed image.
+///
+/// The arena can be compacted with [#compact()] to reduce fragmentation and give unused slabs back.
+///
+/// _Note:_
+///
+/// Since memory is reused once an entry is removed, [#getImage(String)] returns on-heap copies, which can be retained
+/// safely. [#probeImage(Key)], used by the requests, instead returns [OffHeapImage.Pinned] images, which read the
+/// off-heap data in place and keep it valid until they are closed or become unreachable, even if the entry is removed
+/// or the arena compacted meanwhile. The [OffHeapImage] objects returned by [#get(String)] also give access to the
+/// off-heap data without copying it (see [OffHeapImage#read(Function)]), but fail as soon as the entry is removed.
+public class OffHeapMemoryCache extends MemoryCache {
+    //================================================================================
+    // Properties
+    //================================================================================
+    private final OffHeapArena arena;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    public OffHeapMemoryCache() {
+        this(new OffHeapArena());
+    }
+
+    public OffHeapMemoryCache(OffHeapArena arena) {
+        this.arena = arena;
+    }
+
+    //================================================================================
+    // Methods
+    //================================================================================
+
+    /// Compacts the arena while holding the cache's lock, see [OffHeapArena#compact()].
+    public void compact() {
+        lock.lock();
+        try {
+            arena.compact();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //================================================================================
+    // Overridden Methods
+    //================================================================================
+
+    /// Copies the image's data to the arena and then delegates to [#put(String, Object)]. If the entry is rejected, the
+    /// memory is released immediately.
+    @Override
+    public void store(String id, ImImage img) {
+        ByteBuffer data = img.buffer();
+        OffHeapImage copy = new OffHeapImage(img.url(), arena.allocate(data), img.validators());
+        if (!put(id, copy)) copy.release();
+    }
+
+    /// Copies all the images' data to the arena and then delegates to [#putAll(Map)]. The memory of the rejected entries is
+    /// released immediately.
+    @Override
+    public void storeAll(Map<String, ? extends ImImage> values) {
+        Map<String, ImImage> copies = new LinkedHashMap<>();
+        values.forEach((id, img) -> copies.put(id, new OffHeapImage(img.url(), arena.allocate(img.buffer()), img.validators())));
+        putAll(copies).values().forEach(img -> ((OffHeapImage) img).release());
+    }
+
+    /// @return an on-heap copy of the cached image, see the class documentation
+    @Override
+    public Optional<ImImage> getImage(String id) {
+        return get(id).flatMap(this::copy);
+    }
+
+    /// @return an on-heap copy of the cached image, see the class documentation
+    @Override
+    public Optional<ImImage> getImage(Key key) {
+        return get(key).flatMap(this::copy);
+    }
+
+    /// @return an on-heap copy of the cached image, without recording the lookup, see [ImgCache#peekImage(String)]
+    @Override
+    protected Optional<ImImage> peekImage(String id) {
+        return super.peekImage(id).flatMap(this::copy);
+    }
+
+    /// @return a pinned view of the cached image, see the class documentation
+    @Override
+    public Optional<ImImage> probeImage(Key key) {
+        return probe(key).flatMap(this::pin);
+    }
+
+    /// @return a pinned view of the given image, empty if its memory was released after the lookup
+    private Optional<ImImage> pin(ImImage img) {
+        if (!(img instanceof OffHeapImage ohi)) return Optional.of(img);
+        try {
+            return Optional.of(ohi.pin());
+        } catch (ImCacheException ex) {
+            return Optional.empty();
+        }
+    }
+
+    /// @return an on-heap copy of the given image, empty if its memory was released after the lookup
+    private Optional<ImImage> copy(ImImage img) {
+        if (!(img instanceof OffHeapImage ohi)) return Optional.of(img);
+        try {
+            return Optional.of(ImImage.wrap(ohi.url(), ohi.rawData(), ohi.validators()));
+        } catch (ImCacheException ex) {
+            return Optional.empty();
+        }
+    }
+
+    /// Releases the memory of an image that left the cache, once the [RemovalListener] (if any) was notified.
+    @Override
+    protected void dispose(String id, ImImage img, RemovalCause cause) {
+        if (img instanceof OffHeapImage ohi) ohi.release();
+    }
+
+    //================================================================================
+    // Getters
+    //================================================================================
+
+    /// @return the arena holding the images' data
+    public OffHeapArena getArena() {
+        return arena;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2025 Parisi Alessandro - alessandro.parisi406@gmail.com
+ * This file is part of ImCache (https://github.com/palexdev/imcache)
+ *
+ * ImCache is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * ImCache is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ImCache. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.palexdev.imcache.cache;
+
+import java.time.Duration;
+
+/// Enumeration of the reasons for which an entry can be removed from an [ImgCache].
+public enum RemovalCause {
+
+    /// The entry was removed explicitly, e.g. by [ImgCache#remove(String)].
+    EXPLICIT,
+
+    /// The entry's value was replaced by a new one for the same id.
+    REPLACED,
+
+    /// The entry was evicted to make room, because the cache exceeded its capacity or max weight.
+    SIZE,
+
+    /// The entry expired, see [ImgCache#setExpireAfterWrite(Duration)] and [ImgCache#setExpireAfterAccess(Duration)].
+    EXPIRED,
+
+    /// The entry was removed by [ImgCache#clear()].
+    CLEARED,
+    ;
+
+    /// @return whether the removal was decided by the cache rather than requested by the user, [#SIZE] and [#EXPIRED]
+    public boolean wasEvicted() {
+        return this == SIZE || this == EXPIRED;
+    }
+}
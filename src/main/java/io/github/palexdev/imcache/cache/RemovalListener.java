@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2025 Parisi Alessandro - alessandro.parisi406@gmail.com
+ * This file is part of ImCache (https://github.com/palexdev/imcache)
+ *
+ * ImCache is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * ImCache is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ImCache. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.palexdev.imcache.cache;
+
+import java.util.concurrent.Executor;
+
+/// Listener notified when entries are removed from an [ImgCache], see [ImgCache#setRemovalListener(RemovalListener)].
+///
+/// Notifications are dispatched asynchronously on the cache's executor ([ImgCache#setListenerExecutor(Executor)]),
+/// so a slow listener never blocks the cache's operations. For the same reason, by the time the listener is called, the
+/// entry may have been stored again.
+///
+/// The removed value is still valid while the listener runs: caches that hold resources for their values (e.g. the
+/// memory of [OffHeapMemoryCache], the files of [DiskCache]) release them only after the listener returns.
+///
+/// @param <V> the type of data stored by the cache
+@FunctionalInterface
+public interface RemovalListener<V> {
+
+    /// Called when the given entry is removed from the cache for the given cause.
+    void onRemoval(String id, V value, RemovalCause cause);
+}
@@ -0,0 +1,494 @@
+/*
+ * Copyright (C) 2025 Parisi Alessandro - alessandro.parisi406@gmail.com
+ * This file is part of ImCache (https://github.com/palexdev/imcache)
+ *
+ * ImCache is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * ImCache is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ImCache. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.palexdev.imcache.cache;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import io.github.palexdev.imcache.cache.policy.AdmissionFilter;
+import io.github.palexdev.imcache.cache.policy.EvictionPolicy;
+import io.github.palexdev.imcache.core.ImImage;
+import io.github.palexdev.imcache.exceptions.ImCacheException;
+
+/// An [ImgCache] split into a number of independent shards, to scale better with many concurrent writers.
+///
+/// Each shard is a full [ImgCache] with its own lock, [EvictionPolicy], expiration and a slice of the total capacity
+/// (and max weight). Ids are hashed to shards, so that operations on different shards never contend with each other.
+/// The number of shards is rounded up to a power of two.
+///
+/// Shards are created by the given factory, which means that any cache of images can be sharded (e.g. [MemoryCache],
+/// [OffHeapMemoryCache], [TieredCache]), see [#memory(int)] for the most common case. Operations on a single id are delegated to its shard, while [#size()],
+/// [#asMap()], iteration and the capacity/weight getters aggregate across the shards. Settings are applied to all the
+/// shards, [#setAdmissionFilter(AdmissionFilter)] shares the same filter.
+///
+/// _Note:_
+///
+/// Since every shard evicts independently, the eviction order is only approximate across the whole cache, and a skewed
+/// distribution of ids may cause a shard to evict before the cache reaches its total capacity.
+///
+/// Eviction policies are stateful, so they cannot be shared: [#setEvictionPolicy(EvictionPolicy)] gives every shard its
+/// own instance, see [EvictionPolicy#newInstance()], and [#setEvictionPolicy(Supplier)] creates them with a factory.
+///
+/// All the entries live in the shards: the state this class inherits from [ImgCache] (index, lock, timers) stays empty,
+/// and every operation is delegated.
+public class ShardedCache extends ImgCache<ImImage> {
+    //================================================================================
+    // Properties
+    //================================================================================
+    private final ImgCache<ImImage>[] shards;
+    private final int mask;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    public ShardedCache(Supplier<? extends ImgCache<ImImage>> factory) {
+        this(Runtime.getRuntime().availableProcessors(), factory);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ShardedCache(int shards, Supplier<? extends ImgCache<ImImage>> factory) {
+        if (shards <= 0) {
+            throw new ImCacheException("The number of shards must be positive: " + shards);
+        }
+        int n = Integer.highestOneBit(Math.min(shards, 1 << 16) * 2 - 1);
+        this.shards = new ImgCache[n];
+        this.mask = n - 1;
+        for (int i = 0; i < n; i++) {
+            this.shards[i] = factory.get();
+        }
+        distributeCapacity(DEFAULT_CAPACITY);
+    }
+
+    /// @return a new [ShardedCache] made of [MemoryCache] shards
+    public static ShardedCache memory(int shards) {
+        return new ShardedCache(shards, MemoryCache::new);
+    }
+
+    //================================================================================
+    // Methods
+    //================================================================================
+
+    /// @return the shard responsible for the given id, see [#shard(Key)]
+    public ImgCache<ImImage> shard(String id) {
+        return shard(Key.of(id));
+    }
+
+    /// @return the shard responsible for the given [Key]. Since the key is derived from the id, lookups by id and by
+    /// key always end up in the same shard
+    public ImgCache<ImImage> shard(Key key) {
+        return shards[(int) (key.hi() >>> 32) & mask];
+    }
+
+    /// @return an unmodifiable view of the shards
+    public List<ImgCache<ImImage>> getShards() {
+        return List.of(shards);
+    }
+
+    /// Sets the [EvictionPolicy] of every shard to a new instance created by the given factory.
+    public ShardedCache setEvictionPolicy(Supplier<? extends EvictionPolicy> factory) {
+        for (ImgCache<ImImage> shard : shards) {
+            shard.setEvictionPolicy(factory.get());
+        }
+        return this;
+    }
+
+    /// Groups the given ids by shard, preserving their order.
+    private Map<ImgCache<ImImage>, List<String>> group(Collection<String> ids) {
+        Map<ImgCache<ImImage>, List<String>> groups = new LinkedHashMap<>();
+        for (String id : ids) {
+            groups.computeIfAbsent(shard(id), s -> new ArrayList<>()).add(id);
+        }
+        return groups;
+    }
+
+    /// Groups the given entries by shard, preserving their order.
+    private Map<ImgCache<ImImage>, Map<String, ImImage>> group(Map<String, ? extends ImImage> entries) {
+        Map<ImgCache<ImImage>, Map<String, ImImage>> groups = new LinkedHashMap<>();
+        entries.forEach((id, img) -> groups.computeIfAbsent(shard(id), s -> new LinkedHashMap<>()).put(id, img));
+        return groups;
+    }
+
+    /// Splits the given total into as many slices as the shards. The remainder is distributed to the first shards.
+    private long slice(long total, int index) {
+        if (total == Long.MAX_VALUE) return total;
+        long slice = total / shards.length;
+        return slice + (index < total % shards.length ? 1 : 0);
+    }
+
+    /// Core logic of [#setCapacity(int)], also used by the constructor.
+    private void distributeCapacity(int capacity) {
+        int total = Math.max(capacity, 0);
+        for (int i = 0; i < shards.length; i++) {
+            shards[i].setCapacity((int) slice(total, i));
+        }
+    }
+
+    //================================================================================
+    // Overridden Methods
+    //================================================================================
+    @Override
+    public void store(String id, ImImage img) {
+        shard(id).store(id, img);
+    }
+
+    @Override
+    public Optional<ImImage> getImage(String id) {
+        return shard(id).getImage(id);
+    }
+
+    @Override
+    protected Optional<ImImage> peekImage(String id) {
+        return shard(id).peekImage(id);
+    }
+
+    @Override
+    public Optional<ImImage> get(String id) {
+        return shard(id).get(id);
+    }
+
+    @Override
+    public boolean contains(String id) {
+        return shard(id).contains(id);
+    }
+
+    @Override
+    public Optional<ImImage> getImage(Key key) {
+        return shard(key).getImage(key);
+    }
+
+    @Override
+    public Optional<ImImage> probeImage(Key key) {
+        return shard(key).probeImage(key);
+    }
+
+    @Override
+    public Optional<ImImage> get(Key key) {
+        return shard(key).get(key);
+    }
+
+    @Override
+    public boolean contains(Key key) {
+        return shard(key).contains(key);
+    }
+
+    @Override
+    public boolean remove(Key key) {
+        return shard(key).remove(key);
+    }
+
+    @Override
+    public Optional<String> idOf(Key key) {
+        return shard(key).idOf(key);
+    }
+
+    @Override
+    public ImImage get(String id, Function<String, ? extends ImImage> loader) {
+        return shard(id).get(id, loader);
+    }
+
+    @Override
+    public CompletableFuture<ImImage> getAsync(String id, Function<String, ? extends ImImage> loader, Executor executor) {
+        return shard(id).getAsync(id, loader, executor);
+    }
+
+    @Override
+    public Optional<Duration> getAge(String id) {
+        return shard(id).getAge(id);
+    }
+
+    @Override
+    public Optional<Duration> getAge(Key key) {
+        return shard(key).getAge(key);
+    }
+
+    @Override
+    public boolean remove(String id) {
+        return shard(id).remove(id);
+    }
+
+    /// Groups the ids by shard, so that each shard is asked only once.
+    @Override
+    public Map<String, ImImage> getAll(Collection<String> ids) {
+        Map<String, ImImage> values = new LinkedHashMap<>();
+        group(ids).forEach((shard, group) -> values.putAll(shard.getAll(group)));
+        return values;
+    }
+
+    /// Groups the entries by shard, so that each shard acquires its lock only once.
+    @Override
+    public void storeAll(Map<String, ? extends ImImage> values) {
+        group(values).forEach(ImgCache::storeAll);
+    }
+
+    /// Groups the images by shard and delegates to each shard's [ImgCache#storeImages(Map)].
+    @Override
+    public void storeImages(Map<String, ? extends ImImage> images) {
+        group(images).forEach(ImgCache::storeImages);
+    }
+
+    /// Groups the ids by shard, so that each shard acquires its lock only once.
+    @Override
+    public int removeAll(Collection<String> ids) {
+        int removed = 0;
+        for (Map.Entry<ImgCache<ImImage>, List<String>> e : group(ids).entrySet()) {
+            removed += e.getKey().removeAll(e.getValue());
+        }
+        return removed;
+    }
+
+    /// Removes the oldest entry from the biggest shard.
+    @Override
+    public boolean removeOldest() {
+        return Arrays.stream(shards)
+            .max(Comparator.comparingInt(ImgCache::size))
+            .map(ImgCache::removeOldest)
+            .orElse(false);
+    }
+
+    @Override
+    public boolean setExpiry(String id, Duration ttl) {
+        return shard(id).setExpiry(id, ttl);
+    }
+
+    @Override
+    public boolean touch(String id) {
+        return shard(id).touch(id);
+    }
+
+    @Override
+    public void cleanUp() {
+        for (ImgCache<ImImage> shard : shards) {
+            shard.cleanUp();
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (ImgCache<ImImage> shard : shards) {
+            shard.clear();
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (ImgCache<ImImage> shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    /// @return a snapshot of all the shards. Entries are ordered by shard, and then by the order of each shard's
+    /// [EvictionPolicy]
+    @Override
+    public SequencedMap<String, ImImage> asMap() {
+        SequencedMap<String, ImImage> snapshot = new LinkedHashMap<>();
+        for (ImgCache<ImImage> shard : shards) {
+            snapshot.putAll(shard.asMap());
+        }
+        return Collections.unmodifiableSequencedMap(snapshot);
+    }
+
+    @Override
+    public int getCapacity() {
+        long capacity = 0;
+        for (ImgCache<ImImage> shard : shards) {
+            capacity += shard.getCapacity();
+        }
+        return (int) Math.min(capacity, Integer.MAX_VALUE);
+    }
+
+    /// Splits the given capacity evenly between the shards.
+    @Override
+    public ShardedCache setCapacity(int capacity) {
+        distributeCapacity(capacity);
+        return this;
+    }
+
+    @Override
+    public long getMaxWeight() {
+        long maxWeight = 0;
+        for (ImgCache<ImImage> shard : shards) {
+            if (shard.getMaxWeight() == Long.MAX_VALUE) return Long.MAX_VALUE;
+            maxWeight += shard.getMaxWeight();
+        }
+        return maxWeight;
+    }
+
+    /// Splits the given max weight evenly between the shards.
+    @Override
+    public ShardedCache setMaxWeight(long maxWeight) {
+        long total = Math.max(maxWeight, 0);
+        for (int i = 0; i < shards.length; i++) {
+            shards[i].setMaxWeight(slice(total, i));
+        }
+        return this;
+    }
+
+    @Override
+    public long getTotalWeight() {
+        long weight = 0;
+        for (ImgCache<ImImage> shard : shards) {
+            weight += shard.getTotalWeight();
+        }
+        return weight;
+    }
+
+    /// @return the [Weigher] of the first shard
+    @Override
+    public Weigher<ImImage> getWeigher() {
+        return shards[0].getWeigher();
+    }
+
+    @Override
+    public ShardedCache setWeigher(Weigher<ImImage> weigher) {
+        for (ImgCache<ImImage> shard : shards) {
+            shard.setWeigher(weigher);
+        }
+        return this;
+    }
+
+    @Override
+    public Duration getExpireAfterWrite() {
+        return shards[0].getExpireAfterWrite();
+    }
+
+    @Override
+    public ShardedCache setExpireAfterWrite(Duration duration) {
+        for (ImgCache<ImImage> shard : shards) {
+            shard.setExpireAfterWrite(duration);
+        }
+        return this;
+    }
+
+    @Override
+    public Duration getExpireAfterAccess() {
+        return shards[0].getExpireAfterAccess();
+    }
+
+    @Override
+    public ShardedCache setExpireAfterAccess(Duration duration) {
+        for (ImgCache<ImImage> shard : shards) {
+            shard.setExpireAfterAccess(duration);
+        }
+        return this;
+    }
+
+    /// Starts (or stops) a sweeper thread for every shard, see [ImgCache#setSweepInterval(Duration)].
+    @Override
+    public ShardedCache setSweepInterval(Duration interval) {
+        for (ImgCache<ImImage> shard : shards) {
+            shard.setSweepInterval(interval);
+        }
+        return this;
+    }
+
+    /// @return the sum of the statistics of all the shards
+    @Override
+    public CacheStats stats() {
+        CacheStats stats = CacheStats.empty();
+        for (ImgCache<ImImage> shard : shards) {
+            stats = stats.plus(shard.stats());
+        }
+        return stats;
+    }
+
+    @Override
+    public void resetStats() {
+        for (ImgCache<ImImage> shard : shards) {
+            shard.resetStats();
+        }
+    }
+
+    @Override
+    public boolean isRecordStats() {
+        return shards[0].isRecordStats();
+    }
+
+    @Override
+    public ShardedCache setRecordStats(boolean recordStats) {
+        for (ImgCache<ImImage> shard : shards) {
+            shard.setRecordStats(recordStats);
+        }
+        return this;
+    }
+
+    @Override
+    public RemovalListener<ImImage> getRemovalListener() {
+        return shards[0].getRemovalListener();
+    }
+
+    @Override
+    public ShardedCache setRemovalListener(RemovalListener<ImImage> removalListener) {
+        for (ImgCache<ImImage> shard : shards) {
+            shard.setRemovalListener(removalListener);
+        }
+        return this;
+    }
+
+    @Override
+    public Executor getListenerExecutor() {
+        return shards[0].getListenerExecutor();
+    }
+
+    @Override
+    public ShardedCache setListenerExecutor(Executor listenerExecutor) {
+        for (ImgCache<ImImage> shard : shards) {
+            shard.setListenerExecutor(listenerExecutor);
+        }
+        return this;
+    }
+
+    @Override
+    public AdmissionFilter getAdmissionFilter() {
+        return shards[0].getAdmissionFilter();
+    }
+
+    /// Sets the same [AdmissionFilter] on all the shards. This is safe because filters are thread-safe, and it's
+    /// desirable because the frequency of an id is then estimated on the whole cache's traffic.
+    @Override
+    public ShardedCache setAdmissionFilter(AdmissionFilter admission) {
+        for (ImgCache<ImImage> shard : shards) {
+            shard.setAdmissionFilter(admission);
+        }
+        return this;
+    }
+
+    /// @return the [EvictionPolicy] of the first shard
+    @Override
+    public EvictionPolicy getEvictionPolicy() {
+        return shards[0].getEvictionPolicy();
+    }
+
+    /// Since a policy instance cannot be shared between shards, the first shard gets the given policy, and the others
+    /// get new instances of it, see [EvictionPolicy#newInstance()] and [#setEvictionPolicy(Supplier)].
+    @Override
+    public ShardedCache setEvictionPolicy(EvictionPolicy policy) {
+        Objects.requireNonNull(policy);
+        shards[0].setEvictionPolicy(policy);
+        for (int i = 1; i < shards.length; i++) {
+            shards[i].setEvictionPolicy(policy.newInstance());
+        }
+        return this;
+    }
+}
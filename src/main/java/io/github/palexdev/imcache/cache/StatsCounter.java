@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2025 Parisi Alessandro - alessandro.parisi406@gmail.com
+ * This file is part of ImCache (https://github.com/palexdev/imcache)
+ *
+ * ImCache is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * ImCache is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ImCache. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.palexdev.imcache.cache;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.github.palexdev.imcache.cache.CacheStats.Stage;
+
+/// Thread-safe accumulator of cache statistics, backed by [LongAdder] counters so that recording is cheap even under
+/// heavy contention. [#snapshot()] produces an immutable [CacheStats].
+///
+/// Recording can be turned off with [#setEnabled(boolean)], in which case all the `record` methods return immediately.
+public class StatsCounter {
+    //================================================================================
+    // Properties
+    //================================================================================
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadSuccesses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private final LongAdder bytesStored = new LongAdder();
+    private final LongAdder[] removals = adders(RemovalCause.values().length);
+    private final LongAdder[] loadTimes = adders(Stage.values().length);
+    private volatile boolean enabled = true;
+
+    //================================================================================
+    // Methods
+    //================================================================================
+    public void recordHit() {
+        if (enabled) hits.increment();
+    }
+
+    public void recordMiss() {
+        if (enabled) misses.increment();
+    }
+
+    public void recordLoadSuccess() {
+        if (enabled) loadSuccesses.increment();
+    }
+
+    public void recordLoadFailure() {
+        if (enabled) loadFailures.increment();
+    }
+
+    /// Records the time spent in the given [Stage] of the loading process, in nanoseconds.
+    public void recordLoadTime(Stage stage, long nanos) {
+        if (enabled) loadTimes[stage.ordinal()].add(nanos);
+    }
+
+    /// Records a stored entry and its weight.
+    public void recordStore(long weight) {
+        if (!enabled) return;
+        stores.increment();
+        bytesStored.add(weight);
+    }
+
+    /// Records the given number of entries removed for the given cause.
+    public void recordRemoval(RemovalCause cause, long count) {
+        if (enabled) removals[cause.ordinal()].add(count);
+    }
+
+    /// @return an immutable snapshot of the counters
+    public CacheStats snapshot() {
+        Map<RemovalCause, Long> removals = new EnumMap<>(RemovalCause.class);
+        for (RemovalCause cause : RemovalCause.values()) {
+            removals.put(cause, this.removals[cause.ordinal()].sum());
+        }
+        Map<Stage, Long> loadTimes = new EnumMap<>(Stage.class);
+        for (Stage stage : Stage.values()) {
+            loadTimes.put(stage, this.loadTimes[stage.ordinal()].sum());
+        }
+        return new CacheStats(
+            hits.sum(),
+            misses.sum(),
+            loadSuccesses.sum(),
+            loadFailures.sum(),
+            stores.sum(),
+            bytesStored.sum(),
+            removals,
+            loadTimes
+        );
+    }
+
+    /// @return the average time spent fetching a resource in nanoseconds, like [CacheStats#averageLoadPenalty()] but
+    /// without taking a snapshot
+    public long averageLoadPenalty() {
+        long loads = loadSuccesses.sum() + loadFailures.sum();
+        if (loads == 0) return 0L;
+        return loadTimes[Stage.RESOLVE.ordinal()].sum() / loads;
+    }
+
+    /// Resets all the counters to zero.
+    public void reset() {
+        hits.reset();
+        misses.reset();
+        loadSuccesses.reset();
+        loadFailures.reset();
+        stores.reset();
+        bytesStored.reset();
+        for (LongAdder adder : removals) {
+            adder.reset();
+        }
+        for (LongAdder adder : loadTimes) {
+            adder.reset();
+        }
+    }
+
+    private static LongAdder[] adders(int n) {
+        LongAdder[] adders = new LongAdder[n];
+        for (int i = 0; i < n; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    //================================================================================
+    // Getters/Setters
+    //================================================================================
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /// Sets whether statistics are recorded. Disabling doesn't reset the counters.
+    public StatsCounter setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+}
@@ -0,0 +1,486 @@
+/*
+ * Copyright (C) 2025 Parisi Alessandro - alessandro.parisi406@gmail.com
+ * This file is part of ImCache (https://github.com/palexdev/imcache)
+ *
+ * ImCache is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * ImCache is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ImCache. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.palexdev.imcache.cache;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import io.github.palexdev.imcache.cache.policy.AdmissionFilter;
+import io.github.palexdev.imcache.core.ImCache;
+import io.github.palexdev.imcache.core.ImImage;
+
+/// A two-level cache which combines the speed of a [MemoryCache] (L1) with the persistence of a [DiskCache] (L2).
+///
+/// This cache is itself the memory tier: capacity, weights, eviction policy and expiration configured on this object
+/// apply to L1. The disk tier is a separate [DiskCache], which can be configured independently, see [#getDisk()].
+///
+/// Lookups check the memory first and fall back to the disk. Disk hits are promoted to memory, unless disabled with
+/// [#setPromote(boolean)]. How entries reach the disk depends on the [WritePolicy]:
+/// - [WritePolicy#WRITE_THROUGH] (default): every store goes to both tiers, so that the disk is always up to date
+/// - [WritePolicy#WRITE_BACK]: stores go to memory only, entries are demoted to the disk when evicted from memory.
+/// This saves disk writes for short-lived entries, at the cost of losing them if the application stops
+///
+/// Explicit removals and [#clear()] affect both tiers, while [#size()], [#asMap()] and the other [ImgCache] methods
+/// only concern the memory tier.
+///
+/// Hits and misses are tracked per tier, see [#getStats()].
+///
+/// _Note:_ demotions are not written while holding the memory tier's lock, so that evictions are not slowed down by
+/// disk writes. Evicted entries are queued, and written to the disk on the listener executor (see
+/// [#setListenerExecutor(Executor)]). Until then, lookups still find them as if they were on the disk.
+///
+/// @see ImCache#cacheConfig(Supplier)
+public class TieredCache extends MemoryCache {
+    //================================================================================
+    // Enum
+    //================================================================================
+    public enum WritePolicy {
+        /// Stores write to both the memory and the disk.
+        WRITE_THROUGH,
+
+        /// Stores write to the memory only. Entries evicted from memory are demoted to the disk.
+        WRITE_BACK,
+    }
+
+    //================================================================================
+    // Properties
+    //================================================================================
+    private final DiskCache disk;
+    private volatile WritePolicy writePolicy = WritePolicy.WRITE_THROUGH;
+    private volatile boolean promote = true;
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder promotions = new LongAdder();
+    private final LongAdder demotions = new LongAdder();
+
+    // Demotions waiting to be written, see discard(). Writes and invalidations of the same id are serialized by a
+    // striped lock, so that a queued demotion never overwrites a newer version
+    private final ConcurrentMap<Key, Demotion> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock[] diskLocks = new ReentrantLock[64];
+    private final AtomicBoolean demoting = new AtomicBoolean(false);
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    public TieredCache() {
+        this(new DiskCache());
+    }
+
+    public TieredCache(Path savePath) {
+        this(new DiskCache(savePath));
+    }
+
+    public TieredCache(DiskCache disk) {
+        this.disk = disk;
+        for (int i = 0; i < diskLocks.length; i++) {
+            diskLocks[i] = new ReentrantLock();
+        }
+    }
+
+    //================================================================================
+    // Methods
+    //================================================================================
+
+    /// @return a snapshot of the statistics of this cache
+    public Stats getStats() {
+        return new Stats(
+            memoryHits.sum(),
+            diskHits.sum(),
+            misses.sum(),
+            promotions.sum(),
+            demotions.sum()
+        );
+    }
+
+    /// Resets both the per-tier statistics and the ones of [#stats()].
+    @Override
+    public void resetStats() {
+        super.resetStats();
+        memoryHits.reset();
+        diskHits.reset();
+        misses.reset();
+        promotions.reset();
+        demotions.reset();
+    }
+
+    /// Writes the demotions queued so far on the calling thread. They are normally written on the listener executor,
+    /// see the class documentation.
+    public void flushDemotions() {
+        for (Map.Entry<Key, Demotion> e : pending.entrySet()) {
+            Demotion demotion = e.getValue();
+            ReentrantLock diskLock = diskLock(e.getKey());
+            diskLock.lock();
+            try {
+                // Written before being dequeued, so that lookups always find it
+                if (pending.get(e.getKey()) != demotion) continue;
+                disk.store(demotion.id(), demotion.image());
+                pending.remove(e.getKey(), demotion);
+            } finally {
+                diskLock.unlock();
+            }
+            demotions.increment();
+        }
+    }
+
+    /// Schedules [#flushDemotions()] on the listener executor, unless already scheduled or there's nothing to write.
+    private void scheduleDemotions() {
+        if (pending.isEmpty() || !demoting.compareAndSet(false, true)) return;
+        try {
+            listenerExecutor.execute(() -> {
+                // Direct executors run this while the memory lock may be held, the next store will take care of it
+                if (lock.isHeldByCurrentThread()) {
+                    demoting.set(false);
+                    return;
+                }
+                try {
+                    flushDemotions();
+                } finally {
+                    demoting.set(false);
+                }
+                if (!pending.isEmpty()) scheduleDemotions();
+            });
+        } catch (Exception ex) {
+            demoting.set(false);
+        }
+    }
+
+    /// @return the lock serializing the disk writes and invalidations of the given key
+    private ReentrantLock diskLock(Key key) {
+        return diskLocks[(int) key.lo() & (diskLocks.length - 1)];
+    }
+
+    /// Removes the given id from the disk tier and drops its queued demotion, if any.
+    private boolean removeFromDisk(String id) {
+        Key key = Key.of(id);
+        ReentrantLock diskLock = diskLock(key);
+        diskLock.lock();
+        try {
+            boolean queued = pending.remove(key) != null;
+            return disk.remove(id) || queued;
+        } finally {
+            diskLock.unlock();
+        }
+    }
+
+    /// Loads the image mapped to the given id from the disk tier (or from the queued demotions), promoting it if enabled.
+    /// Used on memory misses.
+    private Optional<ImImage> fromDisk(String id) {
+        Demotion demotion = pending.get(Key.of(id));
+        Optional<ImImage> img = demotion != null ? Optional.of(demotion.image()) : disk.getImage(id);
+        if (img.isEmpty()) {
+            misses.increment();
+            return img;
+        }
+        diskHits.increment();
+        promote(id, img.get());
+        return img;
+    }
+
+    /// Promotes the given disk hit to the memory tier, if enabled.
+    private void promote(String id, ImImage img) {
+        if (!promote) return;
+        if (put(id, img)) promotions.increment();
+        scheduleDemotions();
+    }
+
+    //================================================================================
+    // Overridden Methods
+    //================================================================================
+
+    /// @return the statistics of the memory tier, where lookups satisfied by the disk tier count as hits rather than misses
+    @Override
+    public CacheStats stats() {
+        CacheStats stats = super.stats();
+        if (!isRecordStats()) return stats;
+        long diskHits = this.diskHits.sum();
+        return new CacheStats(
+            stats.hitCount() + diskHits,
+            Math.max(0L, stats.missCount() - diskHits),
+            stats.loadSuccessCount(),
+            stats.loadFailureCount(),
+            stats.storeCount(),
+            stats.bytesStored(),
+            stats.removals(),
+            stats.loadTimes()
+        );
+    }
+
+    /// Looks up the memory tier first and then the disk tier. Disk hits are promoted to memory if [#isPromote()] is true.
+    @Override
+    public Optional<ImImage> get(String id) {
+        Optional<ImImage> img = super.get(id);
+        if (img.isPresent()) {
+            memoryHits.increment();
+            return img;
+        }
+
+        return fromDisk(id);
+    }
+
+    /// Untracked lookup in both tiers, see [ImgCache#peekImage(String)]. Disk hits are not promoted.
+    @Override
+    protected Optional<ImImage> peekImage(String id) {
+        return super.peekImage(id)
+            .or(() -> Optional.ofNullable(pending.get(Key.of(id))).map(Demotion::image))
+            .or(() -> disk.peekImage(id));
+    }
+
+    /// Variant of [#get(String)] that looks up both tiers by [Key].
+    @Override
+    public Optional<ImImage> get(Key key) {
+        Optional<ImImage> img = super.get(key);
+        if (img.isPresent()) {
+            memoryHits.increment();
+            return img;
+        }
+
+        Optional<String> id = idOf(key);
+        if (id.isEmpty()) {
+            misses.increment();
+            return img;
+        }
+        return fromDisk(id.get());
+    }
+
+    /// Variant of [#get(Key)] that is not recorded in the statistics, neither in [#stats()] nor in the per-tier ones, see
+    /// [ImgCache#probeImage(Key)]. Disk hits are still promoted if [#isPromote()] is true.
+    @Override
+    public Optional<ImImage> probeImage(Key key) {
+        Optional<ImImage> img = probe(key);
+        if (img.isPresent()) return img;
+
+        Demotion demotion = pending.get(key);
+        if (demotion != null) {
+            promote(demotion.id(), demotion.image());
+            return Optional.of(demotion.image());
+        }
+        Optional<String> id = disk.idOf(key);
+        if (id.isEmpty()) return img;
+        img = disk.probeImage(key);
+        img.ifPresent(i -> promote(id.get(), i));
+        return img;
+    }
+
+    /// Stores the given image according to the [WritePolicy].
+    ///
+    /// With [WritePolicy#WRITE_BACK], the previous version on the disk (if any, even if still queued for demotion) is
+    /// removed, as it's now stale. If the memory tier rejects the entry (see [#setAdmissionFilter(AdmissionFilter)]),
+    /// it's written to the disk directly.
+    @Override
+    public void store(String id, ImImage img) {
+        switch (writePolicy) {
+            case WRITE_THROUGH -> {
+                disk.store(id, img);
+                put(id, img);
+            }
+            case WRITE_BACK -> {
+                removeFromDisk(id);
+                if (!put(id, img)) disk.store(id, img);
+            }
+        }
+        scheduleDemotions();
+    }
+
+    /// Bulk version of [#store(String, ImImage)], the memory tier acquires the lock only once, while the disk tier writes
+    /// the files in parallel, see [DiskCache#storeImages(Map)].
+    @Override
+    public void storeAll(Map<String, ? extends ImImage> values) {
+        switch (writePolicy) {
+            case WRITE_THROUGH -> {
+                disk.storeImages(values);
+                putAll(values);
+            }
+            case WRITE_BACK -> {
+                removeAllFromDisk(values.keySet());
+                Map<String, ImImage> rejected = putAll(values);
+                if (!rejected.isEmpty()) disk.storeImages(rejected);
+            }
+        }
+        scheduleDemotions();
+    }
+
+    /// Removes the given ids from both tiers.
+    @Override
+    public int removeAll(Collection<String> ids) {
+        int memory = super.removeAll(ids);
+        int disk = removeAllFromDisk(ids);
+        return Math.max(memory, disk);
+    }
+
+    /// Bulk version of [#removeFromDisk(String)].
+    private int removeAllFromDisk(Collection<String> ids) {
+        int removed = 0;
+        for (String id : ids) {
+            if (removeFromDisk(id)) removed++;
+        }
+        return removed;
+    }
+
+    /// Queues entries evicted for size ([RemovalCause#SIZE]) for demotion to the disk with [WritePolicy#WRITE_BACK],
+    /// unless they are already there. Expired entries are not demoted. The demotions are written on the listener
+    /// executor, see the class documentation.
+    @Override
+    protected ImImage discard(String id, RemovalCause cause) {
+        ImImage removed = super.discard(id, cause);
+        if (cause == RemovalCause.SIZE && removed != null && writePolicy == WritePolicy.WRITE_BACK && !disk.contains(id)) {
+            pending.put(Key.of(id), new Demotion(id, removed));
+            scheduleDemotions();
+        }
+        return removed;
+    }
+
+    /// @return whether either tier contains the given id
+    @Override
+    public boolean contains(String id) {
+        return super.contains(id) || pending.containsKey(Key.of(id)) || disk.contains(id);
+    }
+
+    @Override
+    public boolean contains(Key key) {
+        return super.contains(key) || pending.containsKey(key) || disk.contains(key);
+    }
+
+    /// @return the age of the entry in the memory tier, or in the disk tier if not in memory
+    @Override
+    public Optional<Duration> getAge(String id) {
+        return super.getAge(id).or(() -> disk.getAge(id));
+    }
+
+    @Override
+    public Optional<Duration> getAge(Key key) {
+        return super.getAge(key).or(() -> disk.getAge(key));
+    }
+
+    /// Touches the entry in both tiers.
+    @Override
+    public boolean touch(String id) {
+        boolean touched = super.touch(id);
+        return disk.touch(id) || touched;
+    }
+
+    /// @return the id mapped to the given [Key] by either tier
+    @Override
+    public Optional<String> idOf(Key key) {
+        return super.idOf(key)
+            .or(() -> Optional.ofNullable(pending.get(key)).map(Demotion::id))
+            .or(() -> disk.idOf(key));
+    }
+
+    /// Removes the given id from both tiers.
+    @Override
+    public boolean remove(String id) {
+        boolean memory = super.remove(id);
+        boolean disk = removeFromDisk(id);
+        return memory || disk;
+    }
+
+    /// Clears both tiers, including the queued demotions. Note that [DiskCache#clear()] doesn't delete the files.
+    @Override
+    public void clear() {
+        super.clear();
+        for (ReentrantLock diskLock : diskLocks) {
+            diskLock.lock();
+        }
+        try {
+            pending.clear();
+            disk.clear();
+        } finally {
+            for (ReentrantLock diskLock : diskLocks) {
+                diskLock.unlock();
+            }
+        }
+    }
+
+    //================================================================================
+    // Getters/Setters
+    //================================================================================
+
+    /// @return the disk tier (L2)
+    public DiskCache getDisk() {
+        return disk;
+    }
+
+    public WritePolicy getWritePolicy() {
+        return writePolicy;
+    }
+
+    /// Sets how entries are written to the disk tier, see [WritePolicy].
+    ///
+    /// Switching to [WritePolicy#WRITE_THROUGH] doesn't flush the entries that are only in memory.
+    public TieredCache setWritePolicy(WritePolicy writePolicy) {
+        this.writePolicy = writePolicy;
+        return this;
+    }
+
+    public boolean isPromote() {
+        return promote;
+    }
+
+    /// Sets whether disk hits are promoted to the memory tier.
+    public TieredCache setPromote(boolean promote) {
+        this.promote = promote;
+        return this;
+    }
+
+    //================================================================================
+    // Inner Classes
+    //================================================================================
+
+    /// An entry evicted from memory and waiting to be written to the disk, see [#discard(String, RemovalCause)].
+    private record Demotion(String id, ImImage image) {}
+
+    /// Snapshot of the statistics of a [TieredCache].
+    ///
+    /// @param memoryHits the number of lookups satisfied by the memory tier
+    /// @param diskHits the number of lookups satisfied by the disk tier
+    /// @param misses the number of lookups that found nothing in both tiers
+    /// @param promotions the number of entries copied from the disk to the memory
+    /// @param demotions the number of entries moved from the memory to the disk on eviction
+    public record Stats(long memoryHits, long diskHits, long misses, long promotions, long demotions) {
+
+        /// @return the total number of lookups
+        public long requests() {
+            return memoryHits + diskHits + misses;
+        }
+
+        /// @return the ratio of lookups satisfied by any tier, 1.0 if there were no lookups
+        public double hitRate() {
+            long requests = requests();
+            return requests == 0 ? 1.0 : (double) (memoryHits + diskHits) / requests;
+        }
+
+        /// @return the ratio of lookups satisfied by the memory tier, 1.0 if there were no lookups
+        public double memoryHitRate() {
+            long requests = requests();
+            return requests == 0 ? 1.0 : (double) memoryHits / requests;
+        }
+    }
+}
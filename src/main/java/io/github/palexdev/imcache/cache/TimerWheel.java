@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2025 Parisi Alessandro - alessandro.parisi406@gmail.com
+ * This file is part of ImCache (https://github.com/palexdev/imcache)
+ *
+ * ImCache is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * ImCache is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ImCache. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.palexdev.imcache.cache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/// A hierarchical timer wheel (G. Varghese, T. Lauck) used by [ImgCache] to expire entries in O(1) time, without
+/// having to scan the whole cache.
+///
+/// Timers are [Nodes][Node] linked in buckets. The wheel is organized in levels of increasing coarseness:
+/// - 64 buckets of ~1.07 seconds
+/// - 64 buckets of ~1.14 minutes
+/// - 32 buckets of ~1.22 hours
+/// - 4 buckets of ~1.63 days
+/// - 1 bucket for everything beyond ~6.5 days
+///
+/// Scheduling a node simply links it to the bucket that covers its deadline. Advancing the wheel ([#advance(long, Consumer)])
+/// visits only the buckets whose time has passed. Expired nodes are handed to the given consumer, while nodes that are
+/// not due yet (e.g. coming from a coarser level, or whose deadline was extended) are rescheduled in a finer bucket.
+///
+/// Since rescheduling happens lazily, a node's deadline can be extended (never shortened) without touching the wheel,
+/// see [Node#extend(long)]. This allows updating deadlines on the hot read path without any lock.
+///
+/// This class is not thread-safe, [ImgCache] uses it while holding its lock. Times are in nanoseconds, as given by
+/// [System#nanoTime()].
+public class TimerWheel {
+    //================================================================================
+    // Static Properties
+    //================================================================================
+    private static final int[] BUCKETS = {64, 64, 32, 4, 1};
+    private static final long[] SPANS = {
+        ceilingPowerOfTwo(TimeUnit.SECONDS.toNanos(1)), // 1.07s
+        ceilingPowerOfTwo(TimeUnit.MINUTES.toNanos(1)), // 1.14m
+        ceilingPowerOfTwo(TimeUnit.HOURS.toNanos(1)),   // 1.22h
+        ceilingPowerOfTwo(TimeUnit.DAYS.toNanos(1)),    // 1.63d
+        BUCKETS[3] * ceilingPowerOfTwo(TimeUnit.DAYS.toNanos(1)), // 6.5d
+        BUCKETS[3] * ceilingPowerOfTwo(TimeUnit.DAYS.toNanos(1)), // 6.5d
+    };
+    private static final long[] SHIFT = {
+        Long.numberOfTrailingZeros(SPANS[0]),
+        Long.numberOfTrailingZeros(SPANS[1]),
+        Long.numberOfTrailingZeros(SPANS[2]),
+        Long.numberOfTrailingZeros(SPANS[3]),
+        Long.numberOfTrailingZeros(SPANS[4]),
+    };
+
+    //================================================================================
+    // Properties
+    //================================================================================
+    private final Node[][] wheel = new Node[BUCKETS.length][];
+    private final long origin;
+    private long time = 0;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    public TimerWheel(long now) {
+        this.origin = now;
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new Node[BUCKETS[i]];
+            for (int j = 0; j < wheel[i].length; j++) {
+                Node sentinel = new Node(null);
+                sentinel.prev = sentinel;
+                sentinel.next = sentinel;
+                wheel[i][j] = sentinel;
+            }
+        }
+    }
+
+    //================================================================================
+    // Methods
+    //================================================================================
+
+    /// Links the given node to the bucket which covers its deadline. If the node was already scheduled, it is moved.
+    public void schedule(Node node) {
+        if (node.isScheduled()) unlink(node);
+        Node sentinel = findBucket(relative(node.deadline));
+        node.prev = sentinel.prev;
+        node.next = sentinel;
+        sentinel.prev.next = node;
+        sentinel.prev = node;
+    }
+
+    /// Removes the given node from the wheel, if scheduled.
+    public void deschedule(Node node) {
+        if (node.isScheduled()) unlink(node);
+    }
+
+    /// Advances the wheel to the given time, visiting all the buckets that have passed since the last call.
+    ///
+    /// @param onExpired called for every node whose deadline has passed, the node is already descheduled
+    public void advance(long now, Consumer<Node> onExpired) {
+        long previous = time;
+        time = relative(now);
+        for (int i = 0; i < SHIFT.length; i++) {
+            long previousTicks = previous >>> SHIFT[i];
+            long currentTicks = time >>> SHIFT[i];
+            long delta = currentTicks - previousTicks;
+            if (delta <= 0L) {
+                // Still in the same tick, but the current bucket may hold nodes that are already due (e.g. scheduled
+                // with a deadline in the past)
+                if (i == 0) expire(0, currentTicks, 0L, now, onExpired);
+                break;
+            }
+            expire(i, previousTicks, delta, now, onExpired);
+        }
+    }
+
+    /// Removes all the nodes from the wheel.
+    public void clear() {
+        for (Node[] buckets : wheel) {
+            for (Node sentinel : buckets) {
+                Node node = sentinel.next;
+                while (node != sentinel) {
+                    Node next = node.next;
+                    node.prev = null;
+                    node.next = null;
+                    node = next;
+                }
+                sentinel.prev = sentinel;
+                sentinel.next = sentinel;
+            }
+        }
+    }
+
+    //================================================================================
+    // Internal Methods
+    //================================================================================
+    private void expire(int level, long previousTicks, long delta, long now, Consumer<Node> onExpired) {
+        Node[] buckets = wheel[level];
+        int mask = buckets.length - 1;
+        int steps = (int) Math.min(delta + 1, buckets.length);
+        int start = (int) (previousTicks & mask);
+        for (int i = start; i < start + steps; i++) {
+            Node sentinel = buckets[i & mask];
+            Node node = sentinel.next;
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            while (node != sentinel) {
+                Node next = node.next;
+                node.prev = null;
+                node.next = null;
+                if (node.deadline - now <= 0) {
+                    onExpired.accept(node);
+                } else {
+                    schedule(node);
+                }
+                node = next;
+            }
+        }
+    }
+
+    private Node findBucket(long deadline) {
+        long duration = deadline - time;
+        int last = wheel.length - 1;
+        for (int i = 0; i < last; i++) {
+            if (duration < SPANS[i + 1]) {
+                long ticks = deadline >>> SHIFT[i];
+                int index = (int) (ticks & (wheel[i].length - 1));
+                return wheel[i][index];
+            }
+        }
+        return wheel[last][0];
+    }
+
+    private void unlink(Node node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+    }
+
+    /// Converts the given time to the wheel's time frame, so that it's never negative.
+    private long relative(long nanos) {
+        return Math.max(nanos - origin, time);
+    }
+
+    private static long ceilingPowerOfTwo(long n) {
+        return 1L << -Long.numberOfLeadingZeros(n - 1);
+    }
+
+    //================================================================================
+    // Inner Classes
+    //================================================================================
+
+    /// A timer in the wheel, identified by the id of the cache entry it belongs to.
+    public static class Node {
+        private final String id;
+        private volatile long deadline;
+        private Node prev;
+        private Node next;
+
+        public Node(String id) {
+            this.id = id;
+        }
+
+        /// Moves the deadline forward, if the given one is later. Safe to call without holding the wheel's lock, the
+        /// node will be rescheduled lazily when its current bucket expires.
+        public void extend(long deadline) {
+            if (deadline - this.deadline > 0) this.deadline = deadline;
+        }
+
+        public boolean isExpired(long now) {
+            return deadline - now <= 0;
+        }
+
+        public boolean isScheduled() {
+            return next != null;
+        }
+
+        public String id() {
+            return id;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+
+        /// Sets the deadline. If the node is scheduled, it must be rescheduled with [TimerWheel#schedule(Node)].
+        public void setDeadline(long deadline) {
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2025 Parisi Alessandro - alessandro.parisi406@gmail.com
+ * This file is part of ImCache (https://github.com/palexdev/imcache)
+ *
+ * ImCache is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * ImCache is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ImCache. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.palexdev.imcache.cache;
+
+import io.github.palexdev.imcache.core.ImImage;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+/// Computes the weight of a cache entry, used by [ImgCache] to bound the cache by the total weight of its entries
+/// rather than just their number, see [ImgCache#setMaxWeight(long)].
+///
+/// The unit is up to the implementation, however, defaults provided here measure the entries in bytes.
+/// Weights are computed once, when an entry is stored, and must not be negative.
+@FunctionalInterface
+public interface Weigher<V> {
+    long weigh(String id, V value);
+
+    //================================================================================
+    // Static Methods
+    //================================================================================
+
+    /// @return a weigher that gives every entry a weight of 1, making the weight equal to the number of entries
+    static <V> Weigher<V> singleton() {
+        return (id, value) -> 1;
+    }
+
+    /// @return a weigher that measures images by the length of their raw data, see [ImImage#size()]. This is the
+    /// default for [MemoryCache]
+    static Weigher<ImImage> imageSize() {
+        return (id, img) -> img.size();
+    }
+
+    /// @return a weigher that measures files by their size on the disk, see [File#length()]. This is the default for
+    /// [DiskCache]
+    static Weigher<File> fileSize() {
+        return (id, file) -> file.length();
+    }
+
+    /// @return a weigher that measures decoded images by their size in memory, `width * height * bytesPerPixel`. This is
+    /// the default for [BitmapCache]
+    static Weigher<BufferedImage> bitmapSize() {
+        return (id, img) -> {
+            int bpp = Math.max(1, (img.getColorModel().getPixelSize() + 7) / 8);
+            return (long) img.getWidth() * img.getHeight() * bpp;
+        };
+    }
+}
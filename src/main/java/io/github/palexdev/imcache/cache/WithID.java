@@ -36,6 +36,12 @@ import java.util.UUID;
 public interface WithID {
     String id();
 
+    /// @return the compact representation of [#id()], see [Key]. Implementations are encouraged to cache the key if
+    /// it's requested often
+    default Key key() {
+        return Key.of(id());
+    }
+
     /// Generates a unique identifier with [UUID#nameUUIDFromBytes(byte\[\])].
     static String generateId(String s) {
         try {
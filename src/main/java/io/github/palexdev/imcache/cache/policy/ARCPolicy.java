@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2025 Parisi Alessandro - alessandro.parisi406@gmail.com
+ * This file is part of ImCache (https://github.com/palexdev/imcache)
+ *
+ * ImCache is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * ImCache is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ImCache. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.palexdev.imcache.cache.policy;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.SequencedSet;
+
+/// Adaptive Replacement Cache [EvictionPolicy], as described by N. Megiddo and D. S. Modha.
+///
+/// Resident entries are split into two LRU lists:
+/// - `T1`, entries seen only once recently (recency)
+/// - `T2`, entries seen at least twice recently (frequency)
+///
+/// Two more 'ghost' lists, `B1` and `B2`, remember the ids recently evicted from `T1` and `T2` respectively (without
+/// their values). A miss on a ghost entry means that the corresponding list was too small, and the target size of `T1`,
+/// `p`, is adapted accordingly. This way, the policy is scan-resistant and balances itself between recency and frequency
+/// depending on the workload.
+///
+/// The cache's capacity (`c` in the paper) is not known by the policy, it's estimated as the maximum number of resident
+/// entries observed so far. Ghost lists are bounded by it.
+///
+/// All operations are synchronized on the policy instance.
+public class ARCPolicy implements EvictionPolicy {
+    //================================================================================
+    // Properties
+    //================================================================================
+    private final SequencedSet<String> t1 = new LinkedHashSet<>();
+    private final SequencedSet<String> t2 = new LinkedHashSet<>();
+    private final SequencedSet<String> b1 = new LinkedHashSet<>();
+    private final SequencedSet<String> b2 = new LinkedHashSet<>();
+    private int p = 0;
+    private int c = 0;
+
+    //================================================================================
+    // Overridden Methods
+    //================================================================================
+
+    /// A new id is a miss. If the id is remembered by one of the ghost lists, `p` is adapted and the id goes straight
+    /// to `T2`, otherwise it's added to `T1`. Finally, ghost lists are trimmed to stay within the estimated capacity.
+    @Override
+    public synchronized void onInsert(String id) {
+        if (b1.remove(id)) {
+            int delta = Math.max(1, b2.size() / Math.max(1, b1.size()));
+            p = Math.min(c, p + delta);
+            t2.addLast(id);
+        } else if (b2.remove(id)) {
+            int delta = Math.max(1, b1.size() / Math.max(1, b2.size()));
+            p = Math.max(0, p - delta);
+            t2.addLast(id);
+        } else {
+            t1.addLast(id);
+        }
+        c = Math.max(c, t1.size() + t2.size());
+
+        while (!b1.isEmpty() && t1.size() + b1.size() > c) b1.removeFirst();
+        while (!b2.isEmpty() && t1.size() + t2.size() + b1.size() + b2.size() > 2 * c) b2.removeFirst();
+    }
+
+    /// Moves the given id to the most recently used position of `T2`.
+    @Override
+    public synchronized void onAccess(String id) {
+        if (t1.remove(id) || t2.remove(id)) t2.addLast(id);
+    }
+
+    @Override
+    public synchronized void onRemove(String id) {
+        if (!t1.remove(id) && !t2.remove(id)) {
+            b1.remove(id);
+            b2.remove(id);
+        }
+    }
+
+    /// Moves the given id from the resident list to the corresponding ghost list.
+    @Override
+    public synchronized void onEvict(String id) {
+        if (t1.remove(id)) {
+            b1.addLast(id);
+        } else if (t2.remove(id)) {
+            b2.addLast(id);
+        }
+    }
+
+    /// The victim is the LRU entry of `T1` if its size exceeds the target `p` (or equals it and the incoming id is in
+    /// `B2`), otherwise it's the LRU entry of `T2`.
+    @Override
+    public synchronized String victim(String incoming) {
+        if (!t1.isEmpty() && (t2.isEmpty() || t1.size() > p || (t1.size() == p && incoming != null && b2.contains(incoming))))
+            return t1.getFirst();
+        if (!t2.isEmpty()) return t2.getFirst();
+        return null;
+    }
+
+    @Override
+    public synchronized void clear() {
+        t1.clear();
+        t2.clear();
+        b1.clear();
+        b2.clear();
+        p = 0;
+        c = 0;
+    }
+
+    /// @return the resident ids, first `T1` then `T2`, both from the least to the most recently used
+    @Override
+    public synchronized List<String> keys() {
+        List<String> keys = new ArrayList<>(t1.size() + t2.size());
+        keys.addAll(t1);
+        keys.addAll(t2);
+        return keys;
+    }
+
+    //================================================================================
+    // Getters
+    //================================================================================
+
+    /// @return the current target size of `T1`
+    public synchronized int getTarget() {
+        return p;
+    }
+}
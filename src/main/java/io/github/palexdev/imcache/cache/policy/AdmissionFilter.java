@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2025 Parisi Alessandro - alessandro.parisi406@gmail.com
+ * This file is part of ImCache (https://github.com/palexdev/imcache)
+ *
+ * ImCache is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * ImCache is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ImCache. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.palexdev.imcache.cache.policy;
+
+import io.github.palexdev.imcache.cache.ImgCache;
+
+/// An admission filter sits in front of an [ImgCache] and decides whether a new entry is worth storing when the cache
+/// is full, that is, whether it's worth evicting the victim chosen by the [EvictionPolicy] to make room for it.
+///
+/// The cache records every lookup and store with [#record(String)] so that the filter can estimate the popularity of
+/// the ids. Both methods may be called concurrently from any thread, without any lock.
+///
+/// @see TinyLFU
+public interface AdmissionFilter {
+
+    /// Records an occurrence of the given id.
+    void record(String id);
+
+    /// @return whether the candidate should be stored in place of the victim
+    boolean admit(String candidate, String victim);
+
+    //================================================================================
+    // Static Methods
+    //================================================================================
+
+    /// @return a new [TinyLFU] filter sized for the given number of entries
+    static AdmissionFilter tinyLFU(int expectedEntries) {
+        return new TinyLFU(expectedEntries);
+    }
+}
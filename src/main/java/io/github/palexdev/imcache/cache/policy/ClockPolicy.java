@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2025 Parisi Alessandro - alessandro.parisi406@gmail.com
+ * This file is part of ImCache (https://github.com/palexdev/imcache)
+ *
+ * ImCache is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * ImCache is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ImCache. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.palexdev.imcache.cache.policy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/// CLOCK (also known as 'second chance') [EvictionPolicy]. An approximation of LRU which is much cheaper under
+/// concurrency.
+///
+/// Entries are arranged in a circular list with a 'hand' pointing to the next candidate for eviction. An access simply
+/// sets the entry's reference bit, which is a single volatile write and needs no lock. When a victim is needed, the hand
+/// sweeps the circle: entries with the bit set are given a second chance (the bit is cleared, and the hand moves on),
+/// the first entry found with the bit unset is the victim.
+///
+/// New entries are inserted right behind the hand, so they are the last to be inspected.
+public class ClockPolicy implements EvictionPolicy {
+    //================================================================================
+    // Properties
+    //================================================================================
+    private final Map<String, Node> nodes = new ConcurrentHashMap<>();
+    private Node hand;
+
+    //================================================================================
+    // Overridden Methods
+    //================================================================================
+    @Override
+    public void onInsert(String id) {
+        Node node = new Node(id);
+        Node prev = nodes.put(id, node);
+        if (prev != null) unlink(prev);
+        if (hand == null) {
+            node.prev = node;
+            node.next = node;
+            hand = node;
+            return;
+        }
+        node.next = hand;
+        node.prev = hand.prev;
+        hand.prev.next = node;
+        hand.prev = node;
+    }
+
+    /// Lock-free, just sets the reference bit of the given id.
+    @Override
+    public void onAccess(String id) {
+        Node node = nodes.get(id);
+        if (node != null) node.referenced = true;
+    }
+
+    @Override
+    public void onRemove(String id) {
+        Node node = nodes.remove(id);
+        if (node != null) unlink(node);
+    }
+
+    /// Moves the hand until an entry with the reference bit unset is found, clearing the bits on its way.
+    ///
+    /// Since accesses may set the bits again concurrently, the sweep is bounded to two full turns, after which the entry
+    /// under the hand is returned regardless.
+    @Override
+    public String victim(String incoming) {
+        if (hand == null) return null;
+        int limit = nodes.size() * 2;
+        for (int i = 0; i < limit && hand.referenced; i++) {
+            hand.referenced = false;
+            hand = hand.next;
+        }
+        return hand.id;
+    }
+
+    @Override
+    public void clear() {
+        nodes.clear();
+        hand = null;
+    }
+
+    @Override
+    public List<String> keys() {
+        List<String> keys = new ArrayList<>(nodes.size());
+        if (hand == null) return keys;
+        Node node = hand;
+        do {
+            keys.add(node.id);
+            node = node.next;
+        } while (node != hand);
+        return keys;
+    }
+
+    //================================================================================
+    // Internal Methods
+    //================================================================================
+    private void unlink(Node node) {
+        if (node.next == node) {
+            hand = null;
+            return;
+        }
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        if (hand == node) hand = node.next;
+    }
+
+    //================================================================================
+    // Inner Classes
+    //================================================================================
+    private static class Node {
+        private final String id;
+        private volatile boolean referenced = false;
+        private Node prev;
+        private Node next;
+
+        Node(String id) {
+            this.id = id;
+        }
+    }
+}
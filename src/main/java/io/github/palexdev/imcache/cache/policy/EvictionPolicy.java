@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2025 Parisi Alessandro - alessandro.parisi406@gmail.com
+ * This file is part of ImCache (https://github.com/palexdev/imcache)
+ *
+ * ImCache is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * ImCache is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ImCache. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.palexdev.imcache.cache.policy;
+
+import io.github.palexdev.imcache.cache.ImgCache;
+import io.github.palexdev.imcache.cache.ShardedCache;
+import io.github.palexdev.imcache.exceptions.ImCacheException;
+
+import java.util.List;
+
+/// Defines the strategy used by an [ImgCache] to decide which entry to evict when its capacity is reached.
+///
+/// A policy only tracks the ids of the cached entries, the values are managed by the cache. The cache notifies the policy
+/// about every insertion, access and removal, and asks for a victim via [#victim(String)] when space is needed.
+///
+/// _Thread Safety_
+///
+/// Structural notifications ([#onInsert(String)], [#onRemove(String)], [#onEvict(String)], [#victim(String)],
+/// [#clear()] and [#keys()]) are always issued while holding the cache's lock, so they never run concurrently.
+/// [#onAccess(String)], on the other hand, is called on every cache hit, from any thread and without any lock, so
+/// implementations must make it thread-safe. Keeping it cheap is important as it sits on the hot path.
+///
+/// Implementations offered by default:
+/// - [FIFOPolicy]: evicts the oldest entry, accesses are ignored. This is the default policy
+/// - [LRUPolicy]: evicts the least recently used entry
+/// - [ClockPolicy]: approximates LRU by giving accessed entries a 'second chance', accesses are lock-free
+/// - [ARCPolicy]: Adaptive Replacement Cache, balances between recency and frequency
+///
+/// Since policies are stateful, an instance must not be shared between caches. Caches that need more instances of the
+/// same policy (e.g. [ShardedCache]) create them with [#newInstance()].
+public interface EvictionPolicy {
+
+    /// Called when a new id is added to the cache.
+    void onInsert(String id);
+
+    /// Called when the entry mapped to the given id is accessed (cache hit) or replaced.
+    void onAccess(String id);
+
+    /// Called when the entry mapped to the given id is explicitly removed from the cache.
+    void onRemove(String id);
+
+    /// Called when the entry mapped to the given id is evicted from the cache to make room for other entries.
+    ///
+    /// By default, delegates to [#onRemove(String)], but some policies (e.g. [ARCPolicy]) need to know the difference.
+    default void onEvict(String id) {
+        onRemove(id);
+    }
+
+    /// Selects the next entry to evict. This should not remove the id from the policy, the cache will call
+    /// [#onEvict(String)] once the entry is actually evicted.
+    ///
+    /// @param incoming the id that is about to be inserted in the cache, `null` if the eviction was not caused by an
+    ///                 insertion (e.g. the capacity shrunk)
+    /// @return the id of the entry to evict or `null` if there are no entries
+    String victim(String incoming);
+
+    /// Removes all the ids from the policy.
+    void clear();
+
+    /// @return a snapshot of the ids tracked by the policy, sorted from the first candidate for eviction to the last one
+    List<String> keys();
+
+    /// @return a new, empty policy of the same kind as this one
+    ///
+    /// By default, invokes the no-arg constructor of the policy's class. Policies that don't have one, or that have
+    /// settings to carry over, should override this.
+    ///
+    /// @throws ImCacheException if the policy can't be instantiated
+    default EvictionPolicy newInstance() {
+        try {
+            return getClass().getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            throw new ImCacheException("Cannot create a new instance of policy " + getClass().getName(), ex);
+        }
+    }
+
+    //================================================================================
+    // Static Methods
+    //================================================================================
+
+    /// @return a new [FIFOPolicy]
+    static EvictionPolicy fifo() {
+        return new FIFOPolicy();
+    }
+
+    /// @return a new [LRUPolicy]
+    static EvictionPolicy lru() {
+        return new LRUPolicy();
+    }
+
+    /// @return a new [ClockPolicy]
+    static EvictionPolicy clock() {
+        return new ClockPolicy();
+    }
+
+    /// @return a new [ARCPolicy]
+    static EvictionPolicy arc() {
+        return new ARCPolicy();
+    }
+}
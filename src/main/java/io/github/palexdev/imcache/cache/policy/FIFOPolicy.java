@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2025 Parisi Alessandro - alessandro.parisi406@gmail.com
+ * This file is part of ImCache (https://github.com/palexdev/imcache)
+ *
+ * ImCache is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * ImCache is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ImCache. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.palexdev.imcache.cache.policy;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.SequencedSet;
+
+/// First-In-First-Out [EvictionPolicy]. Entries are evicted in the same order they were inserted, accesses do not
+/// affect the order.
+///
+/// This is the cheapest policy, since [#onAccess(String)] is a no-op, but it doesn't take the popularity of the entries
+/// into account.
+public class FIFOPolicy implements EvictionPolicy {
+    //================================================================================
+    // Properties
+    //================================================================================
+    private final SequencedSet<String> order = new LinkedHashSet<>();
+
+    //================================================================================
+    // Overridden Methods
+    //================================================================================
+    @Override
+    public void onInsert(String id) {
+        order.add(id);
+    }
+
+    @Override
+    public void onAccess(String id) {
+        // No-op
+    }
+
+    @Override
+    public void onRemove(String id) {
+        order.remove(id);
+    }
+
+    @Override
+    public String victim(String incoming) {
+        return order.isEmpty() ? null : order.getFirst();
+    }
+
+    @Override
+    public void clear() {
+        order.clear();
+    }
+
+    @Override
+    public List<String> keys() {
+        return List.copyOf(order);
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2025 Parisi Alessandro - alessandro.parisi406@gmail.com
+ * This file is part of ImCache (https://github.com/palexdev/imcache)
+ *
+ * ImCache is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * ImCache is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ImCache. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.palexdev.imcache.cache.policy;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/// A probabilistic, approximate, frequency counter used by [TinyLFU] to estimate the popularity of ids.
+///
+/// It's made of two parts:
+/// 1) A 'doorkeeper' bloom filter which absorbs the first occurrence of each id. Most ids are seen only once, so this
+/// keeps them from polluting the counters.
+/// 2) A count-min sketch with four hash functions. Counters are 4 bits wide (max 15), packed 16 per `long`, so the
+/// memory used is fixed and proportional to the expected number of entries: one `long` of counters and one `long` of
+/// doorkeeper bits per entry.
+///
+/// The estimated frequency of an id is the minimum of its four counters, plus one if it's in the doorkeeper.
+///
+/// To keep the history fresh, the sketch periodically 'ages': once the number of recorded occurrences reaches the
+/// sample size (10 times the expected entries), all counters are halved, and the doorkeeper is cleared.
+///
+/// Both counters and doorkeeper bits are updated with CAS operations on an [AtomicLongArray], so [#increment(String)]
+/// is lock-free. A concurrent aging may make some increments get lost or halved, which is fine for an estimate.
+public class FrequencySketch {
+    //================================================================================
+    // Static Properties
+    //================================================================================
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAX_COUNT = 15;
+    private static final int MAX_LENGTH = 1 << 24;
+
+    //================================================================================
+    // Properties
+    //================================================================================
+    private final AtomicLongArray table;
+    private final AtomicLongArray doorkeeper;
+    private final int counterMask;
+    private final int bitMask;
+    private final int sampleSize;
+    private final AtomicInteger additions = new AtomicInteger();
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    public FrequencySketch(int expectedEntries) {
+        int length = ceilingPowerOfTwo(Math.max(expectedEntries, 16));
+        this.table = new AtomicLongArray(length);
+        this.doorkeeper = new AtomicLongArray(length);
+        this.counterMask = length * 16 - 1;
+        this.bitMask = length * 64 - 1;
+        this.sampleSize = (int) Math.min(10L * Math.max(expectedEntries, 1), Integer.MAX_VALUE);
+    }
+
+    //================================================================================
+    // Methods
+    //================================================================================
+
+    /// Records an occurrence of the given id. The first occurrence only sets the doorkeeper bits, the next ones
+    /// increment the counters.
+    public void increment(String id) {
+        int hash = spread(id.hashCode());
+        if (setDoorkeeper(hash)) {
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; i++) {
+                added |= incrementAt(indexOf(hash, i));
+            }
+            if (!added) return;
+        }
+        if (additions.incrementAndGet() == sampleSize) reset();
+    }
+
+    /// @return the estimated number of occurrences of the given id, between 0 and 16
+    public int frequency(String id) {
+        int hash = spread(id.hashCode());
+        int min = MAX_COUNT;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table.get(index >>> 4) >>> ((index & 15) << 2)) & 0xfL);
+            min = Math.min(min, count);
+        }
+        return containsDoorkeeper(hash) ? min + 1 : min;
+    }
+
+    /// Halves all the counters and clears the doorkeeper. This is called automatically when the sample size is
+    /// reached.
+    public void reset() {
+        for (int i = 0; i < table.length(); i++) {
+            long value;
+            do {
+                value = table.get(i);
+            } while (!table.compareAndSet(i, value, (value >>> 1) & RESET_MASK));
+        }
+        for (int i = 0; i < doorkeeper.length(); i++) {
+            doorkeeper.set(i, 0L);
+        }
+        additions.addAndGet(-(sampleSize / 2));
+    }
+
+    //================================================================================
+    // Internal Methods
+    //================================================================================
+    private boolean incrementAt(int index) {
+        int word = index >>> 4;
+        int offset = (index & 15) << 2;
+        long mask = 0xfL << offset;
+        long value;
+        do {
+            value = table.get(word);
+            if ((value & mask) == mask) return false;
+        } while (!table.compareAndSet(word, value, value + (1L << offset)));
+        return true;
+    }
+
+    /// Sets the two doorkeeper bits for the given hash.
+    ///
+    /// @return true if both bits were already set, meaning that the id was (likely) seen before
+    private boolean setDoorkeeper(int hash) {
+        boolean first = setBit(hash & bitMask);
+        boolean second = setBit(rehash(hash) & bitMask);
+        return first && second;
+    }
+
+    private boolean containsDoorkeeper(int hash) {
+        return isBitSet(hash & bitMask) && isBitSet(rehash(hash) & bitMask);
+    }
+
+    /// @return whether the bit was already set
+    private boolean setBit(int bit) {
+        int word = bit >>> 6;
+        long mask = 1L << (bit & 63);
+        long value;
+        do {
+            value = doorkeeper.get(word);
+            if ((value & mask) != 0) return true;
+        } while (!doorkeeper.compareAndSet(word, value, value | mask));
+        return false;
+    }
+
+    private boolean isBitSet(int bit) {
+        return (doorkeeper.get(bit >>> 6) & (1L << (bit & 63))) != 0;
+    }
+
+    private int indexOf(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += (h >>> 32);
+        return ((int) h) & counterMask;
+    }
+
+    private static int rehash(int h) {
+        return (h >>> 16 | h << 16) * 0x9e3779b9;
+    }
+
+    private static int spread(int h) {
+        h = ((h >>> 16) ^ h) * 0x45d9f3b;
+        h = ((h >>> 16) ^ h) * 0x45d9f3b;
+        return (h >>> 16) ^ h;
+    }
+
+    private static int ceilingPowerOfTwo(int n) {
+        return n >= MAX_LENGTH ? MAX_LENGTH : Integer.highestOneBit(n - 1) << 1;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2025 Parisi Alessandro - alessandro.parisi406@gmail.com
+ * This file is part of ImCache (https://github.com/palexdev/imcache)
+ *
+ * ImCache is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * ImCache is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ImCache. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.palexdev.imcache.cache.policy;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/// Least-Recently-Used [EvictionPolicy]. Every access moves the entry to the end of the queue, so the entry at the head
+/// is the one that was not used for the longest time.
+///
+/// Since accesses reorder the queue, all operations are synchronized on the policy instance.
+public class LRUPolicy implements EvictionPolicy {
+    //================================================================================
+    // Properties
+    //================================================================================
+    private final LinkedHashMap<String, Boolean> order = new LinkedHashMap<>(16, 0.75f, true);
+
+    //================================================================================
+    // Overridden Methods
+    //================================================================================
+    @Override
+    public synchronized void onInsert(String id) {
+        order.put(id, Boolean.TRUE);
+    }
+
+    /// Moves the given id to the end of the queue, see [LinkedHashMap#get(Object)] in access order mode.
+    @Override
+    public synchronized void onAccess(String id) {
+        order.get(id);
+    }
+
+    @Override
+    public synchronized void onRemove(String id) {
+        order.remove(id);
+    }
+
+    @Override
+    public synchronized String victim(String incoming) {
+        return order.isEmpty() ? null : order.firstEntry().getKey();
+    }
+
+    @Override
+    public synchronized void clear() {
+        order.clear();
+    }
+
+    @Override
+    public synchronized List<String> keys() {
+        return List.copyOf(order.sequencedKeySet());
+    }
+}
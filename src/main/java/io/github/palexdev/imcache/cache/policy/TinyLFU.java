@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2025 Parisi Alessandro - alessandro.parisi406@gmail.com
+ * This file is part of ImCache (https://github.com/palexdev/imcache)
+ *
+ * ImCache is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * ImCache is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ImCache. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.palexdev.imcache.cache.policy;
+
+/// [AdmissionFilter] implementation based on the TinyLFU scheme (G. Einziger, R. Friedman, B. Manes).
+///
+/// The popularity of the ids is estimated by a [FrequencySketch]. When the cache is full, a candidate is admitted only
+/// if its estimated frequency is higher than the victim's one. Since the sketch counts misses too, an id requested over
+/// and over will eventually be admitted, while a flood of one-hit-wonders can't push out the popular entries.
+public class TinyLFU implements AdmissionFilter {
+    //================================================================================
+    // Properties
+    //================================================================================
+    private final FrequencySketch sketch;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    public TinyLFU(int expectedEntries) {
+        this.sketch = new FrequencySketch(expectedEntries);
+    }
+
+    //================================================================================
+    // Overridden Methods
+    //================================================================================
+    @Override
+    public void record(String id) {
+        sketch.increment(id);
+    }
+
+    @Override
+    public boolean admit(String candidate, String victim) {
+        return sketch.frequency(candidate) > sketch.frequency(victim);
+    }
+
+    //================================================================================
+    // Getters
+    //================================================================================
+
+    /// @return the [FrequencySketch] used by this filter
+    public FrequencySketch getSketch() {
+        return sketch;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2025 Parisi Alessandro - alessandro.parisi406@gmail.com
+ * This file is part of ImCache (https://github.com/palexdev/imcache)
+ *
+ * ImCache is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * ImCache is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ImCache. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.palexdev.imcache.core;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import io.github.palexdev.imcache.exceptions.ImCacheException;
+
+/// A bounded pool of platform threads for CPU-bound work, which in [ImRequest] means decoding, transforming and
+/// encoding images, see [ImRequest#transform(ImImage)].
+///
+/// Requests fetch resources on virtual threads, which are cheap while waiting for I/O, but share a few carrier threads.
+/// Running CPU-heavy work on them would keep the carriers busy, delaying the other requests' I/O. So, this work is
+/// handed off to this pool, which is sized to the available cores by default, and the virtual thread just waits for it.
+///
+/// Tasks wait in a queue of limited capacity. When both the threads and the queue are busy, callers block before
+/// handing off more work (backpressure), so that the backlog of decoded images in memory is bounded too.
+///
+/// Tasks submitted from one of the pool's threads run inline, to avoid deadlocks.
+public class CpuPool implements AutoCloseable {
+    //================================================================================
+    // Static Properties
+    //================================================================================
+    private static final AtomicInteger POOLS = new AtomicInteger();
+
+    //================================================================================
+    // Properties
+    //================================================================================
+    private final ThreadPoolExecutor executor;
+    private final Semaphore permits;
+    private final ThreadGroup group;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+
+    /// Creates a pool with one thread per available core, and a queue of four tasks per thread.
+    public CpuPool() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /// Creates a pool with the given number of threads, and a queue of four tasks per thread.
+    public CpuPool(int threads) {
+        this(threads, threads * 4);
+    }
+
+    public CpuPool(int threads, int queueCapacity) {
+        if (threads < 1) throw new IllegalArgumentException("Threads must be at least 1: " + threads);
+        if (queueCapacity < 0) throw new IllegalArgumentException("Queue capacity cannot be negative: " + queueCapacity);
+        int id = POOLS.incrementAndGet();
+        this.group = new ThreadGroup("imcache-cpu-" + id);
+        ThreadFactory factory = Thread.ofPlatform()
+            .group(group)
+            .name("imcache-cpu-" + id + "-", 0)
+            .daemon(true)
+            .factory();
+        // The queue never rejects, since the semaphore admits at most threads + capacity tasks
+        this.executor = new ThreadPoolExecutor(threads, threads, 30L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), factory);
+        this.executor.allowCoreThreadTimeOut(true);
+        this.permits = new Semaphore(threads + queueCapacity);
+    }
+
+    //================================================================================
+    // Methods
+    //================================================================================
+
+    /// Runs the given task on the pool and waits for its result. If the pool is saturated, waits for room first.
+    ///
+    /// If the current thread is interrupted while waiting, the task is cancelled (interrupting its thread if it already
+    /// started).
+    ///
+    /// @throws ImCacheException if the current thread was interrupted (the interrupted status is preserved), if the pool
+    /// was closed, or wrapping the task's checked exceptions, unchecked ones are rethrown as they are
+    public <T> T call(Supplier<T> task) {
+        if (isPoolThread()) return task.get();
+        try {
+            permits.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ImCacheException("Interrupted while waiting for the CPU pool", ex);
+        }
+        // Released when the task ends (before its result is published), or when it's cancelled, even if it never ran
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) permits.release();
+        };
+        FutureTask<T> future = new FutureTask<>(() -> {
+            try {
+                return task.get();
+            } finally {
+                release.run();
+            }
+        }) {
+            @Override
+            protected void done() {
+                release.run();
+            }
+        };
+        try {
+            executor.execute(future);
+        } catch (RejectedExecutionException ex) {
+            permits.release();
+            throw new ImCacheException("The CPU pool was closed", ex);
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ImCacheException("Interrupted while waiting for the CPU pool", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException rex) throw rex;
+            if (cause instanceof Error err) throw err;
+            throw new ImCacheException(cause);
+        }
+    }
+
+    /// Stops the pool's threads once the submitted tasks are done. Further tasks are rejected.
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private boolean isPoolThread() {
+        return Thread.currentThread().getThreadGroup() == group;
+    }
+
+    //================================================================================
+    // Getters
+    //================================================================================
+
+    /// @return the number of threads in the pool
+    public int getThreads() {
+        return executor.getMaximumPoolSize();
+    }
+
+    /// @return the number of tasks that can be handed off before callers block, running ones included
+    public int getAvailable() {
+        return permits.availablePermits();
+    }
+
+    //================================================================================
+    // Static Methods
+    //================================================================================
+
+    /// @return the pool shared by all [ImCache] instances by default, created on first use
+    public static CpuPool common() {
+        return Common.POOL;
+    }
+
+    //================================================================================
+    // Inner Classes
+    //================================================================================
+    private static class Common {
+        private static final CpuPool POOL = new CpuPool();
+    }
+}
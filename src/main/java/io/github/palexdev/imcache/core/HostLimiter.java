@@ -0,0 +1,489 @@
+/*
+ * Copyright (C) 2025 Parisi Alessandro - alessandro.parisi406@gmail.com
+ * This file is part of ImCache (https://github.com/palexdev/imcache)
+ *
+ * ImCache is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * ImCache is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ImCache. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.palexdev.imcache.core;
+
+import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import io.github.palexdev.imcache.cache.NegativeCache;
+import io.github.palexdev.imcache.cache.NegativeCache.FailureKind;
+import io.github.palexdev.imcache.exceptions.HostUnavailableException;
+import io.github.palexdev.imcache.exceptions.ImCacheException;
+
+/// Limits the number of concurrent loads per host, so that a burst of requests to the same server doesn't open
+/// hundreds of connections at once. Loads beyond the limit wait in line (first come, first served) until a slot is free.
+/// Used by [ImCache] when set via [ImCache#hostLimiterConfig(java.util.function.Supplier)].
+///
+/// The limit of each host is adaptive (AIMD, additive increase, multiplicative decrease). It starts at
+/// [#getInitialLimit()], grows by about one every `limit` successful loads, as long as at least half of it is used,
+/// and is multiplied by [#getBackoff()] when a load fails because of the host (see [#setClassifier(Function)]) or is
+/// slower than [#getLatencyThreshold()]. It always stays between [#getMinLimit()] and [#getMaxLimit()].
+///
+/// Each host also has a circuit breaker, see [CircuitState]. After [#getFailureThreshold()] consecutive failures, the
+/// circuit opens, and loads fail immediately with a [HostUnavailableException] for [#getOpenDuration()]. Then a single
+/// trial load is let through: if it succeeds the circuit closes, otherwise it opens again.
+///
+/// Only URLs with a host are limited (e.g. not local files), hosts are identified by name and port. Hosts that stay idle
+/// for [#getIdleTimeout()] with a closed circuit are forgotten, so that their state doesn't accumulate.
+public class HostLimiter {
+    //================================================================================
+    // Static Properties
+    //================================================================================
+
+    /// Default initial limit of each host: 6, the same as most browsers
+    public static final int DEFAULT_INITIAL_LIMIT = 6;
+
+    /// Default maximum limit of each host: 32
+    public static final int DEFAULT_MAX_LIMIT = 32;
+
+    /// Default number of consecutive failures that open a host's circuit: 5
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+
+    //================================================================================
+    // Properties
+    //================================================================================
+    private final ConcurrentMap<String, Host> hosts = new ConcurrentHashMap<>();
+    private volatile int initialLimit = DEFAULT_INITIAL_LIMIT;
+    private volatile int minLimit = 1;
+    private volatile int maxLimit = DEFAULT_MAX_LIMIT;
+    private volatile double backoff = 0.5;
+    private volatile long latencyThreshold = 0L;
+    private volatile int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+    private volatile long openDuration = Duration.ofSeconds(30).toNanos();
+    private volatile long idleTimeout = Duration.ofMinutes(5).toNanos();
+    private volatile long lastSweep = Long.MIN_VALUE;
+    private volatile Function<Throwable, FailureKind> classifier = NegativeCache::classify;
+
+    //================================================================================
+    // Methods
+    //================================================================================
+
+    /// Waits until the given [URL]'s host has a free slot and takes it. The returned [Permit] must be closed once the load
+    /// is done, after reporting its outcome with [Permit#succeeded()] or [Permit#failed(Throwable)].
+    ///
+    /// @throws HostUnavailableException if the host's circuit is open
+    /// @throws ImCacheException if the current thread is interrupted while waiting, the interrupted status is preserved
+    public Permit acquire(URL url) {
+        String key = key(url);
+        if (key == null) return new Permit(null, false);
+        sweep();
+        while (true) {
+            Permit permit = hosts.computeIfAbsent(key, Host::new).acquire();
+            // Null if the host was evicted in the meantime, a new one takes its place
+            if (permit != null) return permit;
+        }
+    }
+
+    /// Evicts the hosts that have been idle for [#getIdleTimeout()], at most once per idle timeout.
+    private void sweep() {
+        long now = now();
+        long last = lastSweep;
+        if (last == Long.MIN_VALUE) {
+            lastSweep = now;
+            return;
+        }
+        if (now - last < idleTimeout) return;
+        lastSweep = now;
+        hosts.forEach((key, host) -> {
+            if (host.evictIfIdle(now)) hosts.remove(key, host);
+        });
+    }
+
+    /// Forgets the state of all hosts.
+    public void clear() {
+        hosts.clear();
+    }
+
+    /// @return the identifier of the given [URL]'s host, `null` if it has none
+    protected String key(URL url) {
+        String host = url.getHost();
+        if (host == null || host.isEmpty()) return null;
+        int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+        return host.toLowerCase(Locale.ROOT) + ":" + port;
+    }
+
+    /// @return the current time in nanoseconds, used to open and close circuits
+    protected long now() {
+        return System.nanoTime();
+    }
+
+    //================================================================================
+    // Getters/Setters
+    //================================================================================
+
+    /// @return the current limit of the given [URL]'s host, [#getInitialLimit()] if it was never contacted
+    public int getLimit(URL url) {
+        Host host = host(url);
+        return host != null ? host.limit() : initialLimit;
+    }
+
+    /// @return the number of loads in progress for the given [URL]'s host
+    public int getInFlight(URL url) {
+        Host host = host(url);
+        return host != null ? host.inFlight() : 0;
+    }
+
+    /// @return the state of the circuit of the given [URL]'s host
+    public CircuitState getState(URL url) {
+        Host host = host(url);
+        return host != null ? host.state() : CircuitState.CLOSED;
+    }
+
+    /// @return the number of hosts whose state is remembered, see [#setIdleTimeout(Duration)]
+    public int getHostCount() {
+        return hosts.size();
+    }
+
+    private Host host(URL url) {
+        String key = key(url);
+        return key != null ? hosts.get(key) : null;
+    }
+
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    /// Sets the limit of hosts never contacted before, [#DEFAULT_INITIAL_LIMIT] by default.
+    public HostLimiter setInitialLimit(int initialLimit) {
+        if (initialLimit < 1) throw new IllegalArgumentException("Limit must be at least 1: " + initialLimit);
+        this.initialLimit = initialLimit;
+        return this;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    /// Sets the minimum limit of each host, 1 by default.
+    public HostLimiter setMinLimit(int minLimit) {
+        if (minLimit < 1) throw new IllegalArgumentException("Limit must be at least 1: " + minLimit);
+        this.minLimit = minLimit;
+        return this;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    /// Sets the maximum limit of each host, [#DEFAULT_MAX_LIMIT] by default.
+    public HostLimiter setMaxLimit(int maxLimit) {
+        if (maxLimit < 1) throw new IllegalArgumentException("Limit must be at least 1: " + maxLimit);
+        this.maxLimit = maxLimit;
+        return this;
+    }
+
+    public double getBackoff() {
+        return backoff;
+    }
+
+    /// Sets the factor by which the limit of a host is multiplied when a load fails or is too slow, 0.5 by default.
+    ///
+    /// @throws IllegalArgumentException if the value is not in the (0, 1) range
+    public HostLimiter setBackoff(double backoff) {
+        if (backoff <= 0 || backoff >= 1) throw new IllegalArgumentException("Backoff must be in (0, 1): " + backoff);
+        this.backoff = backoff;
+        return this;
+    }
+
+    public Duration getLatencyThreshold() {
+        return Duration.ofNanos(latencyThreshold);
+    }
+
+    /// Sets the time after which a successful load is considered a sign of congestion, reducing the host's limit as a
+    /// failure would (but without affecting the circuit). `null` or [Duration#ZERO] disable it (the default).
+    public HostLimiter setLatencyThreshold(Duration latencyThreshold) {
+        this.latencyThreshold = (latencyThreshold == null || latencyThreshold.isNegative()) ? 0L : latencyThreshold.toNanos();
+        return this;
+    }
+
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    /// Sets the number of consecutive failures that open a host's circuit, [#DEFAULT_FAILURE_THRESHOLD] by default.
+    public HostLimiter setFailureThreshold(int failureThreshold) {
+        if (failureThreshold < 1) throw new IllegalArgumentException("Threshold must be at least 1: " + failureThreshold);
+        this.failureThreshold = failureThreshold;
+        return this;
+    }
+
+    public Duration getOpenDuration() {
+        return Duration.ofNanos(openDuration);
+    }
+
+    /// Sets for how long a host's circuit stays open before letting a trial load through, 30 seconds by default.
+    public HostLimiter setOpenDuration(Duration openDuration) {
+        this.openDuration = openDuration.toNanos();
+        return this;
+    }
+
+    public Duration getIdleTimeout() {
+        return Duration.ofNanos(idleTimeout);
+    }
+
+    /// Sets for how long a host must stay idle (no loads in flight nor waiting, and a closed circuit) before its state
+    /// is forgotten, 5 minutes by default. Forgotten hosts start over from [#getInitialLimit()].
+    public HostLimiter setIdleTimeout(Duration idleTimeout) {
+        this.idleTimeout = idleTimeout.toNanos();
+        return this;
+    }
+
+    /// Sets the function that determines which failures are caused by the host. Only [FailureKind#TRANSIENT] ones
+    /// (e.g. timeouts, refused connections, 5xx responses) reduce the limit and count towards opening the circuit,
+    /// while others (e.g. not found) mean that the host is responding. The default is [NegativeCache#classify(Throwable)].
+    public HostLimiter setClassifier(Function<Throwable, FailureKind> classifier) {
+        this.classifier = classifier;
+        return this;
+    }
+
+    //================================================================================
+    // Inner Classes
+    //================================================================================
+
+    /// The states of a host's circuit breaker.
+    public enum CircuitState {
+        /// The host is healthy, loads are limited only by the host's limit.
+        CLOSED,
+
+        /// The host kept failing, loads are rejected until the open duration elapses.
+        OPEN,
+
+        /// The open duration elapsed, a single trial load is let through to determine whether the host recovered.
+        HALF_OPEN,
+    }
+
+    /// A slot taken by a load, see [#acquire(URL)]. Closing the permit without reporting an outcome (e.g. because the
+    /// load was interrupted) frees the slot without affecting the host's limit or circuit.
+    public class Permit implements AutoCloseable {
+        private final Host host;
+        private final boolean trial;
+        private final long start = now();
+        private boolean released = false;
+
+        Permit(Host host, boolean trial) {
+            this.host = host;
+            this.trial = trial;
+        }
+
+        /// Frees the slot, reporting that the load succeeded.
+        public void succeeded() {
+            release(now() - start > latencyThreshold && latencyThreshold > 0 ? Outcome.SLOW : Outcome.SUCCESS);
+        }
+
+        /// Frees the slot, reporting that the load failed because of the given exception.
+        public void failed(Throwable error) {
+            FailureKind kind = Thread.currentThread().isInterrupted() ? null : classifier.apply(error);
+            if (kind == null) {
+                release(Outcome.NONE);
+            } else {
+                release(kind == FailureKind.TRANSIENT ? Outcome.FAILURE : Outcome.SUCCESS);
+            }
+        }
+
+        @Override
+        public void close() {
+            release(Outcome.NONE);
+        }
+
+        private void release(Outcome outcome) {
+            if (released) return;
+            released = true;
+            if (host != null) host.release(this, outcome);
+        }
+    }
+
+    private enum Outcome {
+        SUCCESS, SLOW, FAILURE, NONE
+    }
+
+    /// The limit, the loads in flight and the circuit of a single host.
+    ///
+    /// Waiting loads are queued, each on its own [Condition], and only the first in line can take a free slot, so that
+    /// new loads never overtake the ones already waiting.
+    private class Host {
+        private final String name;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Deque<Condition> waiters = new ArrayDeque<>();
+        private double limit = initialLimit;
+        private int inFlight = 0;
+        private int failures = 0;
+        private CircuitState state = CircuitState.CLOSED;
+        private long openedAt;
+        private boolean trial = false;
+        private long lastUsed = now();
+        private boolean evicted = false;
+
+        Host(String name) {
+            this.name = name;
+        }
+
+        /// @return the permit, `null` if the host was evicted, see [HostLimiter#acquire(URL)]
+        Permit acquire() {
+            lock.lock();
+            Condition waiter = null;
+            try {
+                if (evicted) return null;
+                while (true) {
+                    if (waiter == null ? waiters.isEmpty() : waiters.peekFirst() == waiter) {
+                        Permit permit = tryAcquire();
+                        if (permit != null) {
+                            if (waiter != null) waiters.pollFirst();
+                            waiter = null;
+                            signalNext();
+                            return permit;
+                        }
+                    }
+                    if (waiter == null) {
+                        waiter = lock.newCondition();
+                        waiters.addLast(waiter);
+                    }
+                    waiter.await();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new ImCacheException("Interrupted while waiting for host %s".formatted(name), ex);
+            } finally {
+                // Leaving the line (interrupted or circuit open), the next one may be able to proceed
+                if (waiter != null) {
+                    boolean first = waiters.peekFirst() == waiter;
+                    waiters.remove(waiter);
+                    if (first) signalNext();
+                }
+                lock.unlock();
+            }
+        }
+
+        /// Takes a slot if one is free, called while holding the lock by the first in line.
+        ///
+        /// @throws HostUnavailableException if the circuit is open
+        private Permit tryAcquire() {
+            if (state == CircuitState.OPEN) {
+                if (now() - openedAt < openDuration) {
+                    throw new HostUnavailableException("Host %s is unavailable after %d consecutive failures".formatted(name, failures));
+                }
+                state = CircuitState.HALF_OPEN;
+                trial = false;
+            }
+            if (state == CircuitState.HALF_OPEN) {
+                if (!trial && inFlight == 0) {
+                    trial = true;
+                    inFlight++;
+                    return new Permit(this, true);
+                }
+            } else if (inFlight < (int) limit) {
+                inFlight++;
+                return new Permit(this, false);
+            }
+            return null;
+        }
+
+        private void signalNext() {
+            Condition next = waiters.peekFirst();
+            if (next != null) next.signal();
+        }
+
+        /// Marks the host as evicted if it's idle since at least [HostLimiter#getIdleTimeout()].
+        ///
+        /// @return whether the host was evicted
+        boolean evictIfIdle(long now) {
+            lock.lock();
+            try {
+                if (inFlight > 0 || !waiters.isEmpty() || state != CircuitState.CLOSED) return false;
+                if (now - lastUsed < idleTimeout) return false;
+                evicted = true;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void release(Permit permit, Outcome outcome) {
+            lock.lock();
+            try {
+                int used = inFlight--;
+                lastUsed = now();
+                switch (outcome) {
+                    case SUCCESS -> {
+                        failures = 0;
+                        if (permit.trial) state = CircuitState.CLOSED;
+                        if (used * 2 >= (int) limit) limit = Math.min(maxLimit, limit + 1.0 / limit);
+                    }
+                    case SLOW -> {
+                        failures = 0;
+                        if (permit.trial) state = CircuitState.CLOSED;
+                        decrease();
+                    }
+                    case FAILURE -> {
+                        failures++;
+                        decrease();
+                        if (permit.trial || (state == CircuitState.CLOSED && failures >= failureThreshold)) {
+                            state = CircuitState.OPEN;
+                            openedAt = now();
+                        }
+                    }
+                    case NONE -> {
+                        if (permit.trial) trial = false;
+                    }
+                }
+                signalNext();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void decrease() {
+            limit = Math.max(minLimit, Math.min(maxLimit, limit) * backoff);
+        }
+
+        int limit() {
+            lock.lock();
+            try {
+                return (int) limit;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int inFlight() {
+            lock.lock();
+            try {
+                return inFlight;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        CircuitState state() {
+            lock.lock();
+            try {
+                return state;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2025 Parisi Alessandro - alessandro.parisi406@gmail.com
+ * This file is part of ImCache (https://github.com/palexdev/imcache)
+ *
+ * ImCache is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * ImCache is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ImCache. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.palexdev.imcache.core;
+
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.http.HttpRequest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import io.github.palexdev.imcache.core.ImRequest.RequestState;
+import io.github.palexdev.imcache.core.ImRequest.Result;
+import io.github.palexdev.imcache.exceptions.ImCacheException;
+import io.github.palexdev.imcache.transforms.Transform;
+import io.github.palexdev.imcache.utils.AsyncUtils;
+import io.github.palexdev.imcache.utils.ThrowingConsumer;
+
+/// A group of [ImRequests][ImRequest] executed together, typically created by [ImCache#requestAll(Collection, Transform...)].
+///
+/// The batch runs at most [#parallelism(int)] requests at the same time, each on its own virtual thread, and gives
+/// back the [Results][Result] in the same order as the input, while a callback can observe them as they complete,
+/// see [#execute(Consumer)].
+///
+/// The children are bound to the batch's execution: the batch doesn't complete until all of them are done, and if it
+/// is interrupted (e.g. by cancelling the future returned by [#submit()]), or if it fails fast (see [#failFast(boolean)]),
+/// all the children still running are interrupted and the ones not started yet are skipped (their state remains
+/// [RequestState#READY]).
+public class ImBatch {
+    //================================================================================
+    // Static Properties
+    //================================================================================
+
+    /// Default maximum number of requests running at the same time: 8
+    public static final int DEFAULT_PARALLELISM = 8;
+
+    //================================================================================
+    // Properties
+    //================================================================================
+    private final ImCache cache;
+    private final List<ImRequest> requests;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private boolean failFast = false;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    public ImBatch(ImCache cache, Collection<URL> urls, Transform... transforms) {
+        this.cache = cache;
+        List<ImRequest> requests = new ArrayList<>(urls.size());
+        for (URL url : urls) {
+            ImRequest request = cache.request(url);
+            for (Transform transform : transforms) {
+                request.transform(transform);
+            }
+            requests.add(request);
+        }
+        this.requests = Collections.unmodifiableList(requests);
+    }
+
+    //================================================================================
+    // Methods
+    //================================================================================
+
+    /// Convenience method for executing the batch without a callback.
+    ///
+    /// @see #execute(Consumer)
+    public List<Result> execute() {
+        return execute(null);
+    }
+
+    /// Executes the batch on the current thread, blocking until all the requests are done.
+    ///
+    /// The given callback is called with the [Result] of each request as soon as it completes. The calls never overlap,
+    /// but they happen on the requests' threads, and in no particular order.
+    ///
+    /// @return the results in the same order as the input
+    /// @throws ImCacheException if the current thread is interrupted while waiting, in which case all the requests still
+    /// running are interrupted before returning, and the interrupted status is preserved
+    public List<Result> execute(Consumer<Result> callback) {
+        Semaphore permits = new Semaphore(parallelism);
+        ReentrantLock lock = new ReentrantLock();
+        boolean interrupted = false;
+        try (ExecutorService scope = Executors.newVirtualThreadPerTaskExecutor()) {
+            try {
+                for (ImRequest request : requests) {
+                    permits.acquire();
+                    if (scope.isShutdown()) break;
+                    scope.execute(() -> {
+                        try {
+                            Result result = request.execute().result();
+                            if (callback != null) {
+                                lock.lock();
+                                try {
+                                    callback.accept(result);
+                                } finally {
+                                    lock.unlock();
+                                }
+                            }
+                            if (failFast && result.state() == RequestState.FAILED) scope.shutdownNow();
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                }
+            } catch (InterruptedException ex) {
+                scope.shutdownNow();
+                interrupted = true;
+            } catch (RejectedExecutionException ex) {
+                // Failed fast while submitting
+            }
+        }
+        // If interrupted while closing, the scope interrupts the requests and waits for them, restoring the status
+        if (interrupted || Thread.currentThread().isInterrupted()) {
+            Thread.currentThread().interrupt();
+            throw new ImCacheException("Batch of %d requests was interrupted".formatted(requests.size()));
+        }
+        return results();
+    }
+
+    /// Delegates to [#submit(Executor)] with the [ImCache]'s executor, see [ImCache#setExecutor(Executor)].
+    public CompletableFuture<List<Result>> submit() {
+        return submit(cache.getExecutor());
+    }
+
+    /// Executes the batch asynchronously on the given executor, see [#execute()]. Cancelling the returned future
+    /// interrupts all the requests still running.
+    public CompletableFuture<List<Result>> submit(Executor executor) {
+        return AsyncUtils.supplyAsync(this::execute, executor);
+    }
+
+    // Setup
+
+    /// Sets the maximum number of requests running at the same time, [#DEFAULT_PARALLELISM] by default.
+    ///
+    /// @throws IllegalArgumentException if the value is lower than 1
+    public ImBatch parallelism(int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /// Sets whether the first failed request should abort the batch, interrupting all the others. `false` by default.
+    public ImBatch failFast(boolean failFast) {
+        this.failFast = failFast;
+        return this;
+    }
+
+    /// Sets whether all the requests should overwrite the cached content, see [ImRequest#overwrite(boolean)].
+    public ImBatch overwrite(boolean overwrite) {
+        requests.forEach(r -> r.overwrite(overwrite));
+        return this;
+    }
+
+    /// Sets the same [URLConnection] configuration on all the requests, see [ImRequest#urlConfig(ThrowingConsumer)].
+    public ImBatch urlConfig(ThrowingConsumer<URLConnection> urlConfig) {
+        requests.forEach(r -> r.urlConfig(urlConfig));
+        return this;
+    }
+
+    /// Sets the same HTTP request configuration on all the requests, see [ImRequest#httpConfig(Consumer)].
+    public ImBatch httpConfig(Consumer<HttpRequest.Builder> httpConfig) {
+        requests.forEach(r -> r.httpConfig(httpConfig));
+        return this;
+    }
+
+    //================================================================================
+    // Getters/Setters
+    //================================================================================
+
+    /// @return the requests in the batch, in the same order as the input, as an unmodifiable list
+    public List<ImRequest> requests() {
+        return requests;
+    }
+
+    /// @return the current results of the requests, in the same order as the input
+    public List<Result> results() {
+        List<Result> results = new ArrayList<>(requests.size());
+        for (ImRequest request : requests) {
+            results.add(request.result());
+        }
+        return results;
+    }
+
+    /// @return the maximum number of requests running at the same time
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /// @return whether the first failed request aborts the batch
+    public boolean isFailFast() {
+        return failFast;
+    }
+}
@@ -20,13 +20,22 @@ package io.github.palexdev.imcache.core;
 
 import io.github.palexdev.imcache.cache.*;
 import io.github.palexdev.imcache.core.ImRequest.RequestState;
+import io.github.palexdev.imcache.exceptions.ImCacheException;
 import io.github.palexdev.imcache.transforms.Transform;
+import io.github.palexdev.imcache.utils.AsyncUtils;
+import io.github.palexdev.imcache.utils.HttpResolver;
+import io.github.palexdev.imcache.utils.Validators;
 import io.github.palexdev.imcache.utils.URLHandler;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.net.URL;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 
 /// Core class which eases communication between the request system ([ImRequest]) and the caching system ([ImgCache]).
@@ -49,12 +58,21 @@ import java.util.function.Supplier;
 /// also a way to modify them via the [Transform#transform(BufferedImage)] API. Transformations are applied by [ImRequest]
 /// after the original resource is loaded. At that point we can store the results, but this raises a question: which one
 /// do you want to save? `ImCache` allows you to control this behavior by setting the [StoreStrategy],
-/// see [#store(ImRequest, ImImage, ImImage)]. /// The reason the system doesn't allow caching both is to save space and for simplicity
+/// see [#store(ImRequest, ImImage, ImImage)].
+/// Transformed images are cached as variants of the original, with their own id derived from the [URL] and the
+/// transforms' fingerprints (see [ImRequest#fingerprint()]), so that different chains never overwrite each other.
 /// Most of the time you probably want to cache the original resource, as transform operations are relatively fast.
 ///
 /// _Defaults & Config_
 /// - By default, the store strategy is set to [StoreStrategy#SAVE_ORIGINAL], can be changed via [#storeStrategy(StoreStrategy)]
 /// - By default, this uses an in-memory cache ([MemoryCache]), can be changed via [#cacheConfig(Supplier)]
+/// - By default, decoded images are not cached, a [BitmapCache] can be set via [#bitmapConfig(Supplier)]
+/// - By default, statistics are recorded, see [#stats()] and [#setRecordStats(boolean)]
+/// - By default, cached images are never refreshed, see [#setRefreshAfterWrite(Duration)]
+/// - By default, failures are not cached, a [NegativeCache] can be set via [#negativeCacheConfig(Supplier)]
+/// - By default, concurrent loads from the same host are not limited, a [HostLimiter] can be set via [#hostLimiterConfig(Supplier)]
+/// - By default, images are decoded, transformed and encoded on a shared pool of platform threads, see [#setCpuPool(CpuPool)]
+/// - By default, http(s) resources are fetched with a shared [HttpClient][java.net.http.HttpClient], see [#setHttpResolver(HttpResolver)]
 ///
 /// @see ImgCache
 /// @see MemoryCache
@@ -72,8 +90,20 @@ public class ImCache {
     //================================================================================
     // Properties
     //================================================================================
-    private ImgCache<?> cache = new MemoryCache();
+    private volatile ImgCache<?> cache = new MemoryCache();
+    private volatile BitmapCache bitmaps;
+    private volatile NegativeCache negatives;
+    private volatile HostLimiter hostLimiter;
+    private final StatsCounter stats = new StatsCounter();
     private StoreStrategy storeStrategy = StoreStrategy.SAVE_ORIGINAL;
+    private volatile Duration refreshAfterWrite = Duration.ZERO;
+    private volatile double refreshBeta = 1.0;
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private volatile Executor executor = AsyncUtils::runAsync;
+    private volatile RequestScheduler scheduler = new RequestScheduler();
+    private volatile CpuPool cpuPool = CpuPool.common();
+    private volatile Supplier<HttpResolver> httpResolver = HttpResolver::common;
+    private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>();
 
     //================================================================================
     // Methods
@@ -105,17 +135,69 @@ public class ImCache {
         return request(path.toFile());
     }
 
-    /// Stores a completed request in the cache by its [ImRequest#id()]. The image to be saved is either the original
-    /// or the transformed one, depending on the [StoreStrategy].
+    /// Creates a new [ImBatch] with one [ImRequest] for each of the given [URLs][URL], in the same order, all with the
+    /// given transforms.
+    public ImBatch requestAll(Collection<URL> urls, Transform... transforms) {
+        return new ImBatch(this, urls, transforms);
+    }
+
+    /// Stores a completed request in the cache. Depending on the [StoreStrategy], the original is stored by the
+    /// request's [ImRequest#baseId()], and the transformed image by its [ImRequest#id()].
     ///
-    /// Note that if no transforms were applied, the `src` and the `out` parameters will be the same. In other words,
-    /// no matter the strategy, the original will be saved.
+    /// Note that the transformed image can be stored only if the request is a variant (see [ImRequest#isVariant()]),
+    /// otherwise the original is stored instead. Also, if no transforms were applied, the `src` and the `out` parameters
+    /// will be the same. In other words, no matter the strategy, the original will be saved.
     ///
-    /// If the image to be saved is `null`, nothing happens.
+    /// Images that are `null` are not saved. Requests pass `null` for the images they found in the cache, so that they
+    /// are not written again and their age is preserved, see [#setRefreshAfterWrite(Duration)].
     protected void store(ImRequest request, ImImage src, ImImage out) {
-        String id = request.id();
-        ImImage toSave = storeStrategy == StoreStrategy.SAVE_ORIGINAL ? src : out;
-        if (toSave != null) cache.store(id, toSave);
+        boolean variant = request.isVariant();
+        switch (storeStrategy) {
+            case SAVE_ORIGINAL -> store(request.baseId(), src);
+            case SAVE_TRANSFORMED -> {
+                if (variant) {
+                    store(request.id(), out);
+                } else {
+                    store(request.baseId(), src);
+                }
+            }
+            case SAVE_ALL -> {
+                store(request.baseId(), src);
+                if (variant) store(request.id(), out);
+            }
+        }
+    }
+
+    private void store(String id, ImImage img) {
+        if (img != null) cache.store(id, img);
+    }
+
+    // Stats
+
+    /// @return a snapshot of the statistics: stores, removals and direct lookups are recorded by the [ImgCache] (see
+    /// [ImgCache#stats()]), while the requests created by this [ImCache] record their loads, the loads' times and a
+    /// single hit or miss each (their lookups are not recorded by the [ImgCache], see [ImgCache#probeImage(Key)])
+    public CacheStats stats() {
+        return cache.stats().plus(stats.snapshot());
+    }
+
+    /// Resets the statistics of both this and the current [ImgCache].
+    public ImCache resetStats() {
+        stats.reset();
+        cache.resetStats();
+        return this;
+    }
+
+    /// Sets whether statistics are recorded by both this and the current [ImgCache].
+    public ImCache setRecordStats(boolean recordStats) {
+        stats.setEnabled(recordStats);
+        cache.setRecordStats(recordStats);
+        return this;
+    }
+
+    /// @return the counter used by requests to record their lookups and loads
+    StatsCounter statsCounter() {
+        return stats;
     }
 
     // Removal
@@ -136,16 +218,188 @@ public class ImCache {
         return this;
     }
 
+    // Loading
+
+    /// Loads the resource of the given request with [ImRequest#load()], coalescing concurrent loads of the same resource
+    /// (by [ImRequest#baseId()]): only one load is in flight at any time, and the other callers wait for its result.
+    /// Since only the original is shared, each caller then applies its own transforms.
+    ///
+    /// The load runs on its own virtual thread, so that it's not bound to any of the callers. If a caller is interrupted
+    /// (e.g. by cancelling the future returned by [ImRequest#submit(Executor)]), it stops waiting, and the load is
+    /// aborted only when all the callers have given up.
+    ///
+    /// A successful load stays in flight until its owner stored the image and called [Loaded#stored()], so that the
+    /// requests arriving in the meantime, which would miss the cache, wait for it rather than loading the resource again.
+    ///
+    /// @return the loaded image and whether the caller is the first to receive it, see [Loaded]
+    /// @throws ImCacheException if the load failed (the exception is the one thrown by [ImRequest#load()] if it's
+    /// unchecked) or if the caller was interrupted
+    Loaded load(ImRequest request) {
+        String id = request.baseId();
+        while (true) {
+            Flight created = new Flight(id);
+            Flight flight = flights.putIfAbsent(id, created);
+            if (flight == null) {
+                flight = created;
+                flight.join();
+                flight.start(request);
+            } else if (!flight.join()) {
+                // The flight was aborted in the meantime, start a new one
+                flights.remove(id, flight);
+                continue;
+            }
+            return flight.await();
+        }
+    }
+
+    // Refresh
+
+    /// Decides whether a cached image of the given age should be refreshed, see [#setRefreshAfterWrite(Duration)].
+    ///
+    /// The decision is probabilistic ("XFetch"): the image is refreshed when `age - delta * beta * ln(rand)` exceeds the
+    /// refresh age, where `delta` is the average fetch time (see [CacheStats#averageLoadPenalty()]), `beta` is set by
+    /// [#setRefreshBeta(double)] and `rand` is uniform in `(0, 1]`. The chance of an early refresh grows as the image gets
+    /// older, so reloads of different images are spread out rather than all happening at the refresh age.
+    boolean shouldRefresh(Duration age) {
+        return shouldRefresh(age, null);
+    }
+
+    /// Same as [#shouldRefresh(Duration)], but if the image's [Validators] have a max-age, that is used as the refresh age
+    /// instead, since the server declared the image fresh for that long. Refreshing must still be enabled.
+    boolean shouldRefresh(Duration age, Validators validators) {
+        long refresh = refreshAfterWrite.toNanos();
+        if (refresh <= 0) return false;
+        if (validators != null && validators.maxAge() != null) refresh = validators.maxAge().toNanos();
+        long nanos = age.toNanos();
+        if (nanos >= refresh) return true;
+        double delta = stats.averageLoadPenalty() * refreshBeta;
+        if (delta <= 0) return false;
+        double rand = 1.0 - ThreadLocalRandom.current().nextDouble();
+        return nanos - delta * Math.log(rand) >= refresh;
+    }
+
+    /// Reloads the resource of the given request asynchronously, by executing a copy of it with
+    /// [ImRequest#overwrite(boolean)] set to `true`. The new images replace the cached ones when the reload completes,
+    /// while failures are ignored (and not remembered by the [NegativeCache]), so that the stale images are kept.
+    ///
+    /// Only one reload per request id can run at any time, further calls are ignored until it completes.
+    void refresh(ImRequest request) {
+        String id = request.id();
+        if (!refreshing.add(id)) return;
+        try {
+            executor.execute(() -> {
+                try {
+                    ImRequest copy = request.copy().overwrite(true);
+                    copy.background = true;
+                    copy.execute();
+                } finally {
+                    refreshing.remove(id);
+                }
+            });
+        } catch (RuntimeException ex) {
+            refreshing.remove(id);
+        }
+    }
+
     // Setup
 
     /// Replaces the current cache with a new one generated by the given config supplier.
     ///
-    /// Note that the current cache is not cleared automatically.
+    /// Note that the current cache is not cleared automatically, and that the new cache's statistics are not related to
+    /// the current one, see [#stats()].
     public ImCache cacheConfig(Supplier<ImgCache<?>> config) {
         this.cache = config.get();
         return this;
     }
 
+    /// Sets the [BitmapCache] used to keep decoded images, generated by the given config supplier. A `null` supplier or
+    /// value disable the bitmap tier.
+    ///
+    /// When set, requests reuse previously decoded bitmaps before applying transforms, and the images they produce are
+    /// linked to this cache, see [ImImage#asImage()].
+    public ImCache bitmapConfig(Supplier<BitmapCache> config) {
+        this.bitmaps = config != null ? config.get() : null;
+        return this;
+    }
+
+    /// Sets the [NegativeCache] used to remember failed loads, generated by the given config supplier. A `null` supplier
+    /// or value disable negative caching.
+    ///
+    /// When set, requests that fail to load a resource remember the failure, and further requests for the same resource
+    /// fail fast with the same exception, without loading it again, until the failure expires. Resources found in the
+    /// cache are not affected.
+    public ImCache negativeCacheConfig(Supplier<NegativeCache> config) {
+        this.negatives = config != null ? config.get() : null;
+        return this;
+    }
+
+    /// Sets the [HostLimiter] used to limit concurrent loads from the same host, generated by the given config supplier.
+    /// A `null` supplier or value disable the limits.
+    ///
+    /// When set, each load waits for a free slot of its host, and fails fast with a
+    /// [io.github.palexdev.imcache.exceptions.HostUnavailableException] while the host's circuit is open. Resources
+    /// found in the cache are not affected.
+    public ImCache hostLimiterConfig(Supplier<HostLimiter> config) {
+        this.hostLimiter = config != null ? config.get() : null;
+        return this;
+    }
+
+    /// Sets the age after which cached images are refreshed: a request that finds an image older than this in the cache
+    /// completes immediately with [RequestState#CACHE_HIT], serving the stale image, while the resource is reloaded
+    /// asynchronously (see [#refresh(ImRequest)]). `null` or [Duration#ZERO] disable refreshing (the default).
+    ///
+    /// To serve stale images rather than block on a reload, this should be shorter than the cache's expiration, see
+    /// [ImgCache#setExpireAfterWrite(Duration)]. Refreshes may also happen a bit earlier, see [#setRefreshBeta(double)].
+    public ImCache setRefreshAfterWrite(Duration refreshAfterWrite) {
+        this.refreshAfterWrite = (refreshAfterWrite == null || refreshAfterWrite.isNegative()) ? Duration.ZERO : refreshAfterWrite;
+        return this;
+    }
+
+    /// Sets how eagerly images are refreshed before the refresh age, 1.0 by default. Higher values make refreshes happen
+    /// earlier, while 0 makes them deterministic. Early refreshes need statistics to be recorded, since they are scaled
+    /// by the average load time.
+    ///
+    /// @throws IllegalArgumentException if the value is negative
+    public ImCache setRefreshBeta(double refreshBeta) {
+        if (refreshBeta < 0) throw new IllegalArgumentException("Beta cannot be negative: " + refreshBeta);
+        this.refreshBeta = refreshBeta;
+        return this;
+    }
+
+    /// Sets the [Executor] on which requests are executed asynchronously, see [ImRequest#executeAsync(Consumer)] and
+    /// [ImRequest#submit()], and on which images are refreshed. `null` restores the default, which runs each task on a
+    /// new virtual thread.
+    ///
+    /// Note that loads are always performed on virtual threads, see [#load(ImRequest)], so that a bounded executor is
+    /// never saturated by requests waiting for a load.
+    public ImCache setExecutor(Executor executor) {
+        this.executor = executor != null ? executor : AsyncUtils::runAsync;
+        return this;
+    }
+
+    /// Sets the [RequestScheduler] used by [ImRequest#schedule()]. `null` restores a default scheduler, see
+    /// [RequestScheduler#DEFAULT_PARALLELISM]. Requests already queued in the previous scheduler are not affected.
+    public ImCache setScheduler(RequestScheduler scheduler) {
+        this.scheduler = scheduler != null ? scheduler : new RequestScheduler();
+        return this;
+    }
+
+    /// Sets the [CpuPool] on which requests decode, transform and encode images, see [ImRequest#transform(ImImage)].
+    /// By default, this is the pool shared by all instances, see [CpuPool#common()]. `null` runs them on the requests'
+    /// threads instead.
+    public ImCache setCpuPool(CpuPool cpuPool) {
+        this.cpuPool = cpuPool;
+        return this;
+    }
+
+    /// Sets the [HttpResolver] used to fetch http(s) resources, see [ImRequest#fetch()]. By default, this is the resolver
+    /// shared by all instances, see [HttpResolver#common()]. `null` makes requests fetch all resources with a
+    /// [java.net.URLConnection] instead.
+    public ImCache setHttpResolver(HttpResolver httpResolver) {
+        this.httpResolver = httpResolver != null ? () -> httpResolver : null;
+        return this;
+    }
+
     /// Sets the [StoreStrategy] to be used when saving the result of a request.
     ///
     /// @see #store(ImRequest, ImImage, ImImage)
@@ -163,6 +417,21 @@ public class ImCache {
         return cache;
     }
 
+    /// @return the [BitmapCache] used by this [ImCache] to store decoded images, `null` if not set
+    public BitmapCache bitmaps() {
+        return bitmaps;
+    }
+
+    /// @return the [NegativeCache] used by this [ImCache] to remember failed loads, `null` if not set
+    public NegativeCache negatives() {
+        return negatives;
+    }
+
+    /// @return the [HostLimiter] used by this [ImCache] to limit concurrent loads from the same host, `null` if not set
+    public HostLimiter hostLimiter() {
+        return hostLimiter;
+    }
+
     /// @return the [StoreStrategy] used by this [ImCache] to determine which image to save when a request completes
     /// successfully
     /// @see #store(ImRequest, ImImage, ImImage)
@@ -170,11 +439,148 @@ public class ImCache {
         return storeStrategy;
     }
 
+    /// @return the age after which cached images are refreshed, [Duration#ZERO] if disabled
+    /// @see #setRefreshAfterWrite(Duration)
+    public Duration getRefreshAfterWrite() {
+        return refreshAfterWrite;
+    }
+
+    /// @return how eagerly images are refreshed before the refresh age
+    /// @see #setRefreshBeta(double)
+    public double getRefreshBeta() {
+        return refreshBeta;
+    }
+
+    /// @return the [Executor] on which requests are executed asynchronously
+    /// @see #setExecutor(Executor)
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /// @return the [CpuPool] on which requests decode, transform and encode images, `null` if they run on the requests'
+    /// threads
+    /// @see #setCpuPool(CpuPool)
+    public CpuPool getCpuPool() {
+        return cpuPool;
+    }
+
+    /// @return the [HttpResolver] used to fetch http(s) resources, `null` if they are fetched with a [java.net.URLConnection]
+    /// @see #setHttpResolver(HttpResolver)
+    public HttpResolver getHttpResolver() {
+        Supplier<HttpResolver> httpResolver = this.httpResolver;
+        return httpResolver != null ? httpResolver.get() : null;
+    }
+
+    /// @return the [RequestScheduler] used by [ImRequest#schedule()]
+    /// @see #setScheduler(RequestScheduler)
+    public RequestScheduler getScheduler() {
+        return scheduler;
+    }
+
     //================================================================================
     // Inner Classes
     //================================================================================
+
+    /// The result of [#load(ImRequest)].
+    ///
+    /// @param owner whether the caller is the first to receive the image among the ones that waited for the same load,
+    /// and thus the one responsible for storing it
+    /// @param revalidated whether the cached original was revalidated rather than loaded again, see [ImRequest#load()]
+    /// @param flight the load, `null` if the caller is not the owner
+    record Loaded(ImImage image, boolean owner, boolean revalidated, Flight flight) {
+
+        /// Must be called by the owner once the image was stored (or if it couldn't be), ends the load so that the
+        /// following requests for the same resource look up the cache again. No-op for the other callers.
+        void stored() {
+            if (flight != null) flight.unregister();
+        }
+    }
+
+    /// A load shared by concurrent requests for the same resource, see [#load(ImRequest)]. Waiters are ref-counted.
+    ///
+    /// Failed loads are unregistered before completing, so that later requests never join them. Successful ones are
+    /// unregistered by their owner ([Loaded#stored()]), or when the last waiter leaves if none of them received the
+    /// image.
+    class Flight {
+        private final String id;
+        private final CompletableFuture<ImImage> result = new CompletableFuture<>();
+        private volatile boolean revalidated = false;
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
+        private Future<?> task;
+        private int waiters = 0;
+        private boolean aborted = false;
+
+        Flight(String id) {
+            this.id = id;
+        }
+
+        /// @return false if the flight was already aborted
+        synchronized boolean join() {
+            if (aborted) return false;
+            waiters++;
+            return true;
+        }
+
+        /// Decrements the waiters, aborting the load if none is left and it's not done yet.
+        synchronized void leave() {
+            if (--waiters > 0) return;
+            if (result.isDone()) {
+                if (!claimed.get()) unregister();
+                return;
+            }
+            aborted = true;
+            flights.remove(id, this);
+            if (task != null) task.cancel(true);
+            result.cancel(false);
+        }
+
+        synchronized void start(ImRequest request) {
+            if (aborted) return;
+            task = AsyncUtils.runAsync(() -> {
+                try {
+                    ImImage img = request.load();
+                    revalidated = request.isRevalidated();
+                    result.complete(img);
+                } catch (Throwable ex) {
+                    flights.remove(id, this);
+                    result.completeExceptionally(ex);
+                }
+            });
+        }
+
+        Loaded await() {
+            try {
+                ImImage img = result.get();
+                boolean owner = claimed.compareAndSet(false, true);
+                return new Loaded(img, owner, revalidated, owner ? this : null);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new ImCacheException("Interrupted while loading resource " + id, ex);
+            } catch (CancellationException ex) {
+                throw new ImCacheException("The load of resource %s was aborted".formatted(id), ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException rex) throw rex;
+                throw new ImCacheException("Failed to load resource " + id, ex.getCause());
+            } finally {
+                leave();
+            }
+        }
+
+        void unregister() {
+            flights.remove(id, this);
+        }
+    }
+
     public enum StoreStrategy {
+
+        /// Only the original image is cached, transforms are applied again on every hit.
         SAVE_ORIGINAL,
+
+        /// Only the transformed image is cached, as a variant of the original.
         SAVE_TRANSFORMED,
+
+        /// Both the original and the transformed image are cached. The original is shared by all the variants, so that
+        /// requests for new variants don't need to load the resource again.
+        SAVE_ALL,
     }
 }
\ No newline at end of file
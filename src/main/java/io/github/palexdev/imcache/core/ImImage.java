@@ -18,53 +18,108 @@
 
 package io.github.palexdev.imcache.core;
 
+import io.github.palexdev.imcache.cache.BitmapCache;
+import io.github.palexdev.imcache.cache.Key;
 import io.github.palexdev.imcache.utils.ImageUtils;
+import io.github.palexdev.imcache.utils.Validators;
 
 import java.awt.image.BufferedImage;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.util.Objects;
 import java.util.function.Function;
 
 /// Wrapper type to represent a loaded image by its source [URL] and its raw byte data.
 ///
 /// A series of convenience methods allow to convert the data to more useful formats.
+///
+/// Subclasses may store the data elsewhere (e.g. off-heap), in which case they should override [#rawData()],
+/// [#buffer()] and [#size()], which are the only accessors used by the other methods.
+///
+/// Images produced by an [ImRequest] are linked to the [BitmapCache] of their [ImCache] (if any), so that
+/// [#asImage()] and [#sharedImage()] can reuse previously decoded bitmaps.
+///
+/// Images fetched over HTTP also carry the resource's [Validators], which are stored along with them and used to
+/// revalidate them later, see [ImRequest#load()].
 public class ImImage {
     //================================================================================
     // Properties
     //================================================================================
     private final URL url;
     private final byte[] data;
+    private final Validators validators;
+    private volatile Key contentKey;
+    private volatile BitmapCache bitmaps;
 
     //================================================================================
     // Constructors
     //================================================================================
     public ImImage(URL url, byte[] data) {
+        this(url, data, null);
+    }
+
+    public ImImage(URL url, byte[] data, Validators validators) {
         this.url = url;
         this.data = data;
+        this.validators = validators;
     }
 
     public static ImImage wrap(URL url, byte[] data) {
         return new ImImage(url, data);
     }
 
+    public static ImImage wrap(URL url, byte[] data, Validators validators) {
+        return new ImImage(url, data, validators);
+    }
+
     //================================================================================
     // Methods
     //================================================================================
 
     /// Converts the raw image data in this wrapper to a [BufferedImage] using [ImageUtils#toImage(Object)].
+    ///
+    /// The returned bitmap is always a new one, owned by the caller. If the image is linked to a [BitmapCache], this
+    /// delegates to [#asImage(BitmapCache)] to avoid decoding the same data again.
     public BufferedImage asImage() {
-        return ImageUtils.toImage(data);
+        return asImage(bitmaps);
+    }
+
+    /// Converts the raw image data in this wrapper to a new [BufferedImage], owned by the caller. If the given
+    /// [BitmapCache] is not `null`, the bitmap is copied from the shared one (see [#sharedImage(BitmapCache)]), which is
+    /// much cheaper than decoding it. Otherwise, the image is decoded with [ImageUtils#toImage(Object)].
+    public BufferedImage asImage(BitmapCache bitmaps) {
+        return bitmaps != null ? ImageUtils.copy(bitmaps.decode(this)) : ImageUtils.toImage(buffer());
+    }
+
+    /// Delegates to [#sharedImage(BitmapCache)] with the [BitmapCache] this image is linked to.
+    public BufferedImage sharedImage() {
+        return sharedImage(bitmaps);
+    }
+
+    /// Converts the raw image data in this wrapper to a [BufferedImage] by using the given [BitmapCache], see
+    /// [BitmapCache#decode(ImImage)]. If the cache is `null`, the image is decoded with [ImageUtils#toImage(Object)].
+    ///
+    /// Unlike [#asImage(BitmapCache)], bitmaps returned by the cache are not copied. They are shared with every other
+    /// user of the cache and **must not** be modified.
+    public BufferedImage sharedImage(BitmapCache bitmaps) {
+        return bitmaps != null ? bitmaps.decode(this) : ImageUtils.toImage(buffer());
     }
 
     /// Converts the raw image data in this wrapper to a [InputStream] using [ImageUtils#toStream(String, Object)].
     public InputStream asStream() {
-        return ImageUtils.toStream(null, data);
+        return ImageUtils.toStream(null, rawData());
+    }
+
+    /// Links this image to the given [BitmapCache], used by [#asImage()] and [#sharedImage()].
+    ImImage link(BitmapCache bitmaps) {
+        if (bitmaps != null) this.bitmaps = bitmaps;
+        return this;
     }
 
     /// Converts the raw image data in this wrapper to the desired `T` type using the given function.
     public <T> T as(Function<byte[], T> converter) {
-        return converter.apply(data);
+        return converter.apply(rawData());
     }
 
     //================================================================================
@@ -76,11 +131,37 @@ public class ImImage {
         return url;
     }
 
+    /// @return the HTTP validators of the image's resource, `null` if unknown
+    public Validators validators() {
+        return validators;
+    }
+
     /// @return the loaded image's raw data
     public byte[] rawData() {
         return data;
     }
 
+    /// @return a read-only view of the image's raw data. Unlike [#rawData()], this never requires a copy
+    public ByteBuffer buffer() {
+        return ByteBuffer.wrap(data).asReadOnlyBuffer();
+    }
+
+    /// @return the length of the image's raw data in bytes
+    public int size() {
+        return data.length;
+    }
+
+    /// @return a 128-bit hash of the image's raw data ([Key#of(ByteBuffer)]), computed lazily and then cached. Used by
+    /// [BitmapCache] to identify the decoded bitmaps, see [BitmapCache#key(ImImage)]
+    public Key contentKey() {
+        Key k = contentKey;
+        if (k == null) {
+            k = Key.of(buffer());
+            contentKey = k;
+        }
+        return k;
+    }
+
     //================================================================================
     // Overridden Methods
     //================================================================================
@@ -21,18 +21,33 @@ package io.github.palexdev.imcache.core;
 import java.awt.image.BufferedImage;
 import java.net.URL;
 import java.net.URLConnection;
+import java.net.http.HttpRequest;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.Future;
+import java.util.StringJoiner;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import javax.imageio.ImageIO;
 
+import io.github.palexdev.imcache.cache.BitmapCache;
+import io.github.palexdev.imcache.cache.CacheStats.Stage;
+import io.github.palexdev.imcache.cache.ImgCache;
+import io.github.palexdev.imcache.cache.Key;
+import io.github.palexdev.imcache.cache.NegativeCache;
+import io.github.palexdev.imcache.cache.StatsCounter;
 import io.github.palexdev.imcache.cache.WithID;
+import io.github.palexdev.imcache.core.ImCache.StoreStrategy;
 import io.github.palexdev.imcache.exceptions.ImCacheException;
+import io.github.palexdev.imcache.transforms.AddText;
 import io.github.palexdev.imcache.transforms.Transform;
 import io.github.palexdev.imcache.utils.*;
 
@@ -40,10 +55,12 @@ import io.github.palexdev.imcache.utils.*;
 ///
 /// The request is stateful. Both the state and the result can be retrieved by using [#result()] and observed by giving
 /// a callback to the execution, see [#execute(Consumer<Result>)] and [#executeAsync(Consumer<Result>)].
+/// Alternatively, [#submit(Executor)] returns a [CompletableFuture] of the [Result], which is easier to compose.
 ///
 /// A resource can either be fetched from its source [URL] or retrieved from the cache if present. This class implements
 /// [WithID], and the id is generated from the [URL] (see [WithID#generateId(URL)]).
-/// Requests that load a certain resource from the same [URL] point to the same resource in the cache.
+/// Requests that load a certain resource from the same [URL] point to the same resource in the cache. Requests with
+/// transforms that can be identified produce a variant of the resource, which has its own id, see [#isVariant()].
 ///
 /// The request is also responsible for applying any desired [Transform] to the loaded image. They are added one after
 /// the other by [#transform(Transform)] and applied on the image at the end of the loading process and before asking
@@ -59,8 +76,10 @@ import io.github.palexdev.imcache.utils.*;
 /// _Other features and configs_
 ///
 /// - The request can be executed on the same thread as the callee or asynchronously via [#executeAsync(Consumer<Result>)].
-/// - To load the resource a [URLConnection] is created on its [URL] by the [URLHandler]. The connection can be configured
-/// via [#urlConfig(ThrowingConsumer)].
+/// - http(s) resources are fetched by the [ImCache]'s [HttpResolver] (see [ImCache#setHttpResolver(HttpResolver)]), and
+/// the HTTP request can be configured via [#httpConfig(Consumer)].
+/// - Other resources are loaded by creating a [URLConnection] on their [URL] with the [URLHandler]. The connection can
+/// be configured via [#urlConfig(ThrowingConsumer)], in which case http(s) resources are loaded this way too.
 /// - By default, if a resource is present in the cache, it will be fetched from there and complete the execution with the
 /// [RequestState#CACHE_HIT] state. You can force the request to always fetch the resource from its [URL] without necessarily
 /// removing it from the cache by setting [#overwrite(boolean)] to `true`.
@@ -72,11 +91,21 @@ public class ImRequest implements WithID {
     //================================================================================
     private final ImCache cache;
     private String id;
+    private Key key;
+    private String baseId;
+    private Key baseKey;
     private final URL url;
     private boolean overwrite = false;
     private final List<Transform> transforms = new ArrayList<>();
-    private ThrowingConsumer<URLConnection> urlConfig = c -> {};
+    private ThrowingConsumer<URLConnection> urlConfig;
+    private Consumer<HttpRequest.Builder> httpConfig;
     private Function<BufferedImage, byte[]> imageConverter = i -> ImageUtils.toBytes("png", i);
+    private String converterId = "png";
+    private volatile Priority priority = Priority.NORMAL;
+    private volatile boolean cancelled = false;
+    private volatile boolean revalidated = false;
+    volatile RequestScheduler scheduler;
+    boolean background = false;
 
     private Result result = new Result(this);
 
@@ -97,6 +126,12 @@ public class ImRequest implements WithID {
     /// Core method responsible for fetching an image either from its source [URL] or from the cache if present
     /// (unless [#overwrite(boolean)] was set to `true`).
     ///
+    /// If the request is a variant (see [#isVariant()]) and the [StoreStrategy] caches transformed images, the variant
+    /// is looked up first, in which case there's nothing to load nor transform, and the source is not available in the
+    /// [Result]. Otherwise, the original is looked up by [#baseKey()], so that it's shared by all the variants.
+    /// The lookups are made with [ImgCache#probeImage(Key)], and a single hit or miss is recorded in the [ImCache]'s
+    /// statistics for the whole request (none if the request overwrites the cache, since it doesn't look it up).
+    ///
     /// Once the image is loaded, it is transformed by the [#transform(ImImage)] method, and finally, both the original and
     /// the output are sent to [ImCache#store(ImRequest, ImImage, ImImage)] for caching.
     ///
@@ -104,26 +139,64 @@ public class ImRequest implements WithID {
     /// various states.
     public ImRequest execute(Consumer<Result> callback) {
         result = new Result(this); // Reset result
+        // Transforms may have changed since the last execution, the variant is identified again
+        id = null;
+        key = null;
         ImImage src = null;
         ImImage out = null;
+        ImCache.Loaded loaded = null;
         AtomicBoolean cacheHit = new AtomicBoolean(false);
         try {
             if (url == null) {
                 throw new ImCacheException("Could not execute request %s because url is null".formatted(this));
             }
+            checkpoint();
             // Update and notify request started
             result = result.withState(RequestState.STARTED);
             if (callback != null) callback.accept(result);
 
-            if (isOverwrite()) {
-                src = ImImage.wrap(url, URLHandler.resolve(this));
-            } else {
-                src = OptionalWrapper.wrap(cache.storage().getImage(this))
-                    .ifPresent(i -> cacheHit.set(true))
-                    .orElseGet(() -> ImImage.wrap(url, URLHandler.resolve(this)));
+            ImgCache<?> storage = cache.storage();
+            Key hitKey = null;
+            if (!isOverwrite()) {
+                if (isVariant() && cache.getSaveStrategy() != StoreStrategy.SAVE_ORIGINAL) {
+                    out = storage.probeImage(key()).orElse(null);
+                    if (out != null) hitKey = key();
+                }
+                if (out == null) {
+                    src = storage.probeImage(baseKey()).orElse(null);
+                    if (src != null) hitKey = baseKey();
+                }
+                StatsCounter stats = cache.statsCounter();
+                if (hitKey != null) {
+                    stats.recordHit();
+                } else {
+                    stats.recordMiss();
+                }
+            }
+            boolean shared = false;
+            if (out == null) {
+                if (src == null) {
+                    checkpoint();
+                    loaded = cache.load(this);
+                    src = loaded.image();
+                    shared = !loaded.owner();
+                    // A revalidated original is a cheap hit, it's still cached and its age was reset
+                    if (loaded.revalidated()) hitKey = baseKey();
+                }
+                src.link(cache.bitmaps());
+                out = transform(src);
+            }
+            out.link(cache.bitmaps());
+            // Images found in the cache are not stored again, so that their age is preserved. The same goes for
+            // originals loaded by a concurrent request, which are stored by the request that received them first
+            boolean transformed = src != null && out != src;
+            checkpoint();
+            cache.store(this, hitKey == null && !shared ? src : null, hitKey == null || transformed ? out : null);
+            if (hitKey != null) {
+                cacheHit.set(true);
+                Validators validators = (src != null ? src : out).validators();
+                storage.getAge(hitKey).filter(a -> cache.shouldRefresh(a, validators)).ifPresent(a -> cache.refresh(this));
             }
-            out = transform(src);
-            cache.store(this, src, out);
 
             result = new Result(
                 this,
@@ -134,13 +207,28 @@ public class ImRequest implements WithID {
                 null
             );
         } catch (Exception ex) {
-            result = new Result(this, RequestState.FAILED, src, out, ex);
+            result = new Result(this, isCancelled() ? RequestState.CANCELLED : RequestState.FAILED, src, out, ex);
         } finally {
+            // The load ends only once the original was stored, see ImCache#load(ImRequest)
+            if (loaded != null) loaded.stored();
             if (callback != null) callback.accept(result);
         }
         return this;
     }
 
+    /// @return a new request for the same resource, with the same transforms and settings, in the [RequestState#READY] state
+    public ImRequest copy() {
+        ImRequest copy = new ImRequest(cache, url);
+        copy.overwrite = overwrite;
+        copy.transforms.addAll(transforms);
+        copy.urlConfig = urlConfig;
+        copy.httpConfig = httpConfig;
+        copy.imageConverter = imageConverter;
+        copy.converterId = converterId;
+        copy.priority = priority;
+        return copy;
+    }
+
     /// Convenience method for executing the request without a callback.
     ///
     /// @see #execute(Consumer)
@@ -148,18 +236,144 @@ public class ImRequest implements WithID {
         return execute(null);
     }
 
-    /// Executes the request asynchronously by using [AsyncUtils].
+    /// Executes the request asynchronously on the [ImCache]'s executor, see [ImCache#setExecutor(Executor)].
+    ///
+    /// Cancelling the returned future interrupts the request, see [#submit(Executor)].
     ///
     /// @see #execute(Consumer)
-    public Future<ImRequest> executeAsync(Consumer<Result> callback) {
-        return AsyncUtils.runAsync(() -> execute(callback));
+    public CompletableFuture<ImRequest> executeAsync(Consumer<Result> callback) {
+        return AsyncUtils.supplyAsync(() -> execute(callback), cache.getExecutor());
+    }
+
+    /// Delegates to [#submit(Executor)] with the [ImCache]'s executor, see [ImCache#setExecutor(Executor)].
+    public CompletableFuture<Result> submit() {
+        return submit(cache.getExecutor());
+    }
+
+    /// Executes the request asynchronously on the given executor, returning a future that completes with the request's
+    /// [Result]. Note that the future completes normally even if the request fails, the [Result] carries the error.
+    ///
+    /// Cancelling the future (or completing it exceptionally, e.g. with [CompletableFuture#orTimeout(long, TimeUnit)])
+    /// interrupts the request: the download is aborted if the thread is blocked on it (e.g. virtual threads blocked on a
+    /// socket), and the request stops at the next stage boundary, before decoding and before each transform.
+    ///
+    /// @see AsyncUtils#supplyAsync(Supplier, Executor)
+    public CompletableFuture<Result> submit(Executor executor) {
+        Objects.requireNonNull(executor, "Executor cannot be null");
+        return AsyncUtils.supplyAsync(() -> execute().result(), executor);
+    }
+
+    /// Fetches the resource from its [URL] with [#fetch(Validators)], recording the load and its time in the [ImCache]'s
+    /// statistics.
+    ///
+    /// Note that concurrent requests for the same resource are coalesced by [ImCache], so that this is called only by
+    /// one of them, see [ImCache#load(ImRequest)].
+    ///
+    /// If the [ImCache] has a [NegativeCache], failures are remembered by [#baseId()], and as long as a failure is
+    /// remembered, this fails fast by rethrowing it without fetching the resource. Failures of background refreshes
+    /// are not remembered, since the stale images are still cached, see [ImCache#setRefreshAfterWrite(java.time.Duration)].
+    ///
+    /// If the [ImCache] has a [HostLimiter], the resource is fetched only once its host has a free slot, and the outcome
+    /// is reported to the limiter.
+    ///
+    /// Loads that are interrupted (e.g. because all the requests waiting for them gave up) or cancelled are neither
+    /// recorded as failures in the statistics nor remembered by the [NegativeCache].
+    ///
+    /// If the request overwrites the cache (see [#overwrite(boolean)], which is also how images are refreshed) and the
+    /// original is cached with [Validators], the request is conditional. If the server answers `304 Not Modified`, the
+    /// cached original is returned after resetting its age with [ImgCache#touch(String)], see [#isRevalidated()]. If the
+    /// response updates the validators (see [Validators#merge(Validators)]), the original is stored again with the new
+    /// ones instead. If the original was removed from the cache in the meantime, it's not revalidated: its data is
+    /// returned as a fresh load, so that it's stored again.
+    protected ImImage load() {
+        revalidated = false;
+        NegativeCache negatives = cache.negatives();
+        if (negatives != null) {
+            Optional<Throwable> failure = negatives.get(baseId());
+            if (failure.isPresent()) {
+                Throwable error = failure.get();
+                if (error instanceof RuntimeException rex) throw rex;
+                throw new ImCacheException("Resource %s failed to load recently".formatted(url), error);
+            }
+        }
+
+        ImImage stale = isOverwrite() ? stale() : null;
+        Validators validators = stale != null ? stale.validators() : null;
+        StatsCounter stats = cache.statsCounter();
+        HostLimiter limiter = cache.hostLimiter();
+        long start = System.nanoTime();
+        try (HostLimiter.Permit permit = limiter != null ? limiter.acquire(url) : null) {
+            Fetched fetched;
+            try {
+                fetched = fetch(validators);
+            } catch (RuntimeException ex) {
+                if (permit != null) permit.failed(ex);
+                throw ex;
+            }
+            if (permit != null) permit.succeeded();
+            ImImage img;
+            if (fetched.isNotModified()) {
+                Validators merged = validators.merge(fetched.validators());
+                if (merged.equals(validators)) {
+                    revalidated = cache.storage().touch(baseId());
+                    img = revalidated ? stale : ImImage.wrap(url, stale.rawData(), merged);
+                } else {
+                    img = ImImage.wrap(url, stale.rawData(), merged);
+                    cache.storage().store(baseId(), img);
+                    revalidated = true;
+                }
+            } else {
+                img = ImImage.wrap(url, fetched.data(), fetched.validators());
+            }
+            stats.recordLoadTime(Stage.RESOLVE, System.nanoTime() - start);
+            stats.recordLoadSuccess();
+            if (negatives != null) negatives.remove(baseId());
+            return img;
+        } catch (RuntimeException ex) {
+            // Loads abandoned by their callers (see ImCache#load(ImRequest)) or cancelled didn't fail
+            if (Thread.currentThread().isInterrupted() || NegativeCache.isAbandoned(ex)) throw ex;
+            if (negatives != null && !background) negatives.record(baseId(), ex);
+            stats.recordLoadFailure();
+            throw ex;
+        }
+    }
+
+    /// @return the cached original, if it can be revalidated, `null` otherwise or if it can't be read
+    private ImImage stale() {
+        try {
+            return cache.storage().probeImage(baseKey())
+                .filter(img -> img.validators() != null && img.validators().canRevalidate())
+                .orElse(null);
+        } catch (RuntimeException ex) {
+            return null;
+        }
+    }
+
+    /// Fetches the resource's content: http(s) resources are fetched with
+    /// [HttpResolver#fetch(URL, Validators, Consumer)] if the [ImCache] has an [HttpResolver] and no
+    /// [#urlConfig(ThrowingConsumer)] was set, everything else with [URLHandler#fetch(URL, ThrowingConsumer, Validators)].
+    ///
+    /// @param validators if not `null`, the request is conditional, see [Fetched#isNotModified()]
+    protected Fetched fetch(Validators validators) {
+        HttpResolver http = cache.getHttpResolver();
+        if (http != null && urlConfig == null && HttpResolver.supports(url)) {
+            return http.fetch(url, validators, httpConfig);
+        }
+        return URLHandler.fetch(url, urlConfig, validators);
     }
 
     /// If any [Transforms][Transform] were added before the execution, they are applied on the given source image,
     /// otherwise returns the source image unchanged.
     ///
     /// Unfortunately, to make the system easier, to apply transformations, we first convert the source image raw data
-    /// to a [BufferedImage] and at the end back to a byte array.
+    /// to a [BufferedImage] and at the end back to a byte array. If the [ImCache] has a [BitmapCache], the first
+    /// conversion reuses the bitmap previously decoded from the same data, see [ImImage#sharedImage(BitmapCache)]. Such
+    /// bitmap is copied before the first transform that may modify it, see [Transform#mutatesInput()].
+    ///
+    /// The time spent in each of the three steps is recorded in the [ImCache]'s statistics, see [Stage].
+    ///
+    /// The three steps are CPU-bound, so they run on the [ImCache]'s [CpuPool] (see [ImCache#setCpuPool(CpuPool)]),
+    /// while the calling thread waits.
     ///
     /// @see ImageUtils#toImage(Object)
     /// @see #setImageConverter(Function)
@@ -168,18 +382,129 @@ public class ImRequest implements WithID {
             throw new ImCacheException("Could not transform image because source image is null");
         }
         if (transforms.isEmpty()) return src;
-        BufferedImage img = src.asImage();
+        checkpoint();
+        CpuPool pool = cache.getCpuPool();
+        return pool != null ? pool.call(() -> process(src)) : process(src);
+    }
+
+    /// Decodes the given image, applies the transforms and encodes the result, see [#transform(ImImage)].
+    private ImImage process(ImImage src) {
+        checkpoint();
+        StatsCounter stats = cache.statsCounter();
+        long start = System.nanoTime();
+        BitmapCache bitmaps = cache.bitmaps();
+        BufferedImage img = src.sharedImage(bitmaps);
+        long decoded = System.nanoTime();
+        stats.recordLoadTime(Stage.DECODE, decoded - start);
+        // The shared bitmap (or a view of it) is copied before the first transform that may draw on its input
+        boolean shared = bitmaps != null;
         for (Transform transform : transforms) {
+            checkpoint();
+            if (shared && transform.mutatesInput()) {
+                img = ImageUtils.copy(img);
+                shared = false;
+            }
             img = transform.transform(img);
         }
-        return ImImage.wrap(src.url(), imageConverter.apply(img));
+        long transformed = System.nanoTime();
+        stats.recordLoadTime(Stage.TRANSFORM, transformed - decoded);
+        checkpoint();
+        ImImage out = ImImage.wrap(src.url(), imageConverter.apply(img), src.validators());
+        stats.recordLoadTime(Stage.ENCODE, System.nanoTime() - transformed);
+        return out;
+    }
+
+    /// Stage boundary for cancellation, checked before resolving, decoding, each transform, encoding and storing.
+    /// The request is aborted here if it was cancelled by [#cancel()], or if the current thread was interrupted (e.g.
+    /// because the future returned by [#submit(Executor)] was cancelled), since decoding and transforming don't
+    /// respond to interruption.
+    ///
+    /// @throws CancellationException if the request was cancelled
+    /// @throws ImCacheException if the current thread was interrupted, the interrupted status is preserved
+    private void checkpoint() {
+        if (cancelled) {
+            throw new CancellationException("Request %s was cancelled".formatted(this));
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            throw new ImCacheException("Request %s was interrupted".formatted(this));
+        }
+    }
+
+    /// Cancels the request. If it's queued in a [RequestScheduler], it's removed from the queue and completes
+    /// immediately, otherwise, if it's running, it stops at the next stage boundary: before resolving, decoding, each
+    /// transform, encoding or storing. In both cases, the final state is [RequestState#CANCELLED]. A request that
+    /// already completed is not affected, and cancellation can't be undone.
+    ///
+    /// Note that a resource that is already being downloaded is still loaded, but only for the other requests waiting
+    /// for it, see [ImCache#load(ImRequest)].
+    public void cancel() {
+        cancelled = true;
+        RequestScheduler scheduler = this.scheduler;
+        if (scheduler != null) scheduler.cancel(this);
+    }
+
+    /// Delegates to [RequestScheduler#submit(ImRequest)] with the [ImCache]'s scheduler, see
+    /// [ImCache#setScheduler(RequestScheduler)].
+    public CompletableFuture<Result> schedule() {
+        return cache.getScheduler().submit(this);
+    }
+
+    /// Sets the result of a request that was cancelled before starting.
+    Result abort() {
+        result = new Result(this, RequestState.CANCELLED, null, null,
+            new CancellationException("Request %s was cancelled".formatted(this)));
+        return result;
     }
 
     // Setup
 
-    /// Adds the given [Transform] to the request.
+    /// Adds the given [Transform] to the request. Note that this changes the request's [#id()].
     public ImRequest transform(Transform transform) {
         transforms.add(transform);
+        id = null;
+        key = null;
+        return this;
+    }
+
+    /// @return the id of the original resource, generated from its [URL] (see [WithID#generateId(URL)]). This is shared
+    /// by all the requests for the same resource, no matter the transforms
+    public String baseId() {
+        if (baseId == null) baseId = WithID.generateId(url);
+        return baseId;
+    }
+
+    /// @return the compact representation of [#baseId()], computed once
+    public Key baseKey() {
+        if (baseKey == null) baseKey = Key.of(baseId());
+        return baseKey;
+    }
+
+    /// @return the fingerprint of the transform chain, which is the fingerprints of the transforms in order (see
+    /// [Transform#fingerprint()]) separated by `|`. An empty string if there are no transforms, `null` if any of them
+    /// cannot be identified
+    public String fingerprint() {
+        StringJoiner joiner = new StringJoiner("|");
+        for (Transform transform : transforms) {
+            String fingerprint = transform.fingerprint();
+            if (fingerprint == null) return null;
+            joiner.add(fingerprint);
+        }
+        return joiner.toString();
+    }
+
+    /// @return whether the image produced by this request is a variant of the original that can be cached separately,
+    /// which is the case if there are transforms, all of them can be identified (see [#fingerprint()]) and so can the
+    /// image converter (see [#setImageConverter(String, Function)])
+    public boolean isVariant() {
+        return id() != baseId();
+    }
+
+    /// Sets the request's [Priority], [Priority#NORMAL] by default. If the request is queued in a [RequestScheduler], it's
+    /// moved accordingly.
+    public ImRequest priority(Priority priority) {
+        this.priority = Objects.requireNonNull(priority, "Priority cannot be null");
+        RequestScheduler scheduler = this.scheduler;
+        if (scheduler != null) scheduler.reprioritize(this);
         return this;
     }
 
@@ -190,16 +515,41 @@ public class ImRequest implements WithID {
     }
 
     /// A consumer that allows you to configure the [URLConnection] used to fetch the resource from its [URL].
+    ///
+    /// Setting this makes http(s) resources load with a [URLConnection] too, rather than with the [HttpResolver], so
+    /// that the configuration is honored.
     public ImRequest urlConfig(ThrowingConsumer<URLConnection> urlConfig) {
         this.urlConfig = urlConfig;
         return this;
     }
 
+    /// A consumer that allows you to configure the HTTP request used to fetch http(s) resources with the [ImCache]'s
+    /// [HttpResolver] (e.g. to add headers or change the timeout).
+    public ImRequest httpConfig(Consumer<HttpRequest.Builder> httpConfig) {
+        this.httpConfig = httpConfig;
+        return this;
+    }
+
     /// This function is used to convert a [BufferedImage] back to a byte array after applying all the transformations.
     ///
     /// By default, we use [ImageUtils#toBytes(String, Object)] with `png` as the format.
+    ///
+    /// Since the converter cannot be identified, the transformed images are not cached as variants, see
+    /// [#setImageConverter(String, Function)].
     public ImRequest setImageConverter(Function<BufferedImage, byte[]> imageConverter) {
+        return setImageConverter(null, imageConverter);
+    }
+
+    /// Sets the function used to convert a [BufferedImage] back to a byte array (see [#setImageConverter(Function)]),
+    /// along with a stable string that identifies its output (e.g. the format, `png` for the default converter).
+    ///
+    /// The id is part of the variant's key (see [#key()]), so that the same transforms with different converters
+    /// produce different variants. A `null` id means that the converter cannot be identified.
+    public ImRequest setImageConverter(String id, Function<BufferedImage, byte[]> imageConverter) {
         this.imageConverter = imageConverter;
+        this.converterId = id;
+        key = null;
+        this.id = null;
         return this;
     }
 
@@ -207,14 +557,26 @@ public class ImRequest implements WithID {
     // Overridden Methods
     //================================================================================
 
-    /// @return an id generated from the resource's [URL]
-    /// @see WithID#generateId(URL)
+    /// @return the id of the image produced by this request. If the request is a variant (see [#isVariant()]), the id is
+    /// generated from the resource's [URL], the [#fingerprint()] and the converter's id, otherwise it's the [#baseId()].
+    ///
+    /// The id is computed once per execution, since transforms may be changed between executions (e.g. [AddText]).
     @Override
     public String id() {
-        if (id == null) id = WithID.generateId(url);
+        if (id == null) {
+            String fingerprint = (transforms.isEmpty() || converterId == null) ? null : fingerprint();
+            id = (fingerprint != null) ? WithID.generateId(url + "\n" + fingerprint + "\n" + converterId) : baseId();
+        }
         return id;
     }
 
+    /// @return the compact representation of [#id()], computed once per execution, used to look up the cache
+    @Override
+    public Key key() {
+        if (key == null) key = isVariant() ? Key.of(id()) : baseKey();
+        return key;
+    }
+
     @Override
     public String toString() {
         return "ImRequest{" +
@@ -233,6 +595,21 @@ public class ImRequest implements WithID {
         return result;
     }
 
+    /// @return the request's [Priority]
+    public Priority priority() {
+        return priority;
+    }
+
+    /// @return whether the last [#load()] revalidated the cached original rather than downloading it again
+    public boolean isRevalidated() {
+        return revalidated;
+    }
+
+    /// @return whether the request was cancelled, see [#cancel()]
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
     /// Convenience method for accessing the request's state from its result.
     public RequestState state() {
         return result.state();
@@ -248,6 +625,11 @@ public class ImRequest implements WithID {
         return urlConfig;
     }
 
+    /// @see [#httpConfig(Consumer)]
+    public Consumer<HttpRequest.Builder> getHttpConfig() {
+        return httpConfig;
+    }
+
     /// @see [#overwrite(boolean)]
     public boolean isOverwrite() {
         return overwrite;
@@ -274,6 +656,17 @@ public class ImRequest implements WithID {
 
         /// The request has succeeded, but the resource was found in the cache. No connection to its [URL] was made.
         CACHE_HIT,
+
+        /// The request was cancelled by [ImRequest#cancel()], either before starting or at one of the stage boundaries.
+        /// Nothing is stored in the cache, the error in its result is a [CancellationException].
+        CANCELLED,
+    }
+
+    /// Defines the order in which requests are executed by a [RequestScheduler], higher priorities first.
+    public enum Priority {
+        LOW,
+        NORMAL,
+        HIGH,
     }
 
     /// Wrapper class to represent the result of a request. Being immutable, it changes as the execution advances.
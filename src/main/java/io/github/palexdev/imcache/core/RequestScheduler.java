@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2025 Parisi Alessandro - alessandro.parisi406@gmail.com
+ * This file is part of ImCache (https://github.com/palexdev/imcache)
+ *
+ * ImCache is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * ImCache is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ImCache. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.palexdev.imcache.core;
+
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.github.palexdev.imcache.core.ImRequest.Priority;
+import io.github.palexdev.imcache.core.ImRequest.RequestState;
+import io.github.palexdev.imcache.core.ImRequest.Result;
+import io.github.palexdev.imcache.utils.AsyncUtils;
+
+/// Executes [ImRequests][ImRequest] asynchronously, running at most [#getParallelism()] of them at the same time, and
+/// queueing the others by [Priority]. Requests with the same priority are executed in submission order.
+///
+/// This is meant for UIs that load many images but can only show a few of them at a time, e.g. a grid of thumbnails:
+/// - visible images should be submitted with a higher priority (or raised with [ImRequest#priority(Priority)] while
+/// queued), so that they are loaded first
+/// - images that go off-screen can be lowered, or cancelled with [ImRequest#cancel()], in which case they are removed
+/// from the queue, or stop at the next stage boundary if already running (see [RequestState#CANCELLED])
+///
+/// The scheduler doesn't own any thread, each request runs on a new virtual thread once it leaves the queue.
+///
+/// An instance is available on each [ImCache], see [ImCache#getScheduler()] and [ImRequest#schedule()].
+public class RequestScheduler {
+    //================================================================================
+    // Static Properties
+    //================================================================================
+
+    /// Default maximum number of requests running at the same time: 8
+    public static final int DEFAULT_PARALLELISM = 8;
+
+    //================================================================================
+    // Properties
+    //================================================================================
+    private final ReentrantLock lock = new ReentrantLock();
+    private final PriorityQueue<Task> queue = new PriorityQueue<>(
+        Comparator.comparing((Task t) -> t.priority).reversed().thenComparingLong(t -> t.seq)
+    );
+    private final Map<ImRequest, Task> queued = new IdentityHashMap<>();
+    private volatile int parallelism;
+    private int running = 0;
+    private long seq = 0;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    public RequestScheduler() {
+        this(DEFAULT_PARALLELISM);
+    }
+
+    public RequestScheduler(int parallelism) {
+        this.parallelism = checkParallelism(parallelism);
+    }
+
+    //================================================================================
+    // Methods
+    //================================================================================
+
+    /// Queues the given request with its current [Priority], see [ImRequest#priority()].
+    ///
+    /// @return a future that completes with the request's [Result] once it's executed or cancelled. Note that the future
+    /// completes normally even if the request fails, the [Result] carries the error. Cancelling the future cancels the
+    /// request, see [ImRequest#cancel()]
+    /// @throws IllegalStateException if the request is already queued
+    public CompletableFuture<Result> submit(ImRequest request) {
+        Task task = new Task(request);
+        lock.lock();
+        try {
+            if (queued.containsKey(request)) {
+                throw new IllegalStateException("Request %s is already queued".formatted(request));
+            }
+            task.priority = request.priority();
+            task.seq = seq++;
+            request.scheduler = this;
+            queued.put(request, task);
+            queue.add(task);
+        } finally {
+            lock.unlock();
+        }
+        task.future.whenComplete((r, ex) -> {
+            if (task.future.isCancelled()) request.cancel();
+        });
+        if (request.isCancelled()) cancel(request);
+        dispatch();
+        return task.future;
+    }
+
+    /// Moves the given request in the queue according to its current [Priority]. Requests that are not queued are ignored.
+    void reprioritize(ImRequest request) {
+        lock.lock();
+        try {
+            Task task = queued.get(request);
+            if (task == null || task.priority == request.priority()) return;
+            queue.remove(task);
+            task.priority = request.priority();
+            queue.add(task);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// Removes the given request from the queue and completes it as [RequestState#CANCELLED], see [ImRequest#abort()].
+    /// Requests that are not queued are ignored.
+    void cancel(ImRequest request) {
+        Task task;
+        lock.lock();
+        try {
+            task = queued.remove(request);
+            if (task == null) return;
+            queue.remove(task);
+        } finally {
+            lock.unlock();
+        }
+        task.future.complete(request.abort());
+    }
+
+    /// Starts queued requests, by priority, as long as fewer than [#getParallelism()] are running.
+    private void dispatch() {
+        while (true) {
+            Task task;
+            lock.lock();
+            try {
+                if (running >= parallelism || queue.isEmpty()) return;
+                task = queue.poll();
+                queued.remove(task.request);
+                running++;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                AsyncUtils.runAsync(() -> run(task));
+            } catch (RuntimeException ex) {
+                lock.lock();
+                try {
+                    running--;
+                } finally {
+                    lock.unlock();
+                }
+                task.future.completeExceptionally(ex);
+            }
+        }
+    }
+
+    /// Executes the given task, releasing its slot before completing its future, so that [#running()] is up-to-date
+    /// for the future's dependents.
+    private void run(Task task) {
+        Result result = null;
+        Throwable error = null;
+        try {
+            result = task.request.execute().result();
+        } catch (Throwable ex) {
+            error = ex;
+        }
+        lock.lock();
+        try {
+            running--;
+        } finally {
+            lock.unlock();
+        }
+        if (error != null) {
+            task.future.completeExceptionally(error);
+        } else {
+            task.future.complete(result);
+        }
+        dispatch();
+    }
+
+    /// @return the given parallelism
+    /// @throws IllegalArgumentException if the value is lower than 1
+    private static int checkParallelism(int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        return parallelism;
+    }
+
+    //================================================================================
+    // Getters/Setters
+    //================================================================================
+
+    /// @return the maximum number of requests running at the same time
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /// Sets the maximum number of requests running at the same time. If it grows, queued requests are started right away,
+    /// if it shrinks, running requests are not affected.
+    ///
+    /// @throws IllegalArgumentException if the value is lower than 1
+    public RequestScheduler setParallelism(int parallelism) {
+        checkParallelism(parallelism);
+        lock.lock();
+        try {
+            this.parallelism = parallelism;
+        } finally {
+            lock.unlock();
+        }
+        dispatch();
+        return this;
+    }
+
+    /// @return the number of requests waiting to be executed
+    public int queued() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// @return the number of requests being executed
+    public int running() {
+        lock.lock();
+        try {
+            return running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //================================================================================
+    // Inner Classes
+    //================================================================================
+
+    /// A request in the scheduler, along with the priority and sequence number it was queued with, which must not change
+    /// while it's in the queue.
+    private static class Task {
+        private final ImRequest request;
+        private final CompletableFuture<Result> future = new CompletableFuture<>();
+        private Priority priority;
+        private long seq;
+
+        Task(ImRequest request) {
+            this.request = request;
+        }
+    }
+}
@@ -95,6 +95,16 @@ public class AddText implements Transform {
         return out;
     }
 
+    @Override
+    public String fingerprint() {
+        return Transform.fingerprint(this, text, position, xOffset, yOffset, font, color);
+    }
+
+    @Override
+    public boolean mutatesInput() {
+        return false;
+    }
+
     //================================================================================
     // Setters
     //================================================================================
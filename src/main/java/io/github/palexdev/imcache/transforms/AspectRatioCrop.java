@@ -69,4 +69,14 @@ public class AspectRatioCrop implements Transform {
         g.dispose();
         return out;
     }
+
+    @Override
+    public String fingerprint() {
+        return Transform.fingerprint(this, targetWidthRatio, targetHeightRatio);
+    }
+
+    @Override
+    public boolean mutatesInput() {
+        return false;
+    }
 }
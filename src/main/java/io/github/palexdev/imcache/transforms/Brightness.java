@@ -64,4 +64,14 @@ public class Brightness implements Transform {
         }
         return out;
     }
+
+    @Override
+    public String fingerprint() {
+        return Transform.fingerprint(this, brightness);
+    }
+
+    @Override
+    public boolean mutatesInput() {
+        return false;
+    }
 }
@@ -73,4 +73,14 @@ public class CenterCrop implements Transform {
         );
         return new Resize(targetWidth, targetHeight).transform(centered);
     }
+
+    @Override
+    public String fingerprint() {
+        return Transform.fingerprint(this, targetWidth, targetHeight);
+    }
+
+    @Override
+    public boolean mutatesInput() {
+        return false;
+    }
 }
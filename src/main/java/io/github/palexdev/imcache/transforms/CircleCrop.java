@@ -86,4 +86,14 @@ public class CircleCrop implements Transform {
         g.dispose();
         return circle;
     }
+
+    @Override
+    public String fingerprint() {
+        return Transform.fingerprint(this, bgColor, strokeColor, strokeWidth);
+    }
+
+    @Override
+    public boolean mutatesInput() {
+        return false;
+    }
 }
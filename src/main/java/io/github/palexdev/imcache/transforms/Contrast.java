@@ -69,4 +69,14 @@ public class Contrast implements Transform {
         }
         return out;
     }
+
+    @Override
+    public String fingerprint() {
+        return Transform.fingerprint(this, contrast);
+    }
+
+    @Override
+    public boolean mutatesInput() {
+        return false;
+    }
 }
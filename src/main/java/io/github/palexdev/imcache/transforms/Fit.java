@@ -64,4 +64,14 @@ public class Fit implements Transform {
         g.dispose();
         return scaled;
     }
+
+    @Override
+    public String fingerprint() {
+        return Transform.fingerprint(this, maxWidth, maxHeight);
+    }
+
+    @Override
+    public boolean mutatesInput() {
+        return false;
+    }
 }
@@ -73,6 +73,16 @@ public class Flip implements Transform {
         return flipped;
     }
 
+    @Override
+    public String fingerprint() {
+        return Transform.fingerprint(this, orientation);
+    }
+
+    @Override
+    public boolean mutatesInput() {
+        return false;
+    }
+
     //================================================================================
     // Internal Classes
     //================================================================================
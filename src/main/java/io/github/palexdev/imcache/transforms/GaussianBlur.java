@@ -44,4 +44,14 @@ public class GaussianBlur implements Transform {
         ConvolveOp op = new ConvolveOp(kernel, ConvolveOp.EDGE_NO_OP, null);
         return op.filter(src, null);
     }
+
+    @Override
+    public String fingerprint() {
+        return Transform.fingerprint(this);
+    }
+
+    @Override
+    public boolean mutatesInput() {
+        return false;
+    }
 }
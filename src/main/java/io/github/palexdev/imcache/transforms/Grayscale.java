@@ -58,4 +58,14 @@ public class Grayscale implements Transform {
         }
         return grayed;
     }
+
+    @Override
+    public String fingerprint() {
+        return Transform.fingerprint(this);
+    }
+
+    @Override
+    public boolean mutatesInput() {
+        return false;
+    }
 }
@@ -76,4 +76,14 @@ public class Pad implements Transform {
         g.dispose();
         return padded;
     }
+
+    @Override
+    public String fingerprint() {
+        return Transform.fingerprint(this, targetWidth, targetHeight, paddingColor);
+    }
+
+    @Override
+    public boolean mutatesInput() {
+        return false;
+    }
 }
@@ -58,4 +58,14 @@ public class Resize implements Transform {
         g.dispose();
         return resized;
     }
+
+    @Override
+    public String fingerprint() {
+        return Transform.fingerprint(this, targetWidth, targetHeight);
+    }
+
+    @Override
+    public boolean mutatesInput() {
+        return false;
+    }
 }
@@ -56,4 +56,14 @@ public class Rotate implements Transform {
         g.dispose();
         return rotated;
     }
+
+    @Override
+    public String fingerprint() {
+        return Transform.fingerprint(this, rotation);
+    }
+
+    @Override
+    public boolean mutatesInput() {
+        return false;
+    }
 }
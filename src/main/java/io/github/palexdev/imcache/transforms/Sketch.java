@@ -54,4 +54,14 @@ public class Sketch implements Transform {
         }
         return out;
     }
+
+    @Override
+    public String fingerprint() {
+        return Transform.fingerprint(this);
+    }
+
+    @Override
+    public boolean mutatesInput() {
+        return false;
+    }
 }
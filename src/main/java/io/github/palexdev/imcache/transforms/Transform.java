@@ -18,7 +18,13 @@
 
 package io.github.palexdev.imcache.transforms;
 
+import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.util.Objects;
+import java.util.StringJoiner;
+
+import io.github.palexdev.imcache.cache.BitmapCache;
+import io.github.palexdev.imcache.core.ImRequest;
 
 /// Represents a single operation that transforms a source [BufferedImage]
 /// into a modified [BufferedImage].
@@ -27,7 +33,81 @@ import java.awt.image.BufferedImage;
 /// processing and transformation logic. Implementations are expected to provide
 /// specific image transformation functionalities, such as resizing, cropping,
 /// adding filters, rotation, and more.
+///
+/// Transforms can be identified by a [#fingerprint()], which allows [ImRequest] to cache each transformed variant of an
+/// image separately, see [ImRequest#fingerprint()].
+///
+/// _Input ownership_
+///
+/// A transform may draw on its input in place and return it. Since the input may be a bitmap shared by other requests
+/// (see [BitmapCache]), [ImRequest] copies it before the first transform of the chain
+/// that may modify its input, see [#mutatesInput()]. Transforms that never modify their input should say so, to avoid
+/// the copy. The output may instead be the input itself, or a view of it, as long as it's not modified.
 @FunctionalInterface
 public interface Transform {
     BufferedImage transform(BufferedImage src);
+
+    /// @return whether this transform may modify its input. By default, returns `true`, since transforms such as lambdas
+    /// cannot be inspected. Built-in transforms never modify their input and return `false`
+    default boolean mutatesInput() {
+        return true;
+    }
+
+    /// @return a stable string that identifies this transform and its parameters. Two transforms with the same
+    /// fingerprint must produce the same output from the same input.
+    ///
+    /// By default, returns `null`, meaning that the transform cannot be identified (e.g. lambdas), and thus images
+    /// produced by it cannot be cached as variants. Built-in transforms override this, see [#fingerprint(Transform, Object...)],
+    /// while lambdas can be given a fingerprint with [#of(String, Transform)].
+    ///
+    /// Requests read the fingerprint every time they are executed, so a transform with setters can be changed between
+    /// two executions, but not during one.
+    default String fingerprint() {
+        return null;
+    }
+
+    //================================================================================
+    // Static Methods
+    //================================================================================
+
+    /// Wraps the given transform (typically a lambda) to give it the given fingerprint.
+    ///
+    /// @see #fingerprint()
+    static Transform of(String fingerprint, Transform transform) {
+        Objects.requireNonNull(fingerprint);
+        Objects.requireNonNull(transform);
+        return new Transform() {
+            @Override
+            public BufferedImage transform(BufferedImage src) {
+                return transform.transform(src);
+            }
+
+            @Override
+            public boolean mutatesInput() {
+                return transform.mutatesInput();
+            }
+
+            @Override
+            public String fingerprint() {
+                return fingerprint;
+            }
+        };
+    }
+
+    /// Convenience method to build a fingerprint from the transform's class name and the given parameters, in the form
+    /// `name(p1,p2,...)`. [Colors][Color] are converted to their ARGB hex value, and [Fonts][Font] to their name, style
+    /// and size, since their [Object#toString()] is not meant to be stable.
+    static String fingerprint(Transform transform, Object... params) {
+        StringJoiner joiner = new StringJoiner(",", transform.getClass().getName() + "(", ")");
+        for (Object param : params) {
+            String s = switch (param) {
+                case Color c -> "#%08x".formatted(c.getRGB());
+                case Font f -> "%s-%d-%s".formatted(f.getName(), f.getStyle(), f.getSize2D());
+                case null -> "null";
+                default -> String.valueOf(param);
+            };
+            joiner.add(s);
+        }
+        return joiner.toString();
+    }
 }
@@ -63,4 +63,14 @@ public class Vignette implements Transform {
         g2.dispose();
         return out;
     }
+
+    @Override
+    public String fingerprint() {
+        return Transform.fingerprint(this);
+    }
+
+    @Override
+    public boolean mutatesInput() {
+        return false;
+    }
 }
@@ -18,10 +18,9 @@
 
 package io.github.palexdev.imcache.utils;
 
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /// A utility class for asynchronous operations on virtual threads.
 public class AsyncUtils {
@@ -45,4 +44,79 @@ public class AsyncUtils {
     public static <T> Future<T> runAsync(Callable<T> callable) {
         return executor.submit(callable);
     }
+
+    /// Delegates to [#supplyAsync(Supplier, Executor)] with the default virtual threads executor.
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+        return supplyAsync(supplier, executor);
+    }
+
+    /// Runs the given supplier on the given executor, returning a [CompletableFuture] which, differently from
+    /// [CompletableFuture#supplyAsync(Supplier, Executor)], interrupts the thread running the supplier when it's cancelled
+    /// or completed exceptionally from the outside (e.g. by [CompletableFuture#orTimeout(long, TimeUnit)]).
+    ///
+    /// Note that dependent stages (e.g. created by [CompletableFuture#thenApply(Function)]) don't propagate the
+    /// cancellation, the returned future must be cancelled directly.
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, Executor executor) {
+        InterruptibleFuture<T> future = new InterruptibleFuture<>();
+        try {
+            executor.execute(() -> future.run(supplier));
+        } catch (RuntimeException ex) {
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    //================================================================================
+    // Inner Classes
+    //================================================================================
+
+    /// A [CompletableFuture] that keeps track of the thread computing its value, in order to interrupt it.
+    private static class InterruptibleFuture<T> extends CompletableFuture<T> {
+        private Thread runner;
+
+        void run(Supplier<T> supplier) {
+            synchronized (this) {
+                if (isDone()) return;
+                runner = Thread.currentThread();
+            }
+            T value = null;
+            Throwable error = null;
+            try {
+                value = supplier.get();
+            } catch (Throwable ex) {
+                error = ex;
+            }
+            synchronized (this) {
+                runner = null;
+            }
+            // Don't leak the interruption to the executor's thread
+            if (isDone()) {
+                Thread.interrupted();
+                return;
+            }
+            if (error != null) {
+                super.completeExceptionally(error);
+            } else {
+                super.complete(value);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) interruptRunner();
+            return cancelled;
+        }
+
+        @Override
+        public boolean completeExceptionally(Throwable ex) {
+            boolean completed = super.completeExceptionally(ex);
+            if (completed) interruptRunner();
+            return completed;
+        }
+
+        private synchronized void interruptRunner() {
+            if (runner != null) runner.interrupt();
+        }
+    }
 }
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2025 Parisi Alessandro - alessandro.parisi406@gmail.com
+ * This file is part of ImCache (https://github.com/palexdev/imcache)
+ *
+ * ImCache is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * ImCache is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ImCache. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.palexdev.imcache.utils;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+import io.github.palexdev.imcache.exceptions.ImCacheException;
+import io.github.palexdev.imcache.exceptions.UnsupportedMediaTypeException;
+
+/// Fetches http(s) resources with an [HttpClient], which, differently from the [java.net.URLConnection] used by
+/// [URLHandler], reuses connections, negotiates HTTP/2 when the server supports it (multiplexing all the requests to the
+/// same host on a single connection), and is fully asynchronous, see [#resolveAsync(URL, Consumer)].
+///
+/// Responses are checked as soon as their headers arrive, and the body is streamed into memory only if the status is
+/// successful and the content type is supported (see [MediaType]). Failures are reported like [URLHandler] does:
+/// 404 and 410 responses as [FileNotFoundException], other error responses as [IOException], and unsupported types as
+/// [UnsupportedMediaTypeException].
+///
+/// The resource's [Validators] are collected as well, and can be used to revalidate a cached copy with a conditional
+/// request, see [#fetchAsync(URL, Validators, Consumer)].
+///
+/// A single instance (and thus a single client, with its connection pool) should be shared, see [#common()].
+public class HttpResolver {
+    //================================================================================
+    // Static Properties
+    //================================================================================
+
+    /// Default timeout for the connection to be established: 10 seconds
+    public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(10);
+
+    /// Default timeout for the response headers to arrive: 30 seconds
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+
+    //================================================================================
+    // Properties
+    //================================================================================
+    private final HttpClient client;
+    private volatile Duration timeout = DEFAULT_TIMEOUT;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+
+    /// Creates a resolver with a new [HttpClient] which prefers HTTP/2, follows redirects (except from https to http)
+    /// and times out after [#DEFAULT_CONNECT_TIMEOUT] when connecting.
+    public HttpResolver() {
+        this(HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(DEFAULT_CONNECT_TIMEOUT)
+            .build()
+        );
+    }
+
+    public HttpResolver(HttpClient client) {
+        this.client = client;
+    }
+
+    //================================================================================
+    // Methods
+    //================================================================================
+
+    /// Sends a GET request for the given [URL], configured with the given consumer (e.g. to add headers), without
+    /// blocking.
+    ///
+    /// @return a future that completes with the resource's content, or exceptionally with the cause of the failure.
+    /// Cancelling it aborts the request
+    public CompletableFuture<byte[]> resolveAsync(URL url, Consumer<HttpRequest.Builder> config) {
+        return fetchAsync(url, null, config).thenApply(Fetched::data);
+    }
+
+    /// Blocking version of [#resolveAsync(URL, Consumer)], meant to be called from virtual threads.
+    ///
+    /// @throws ImCacheException if the request failed, with the failure as its cause, or if the current thread was
+    /// interrupted, in which case the request is aborted and the interrupted status is preserved
+    public byte[] resolve(URL url, Consumer<HttpRequest.Builder> config) {
+        return fetch(url, null, config).data();
+    }
+
+    /// Same as [#resolveAsync(URL, Consumer)], but also collects the resource's [Validators].
+    ///
+    /// If the given validators allow it (see [Validators#canRevalidate()]), the request is conditional: if the server
+    /// answers `304 Not Modified`, no content is transferred, see [Fetched#isNotModified()].
+    public CompletableFuture<Fetched> fetchAsync(URL url, Validators validators, Consumer<HttpRequest.Builder> config) {
+        boolean conditional = validators != null && validators.canRevalidate();
+        HttpRequest request;
+        try {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(url.toURI()).timeout(timeout).GET();
+            if (conditional) {
+                if (validators.etag() != null) builder.header("If-None-Match", validators.etag());
+                if (validators.lastModified() != null) builder.header("If-Modified-Since", validators.lastModified());
+            }
+            if (config != null) config.accept(builder);
+            request = builder.build();
+        } catch (URISyntaxException | RuntimeException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+        return client.sendAsync(request, info -> handle(url, info))
+            .thenApply(response -> {
+                Validators received = Validators.of(h -> response.headers().firstValue(h).orElse(null));
+                if (response.statusCode() == 304) {
+                    if (!conditional) {
+                        throw new CompletionException(new IOException("Unexpected 304 response for URL: " + url));
+                    }
+                    return new Fetched(null, received);
+                }
+                Exception error = check(url, response.statusCode(), response.headers().firstValue("Content-Type").orElse(null));
+                if (error != null) throw new CompletionException(error);
+                return new Fetched(response.body(), received);
+            });
+    }
+
+    /// Blocking version of [#fetchAsync(URL, Validators, Consumer)], meant to be called from virtual threads.
+    ///
+    /// @throws ImCacheException if the request failed, with the failure as its cause, or if the current thread was
+    /// interrupted, in which case the request is aborted and the interrupted status is preserved
+    public Fetched fetch(URL url, Validators validators, Consumer<HttpRequest.Builder> config) {
+        CompletableFuture<Fetched> future = fetchAsync(url, validators, config);
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ImCacheException("Interrupted while resolving url %s".formatted(url), ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            throw new ImCacheException(
+                "Failed to resolve url %s because: %s"
+                    .formatted(url, cause.getMessage()),
+                cause
+            );
+        }
+    }
+
+    /// Streams the body into a byte array only if the response is acceptable, otherwise discards it.
+    private BodySubscriber<byte[]> handle(URL url, ResponseInfo info) {
+        String type = info.headers().firstValue("Content-Type").orElse(null);
+        if (info.statusCode() == 304 || check(url, info.statusCode(), type) != null) return BodySubscribers.replacing(null);
+        return BodySubscribers.ofByteArray();
+    }
+
+    /// @return the exception describing why a response with the given status and content type can't be accepted, or
+    /// `null` if it can
+    protected Exception check(URL url, int status, String contentType) {
+        if (status == 404 || status == 410) return new FileNotFoundException(url.toString());
+        if (status >= 400) {
+            return new IOException("Server returned HTTP response code: %d for URL: %s".formatted(status, url));
+        }
+        if (!MediaType.isSupportedMimeType(contentType) && !MediaType.isSupportedExtension(url)) {
+            return new UnsupportedMediaTypeException(
+                "Unsupported MIME type %s for url %s"
+                    .formatted(contentType, url)
+            );
+        }
+        return null;
+    }
+
+    //================================================================================
+    // Getters/Setters
+    //================================================================================
+
+    /// @return the [HttpClient] used by this resolver
+    public HttpClient getClient() {
+        return client;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    /// Sets the default timeout for the response headers to arrive, [#DEFAULT_TIMEOUT] by default. Can be overridden
+    /// per request by the config given to [#resolveAsync(URL, Consumer)].
+    public HttpResolver setTimeout(Duration timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    //================================================================================
+    // Static Methods
+    //================================================================================
+
+    /// @return whether the given [URL] can be fetched by this resolver, i.e. its scheme is http or https
+    public static boolean supports(URL url) {
+        if (url == null) return false;
+        String protocol = url.getProtocol();
+        return "http".equalsIgnoreCase(protocol) || "https".equalsIgnoreCase(protocol);
+    }
+
+    /// @return the resolver shared by all [io.github.palexdev.imcache.core.ImCache] instances by default, created on
+    /// first use
+    public static HttpResolver common() {
+        return Common.RESOLVER;
+    }
+
+    //================================================================================
+    // Inner Classes
+    //================================================================================
+    private static class Common {
+        private static final HttpResolver RESOLVER = new HttpResolver();
+    }
+}
@@ -24,8 +24,12 @@ import io.github.palexdev.imcache.core.ImImage;
 import io.github.palexdev.imcache.exceptions.ImCacheException;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
 import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.time.Duration;
 
 /// Utility class for handling various image-related operations.
 ///
@@ -35,7 +39,8 @@ public class ImageUtils {
     //================================================================================
     // Static Properties
     //================================================================================
-    public static final byte FILE_FORMAT_VERSION = 1;
+    /// Version 2 appends the image's [Validators] to the version 1 format, which is still readable.
+    public static final byte FILE_FORMAT_VERSION = 2;
 
     //================================================================================
     // Constructors
@@ -50,24 +55,36 @@ public class ImageUtils {
     public static void serialize(ImImage img, File file) throws IOException {
         try (DataOutputStream dos = new DataOutputStream(new FileOutputStream(file))) {
             String url = img.url().toString();
+            byte[] data = img.rawData();
             // Write header
             dos.writeByte(FILE_FORMAT_VERSION);  // Format version
             dos.writeInt(url.length());          // URL length
-            dos.writeInt(img.rawData().length);  // Data length
+            dos.writeInt(data.length);           // Data length
 
             // Write data
             dos.writeBytes(url);                 // Request URL
-            dos.write(img.rawData());            // Image data
+            dos.write(data);                     // Image data
+
+            // Write validators, flags tell which ones are present
+            Validators validators = img.validators();
+            String etag = validators != null ? validators.etag() : null;
+            String lastModified = validators != null ? validators.lastModified() : null;
+            Duration maxAge = validators != null ? validators.maxAge() : null;
+            dos.writeByte((etag != null ? 1 : 0) | (lastModified != null ? 2 : 0) | (maxAge != null ? 4 : 0));
+            if (etag != null) dos.writeUTF(etag);
+            if (lastModified != null) dos.writeUTF(lastModified);
+            if (maxAge != null) dos.writeLong(maxAge.toSeconds());
         }
     }
 
-    /// Deserializes the given file to an `ImImage` object only if the format version matches [#FILE_FORMAT_VERSION].
+    /// Deserializes the given file to an `ImImage` object only if the format version is supported, which means up to
+    /// [#FILE_FORMAT_VERSION]. Files of version 1 have no validators.
     public static ImImage deserialize(File file) throws IOException {
         try (DataInputStream dis = new DataInputStream(new FileInputStream(file))) {
             // Read the header
             byte version = dis.readByte();       // Check compatible version
-            if (version != FILE_FORMAT_VERSION)
-                throw new IOException("Unsupported format version %s. Expected %s".formatted(version, FILE_FORMAT_VERSION));
+            if (version < 1 || version > FILE_FORMAT_VERSION)
+                throw new IOException("Unsupported format version %s. Expected up to %s".formatted(version, FILE_FORMAT_VERSION));
 
             int urlLength = dis.readInt();       // Read URL length
             int dataLength = dis.readInt();      // Read data length
@@ -80,7 +97,16 @@ public class ImageUtils {
             byte[] rawData = new byte[dataLength];
             dis.readFully(rawData);
 
-            return ImImage.wrap(URLHandler.toURL(url).orElse(null), rawData);
+            Validators validators = null;
+            if (version >= 2) {
+                int flags = dis.readByte();
+                String etag = (flags & 1) != 0 ? dis.readUTF() : null;
+                String lastModified = (flags & 2) != 0 ? dis.readUTF() : null;
+                Duration maxAge = (flags & 4) != 0 ? Duration.ofSeconds(dis.readLong()) : null;
+                if (flags != 0) validators = new Validators(etag, lastModified, maxAge);
+            }
+
+            return ImImage.wrap(URLHandler.toURL(url).orElse(null), rawData, validators);
         }
     }
 
@@ -117,10 +143,11 @@ public class ImageUtils {
 
     /// Given an image as a generic type, converts it to a [BufferedImage] object.
     ///
-    /// Three types are currently supported:
+    /// Four types are currently supported:
     /// 1) A [BufferedImage] object returns data as is.
     /// 2) A byte array is converted using [ImageIO#read(InputStream)].
-    /// 3) An [InputStream] object is converted to a [BufferedImage] object using [ImageIO#read(InputStream)].
+    /// 3) A [ByteBuffer] is read in place (from its position to its limit) using [ImageIO#read(InputStream)].
+    /// 4) An [InputStream] object is converted to a [BufferedImage] object using [ImageIO#read(InputStream)].
     ///
     /// For other types or a `null` object, `null` is returned.
     public static BufferedImage toImage(Object data) {
@@ -128,6 +155,7 @@ public class ImageUtils {
             return switch (data) {
                 case BufferedImage bi -> bi;
                 case byte[] arr -> ImageIO.read(new ByteArrayInputStream(arr));
+                case ByteBuffer buf -> ImageIO.read(new ByteBufferInputStream(buf));
                 case InputStream is -> ImageIO.read(is);
                 case null, default -> null;
             };
@@ -140,12 +168,21 @@ public class ImageUtils {
         }
     }
 
+    /// @return a deep copy of the given image, with its own raster, `null` if the image is `null`
+    public static BufferedImage copy(BufferedImage img) {
+        if (img == null) return null;
+        ColorModel cm = img.getColorModel();
+        WritableRaster raster = img.copyData(img.getRaster().createCompatibleWritableRaster());
+        return new BufferedImage(cm, raster, cm.isAlphaPremultiplied(), null);
+    }
+
     /// Given an image as a generic type, converts it to an [InputStream] object.
     ///
-    /// Three types are currently supported:
+    /// Four types are currently supported:
     /// 1) An [InputStream] object returns data as is.
     /// 2) A byte array is converted to an [InputStream] object using [ByteArrayInputStream].
-    /// 3) A [BufferedImage] object is converted to an [InputStream] object using [ByteArrayInputStream] and
+    /// 3) A [ByteBuffer] is wrapped in an [InputStream] that reads it in place, from its position to its limit.
+    /// 4) A [BufferedImage] object is converted to an [InputStream] object using [ByteArrayInputStream] and
     ///  [ImageIO#write(RenderedImage, String, OutputStream)].
     ///
     /// For other types or a `null` object, an empty [InputStream] is returned.
@@ -154,6 +191,7 @@ public class ImageUtils {
             return switch (data) {
                 case InputStream is -> is;
                 case byte[] arr -> new ByteArrayInputStream(arr);
+                case ByteBuffer buf -> new ByteBufferInputStream(buf);
                 case BufferedImage bi -> {
                     ByteArrayOutputStream baos = new ByteArrayOutputStream();
                     ImageIO.write(bi, format, baos);
@@ -171,4 +209,43 @@ public class ImageUtils {
             );
         }
     }
+
+    //================================================================================
+    // Internal Classes
+    //================================================================================
+
+    /// An [InputStream] reading a [ByteBuffer] in place. Works on a duplicate, so the given buffer is never modified.
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer.duplicate();
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int k = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + k);
+            return k;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
 }
@@ -21,9 +21,11 @@ package io.github.palexdev.imcache.utils;
 
 import io.github.palexdev.imcache.core.ImRequest;
 import io.github.palexdev.imcache.exceptions.ImCacheException;
+import io.github.palexdev.imcache.exceptions.UnsupportedMediaTypeException;
 
 import java.io.File;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLConnection;
@@ -46,15 +48,32 @@ public class URLHandler {
     /// Opens a connection to the given url, verifies that the content type is supported, configures the connection
     /// with the given consumer and finally transfers the resource's content to a byte array using [ImageUtils#toBytes(String, Object)].
     public static byte[] resolve(URL url, ThrowingConsumer<URLConnection> urlConfig) {
+        return fetch(url, urlConfig, null).data();
+    }
+
+    /// Same as [#resolve(URL, ThrowingConsumer)], but also collects the resource's [Validators] if it's fetched over
+    /// HTTP.
+    ///
+    /// If the given validators allow it (see [Validators#canRevalidate()]), the request is conditional: if the server
+    /// answers `304 Not Modified`, the content is not transferred, see [Fetched#isNotModified()].
+    public static Fetched fetch(URL url, ThrowingConsumer<URLConnection> urlConfig, Validators validators) {
         try {
             // Open connection
             URLConnection connection = url.openConnection();
+            if (connection instanceof HttpURLConnection http && validators != null && validators.canRevalidate()) {
+                if (validators.etag() != null) http.setRequestProperty("If-None-Match", validators.etag());
+                if (validators.lastModified() != null) http.setRequestProperty("If-Modified-Since", validators.lastModified());
+                if (http.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    return new Fetched(null, Validators.of(connection::getHeaderField));
+                }
+            }
             verify(connection);
             if (urlConfig != null) urlConfig.accept(connection);
 
             // Transfer to memory
             try (InputStream is = connection.getInputStream()) {
-                return ImageUtils.toBytes(null, is);
+                byte[] data = ImageUtils.toBytes(null, is);
+                return new Fetched(data, connection instanceof HttpURLConnection ? Validators.of(connection::getHeaderField) : null);
             }
         } catch (Exception ex) {
             throw new ImCacheException(
@@ -91,10 +110,12 @@ public class URLHandler {
     /// Retrieves the content type from the given [URLConnection] ([URLConnection#getContentType()]) and then delegates
     /// to [MediaType#isSupportedMimeType(String)] and [MediaType#isSupportedExtension(URL)] to ensure the resource is
     /// valid and supported.
+    ///
+    /// @throws UnsupportedMediaTypeException if the resource is not supported
     private static void verify(URLConnection connection) throws ImCacheException {
         String type = connection.getContentType();
         if (!MediaType.isSupportedMimeType(type) && !MediaType.isSupportedExtension(connection.getURL()))
-            throw new ImCacheException(
+            throw new UnsupportedMediaTypeException(
                 "Unsupported MIME type %s for url %s"
                     .formatted(type, connection.getURL())
             );
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2025 Parisi Alessandro - alessandro.parisi406@gmail.com
+ * This file is part of ImCache (https://github.com/palexdev/imcache)
+ *
+ * ImCache is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * ImCache is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ImCache. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.palexdev.imcache.utils;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.function.Function;
+
+/// The HTTP validators of a resource, used to revalidate a cached copy with a conditional request rather than
+/// downloading it again: the server answers `304 Not Modified` if the copy is still valid.
+///
+/// @param etag the `ETag` header, sent back as `If-None-Match`, `null` if absent
+/// @param lastModified the `Last-Modified` header, sent back as `If-Modified-Since`, `null` if absent
+/// @param maxAge the `max-age` directive of the `Cache-Control` header, which is for how long the resource can be used
+///               without revalidating it, `null` if absent
+public record Validators(String etag, String lastModified, Duration maxAge) {
+
+    //================================================================================
+    // Methods
+    //================================================================================
+
+    /// @return whether a conditional request can be made with these validators
+    public boolean canRevalidate() {
+        return etag != null || lastModified != null;
+    }
+
+    /// Updates these validators with the ones of a `304 Not Modified` response: the validators it carries replace the
+    /// stored ones, while the missing ones are kept.
+    ///
+    /// @return the updated validators, `this` if the response carries none
+    public Validators merge(Validators updated) {
+        if (updated == null) return this;
+        return new Validators(
+            updated.etag != null ? updated.etag : etag,
+            updated.lastModified != null ? updated.lastModified : lastModified,
+            updated.maxAge != null ? updated.maxAge : maxAge
+        );
+    }
+
+    //================================================================================
+    // Static Methods
+    //================================================================================
+
+    /// Extracts the validators from the headers of a response, given as a function from header name to value.
+    ///
+    /// @return the validators, or `null` if the response has none
+    public static Validators of(Function<String, String> headers) {
+        String etag = headers.apply("ETag");
+        String lastModified = headers.apply("Last-Modified");
+        Duration maxAge = maxAge(headers.apply("Cache-Control"));
+        if (etag == null && lastModified == null && maxAge == null) return null;
+        return new Validators(etag, lastModified, maxAge);
+    }
+
+    /// Parses the `max-age` directive from the given `Cache-Control` header. `no-cache` and `no-store` are treated as a
+    /// zero max-age, since the resource must be revalidated before every use.
+    ///
+    /// @return the max-age, or `null` if the header is `null` or has no such directive
+    public static Duration maxAge(String cacheControl) {
+        if (cacheControl == null) return null;
+        for (String directive : cacheControl.split(",")) {
+            String d = directive.trim().toLowerCase(Locale.ROOT);
+            if (d.equals("no-cache") || d.equals("no-store")) return Duration.ZERO;
+            if (d.startsWith("max-age=")) {
+                try {
+                    return Duration.ofSeconds(Math.max(0L, Long.parseLong(d.substring(8).replace("\"", ""))));
+                } catch (NumberFormatException ex) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -1,10 +1,12 @@
 module ImCache {
     //***** Dependencies *****//
     requires java.desktop;
+    requires java.net.http;
 
     //***** Exports *****//
     // Cache Package
     exports io.github.palexdev.imcache.cache;
+    exports io.github.palexdev.imcache.cache.policy;
 
     // Core Package
     exports io.github.palexdev.imcache.core;
@@ -0,0 +1,1991 @@
+/*
+ * Copyright (C) 2025 Parisi Alessandro - alessandro.parisi406@gmail.com
+ * This file is part of ImCache (https://github.com/palexdev/imcache)
+ *
+ * ImCache is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * ImCache is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ImCache. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tests;
+
+import io.github.palexdev.imcache.cache.BitmapCache;
+import io.github.palexdev.imcache.cache.CacheStats;
+import io.github.palexdev.imcache.cache.DiskCache;
+import io.github.palexdev.imcache.cache.ImgCache;
+import io.github.palexdev.imcache.cache.Key;
+import io.github.palexdev.imcache.cache.KeyIndex;
+import io.github.palexdev.imcache.cache.MemoryCache;
+import io.github.palexdev.imcache.cache.NegativeCache;
+import io.github.palexdev.imcache.cache.NegativeCache.FailureKind;
+import io.github.palexdev.imcache.cache.OffHeapArena;
+import io.github.palexdev.imcache.cache.OffHeapImage;
+import io.github.palexdev.imcache.cache.OffHeapMemoryCache;
+import io.github.palexdev.imcache.cache.RemovalCause;
+import io.github.palexdev.imcache.cache.ShardedCache;
+import io.github.palexdev.imcache.cache.TieredCache;
+import io.github.palexdev.imcache.cache.WithID;
+import io.github.palexdev.imcache.cache.policy.AdmissionFilter;
+import io.github.palexdev.imcache.cache.policy.EvictionPolicy;
+import io.github.palexdev.imcache.cache.policy.FrequencySketch;
+import io.github.palexdev.imcache.core.CpuPool;
+import io.github.palexdev.imcache.core.HostLimiter;
+import io.github.palexdev.imcache.core.ImCache;
+import io.github.palexdev.imcache.core.ImImage;
+import io.github.palexdev.imcache.core.ImRequest;
+import io.github.palexdev.imcache.core.ImRequest.Priority;
+import io.github.palexdev.imcache.core.ImRequest.RequestState;
+import io.github.palexdev.imcache.core.RequestScheduler;
+import io.github.palexdev.imcache.exceptions.HostUnavailableException;
+import io.github.palexdev.imcache.exceptions.ImCacheException;
+import io.github.palexdev.imcache.exceptions.UnsupportedMediaTypeException;
+import io.github.palexdev.imcache.transforms.AddText;
+import io.github.palexdev.imcache.transforms.Resize;
+import io.github.palexdev.imcache.transforms.Transform;
+import io.github.palexdev.imcache.utils.AsyncUtils;
+import io.github.palexdev.imcache.utils.HttpResolver;
+import io.github.palexdev.imcache.utils.ImageUtils;
+import io.github.palexdev.imcache.utils.ThrowingConsumer;
+import io.github.palexdev.imcache.utils.URLHandler;
+import io.github.palexdev.imcache.utils.Validators;
+
+import java.awt.image.BufferedImage;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SequencedMap;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/// Tests for the caching data structures which do not need network access nor a running JavaFX application.
+public class CacheTests {
+    private static final int THREADS = 64;
+
+    @Test
+    void testConcurrentStoreNoLostEntries() {
+        MemoryCache cache = new MemoryCache();
+        cache.setCapacity(THREADS * 200);
+        runConcurrently(t -> {
+            for (int i = 0; i < 200; i++) {
+                String id = t + "-" + i;
+                cache.store(id, image(id));
+                cache.get(id);
+            }
+        });
+
+        assertEquals(THREADS * 200, cache.size());
+        assertEquals(cache.size(), cache.asMap().size());
+        for (int t = 0; t < THREADS; t++) {
+            for (int i = 0; i < 200; i++) {
+                assertTrue(cache.contains(t + "-" + i));
+            }
+        }
+    }
+
+    @Test
+    void testConcurrentStoreCapacity() {
+        MemoryCache cache = new MemoryCache();
+        cache.setCapacity(50);
+        runConcurrently(t -> {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            for (int i = 0; i < 2000; i++) {
+                String id = String.valueOf(rnd.nextInt(500));
+                if (rnd.nextBoolean()) {
+                    cache.store(id, image(id));
+                } else {
+                    cache.getImage(id);
+                }
+                assertTrue(cache.size() <= 50);
+            }
+        });
+
+        assertEquals(50, cache.size());
+        Map<String, ImImage> map = cache.asMap();
+        assertEquals(50, map.size());
+        map.forEach((k, v) -> assertNotNull(v));
+    }
+
+    @Test
+    void testFIFOEvictsOldest() {
+        MemoryCache cache = new MemoryCache();
+        cache.setCapacity(3);
+        fill(cache, "a", "b", "c");
+        cache.get("a");
+        cache.store("d", image("d"));
+        assertFalse(cache.contains("a"));
+        assertEquals(List.of("b", "c", "d"), List.copyOf(cache.asMap().keySet()));
+    }
+
+    @Test
+    void testLRUKeepsHotEntries() {
+        MemoryCache cache = new MemoryCache();
+        cache.setCapacity(3).setEvictionPolicy(EvictionPolicy.lru());
+        fill(cache, "a", "b", "c");
+        cache.get("a");
+        cache.store("d", image("d"));
+        assertTrue(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+        assertEquals(List.of("c", "a", "d"), List.copyOf(cache.asMap().keySet()));
+    }
+
+    @Test
+    void testClockSecondChance() {
+        MemoryCache cache = new MemoryCache();
+        cache.setCapacity(3).setEvictionPolicy(EvictionPolicy.clock());
+        fill(cache, "a", "b", "c");
+        cache.get("a");
+        cache.store("d", image("d"));
+        assertTrue(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    void testARCScanResistance() {
+        MemoryCache cache = new MemoryCache();
+        cache.setCapacity(10).setEvictionPolicy(EvictionPolicy.arc());
+        // Hot set, accessed twice
+        for (int i = 0; i < 5; i++) {
+            cache.store("hot" + i, image("hot" + i));
+            cache.get("hot" + i);
+        }
+        // One-off scan
+        for (int i = 0; i < 100; i++) {
+            cache.store("scan" + i, image("scan" + i));
+        }
+        for (int i = 0; i < 5; i++) {
+            assertTrue(cache.contains("hot" + i));
+        }
+        assertEquals(10, cache.size());
+    }
+
+    @Test
+    void testPolicySwitchKeepsEntries() {
+        MemoryCache cache = new MemoryCache();
+        fill(cache, "a", "b", "c");
+        cache.setEvictionPolicy(EvictionPolicy.arc());
+        assertEquals(List.of("a", "b", "c"), List.copyOf(cache.asMap().keySet()));
+        cache.setCapacity(2);
+        assertFalse(cache.contains("a"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void testTinyLFURejectsOneHitWonders() {
+        MemoryCache cache = new MemoryCache();
+        cache.setCapacity(10).setAdmissionFilter(AdmissionFilter.tinyLFU(10));
+        for (int i = 0; i < 10; i++) {
+            String id = "hot" + i;
+            for (int j = 0; j < 5; j++) cache.get(id);
+            cache.store(id, image(id));
+        }
+        // Flood of one-off ids while the hot ones keep being requested
+        for (int i = 0; i < 1000; i++) {
+            cache.get("hot" + (i % 10));
+            cache.store("once" + i, image("once" + i));
+        }
+        for (int i = 0; i < 10; i++) {
+            assertTrue(cache.contains("hot" + i));
+        }
+
+        // A new id that becomes popular is eventually admitted
+        for (int i = 0; i < 10; i++) cache.get("new");
+        cache.store("new", image("new"));
+        assertTrue(cache.contains("new"));
+        assertEquals(10, cache.size());
+    }
+
+    @Test
+    void testFrequencySketch() {
+        FrequencySketch sketch = new FrequencySketch(512);
+        assertEquals(0, sketch.frequency("a"));
+        sketch.increment("a");
+        assertEquals(1, sketch.frequency("a"));
+        for (int i = 0; i < 30; i++) sketch.increment("a");
+        assertEquals(16, sketch.frequency("a"));
+
+        sketch.reset();
+        assertEquals(7, sketch.frequency("a"));
+
+        // Aging happens by itself after enough additions
+        for (int i = 0; i < 20_000; i++) sketch.increment("b" + (i % 2000));
+        assertTrue(sketch.frequency("a") < 7);
+    }
+
+    @Test
+    void testWeightedCapacity() {
+        MemoryCache cache = new MemoryCache();
+        cache.setMaxWeight(1000);
+        cache.store("a", image("a", 400));
+        cache.store("b", image("b", 400));
+        assertEquals(800, cache.getTotalWeight());
+
+        cache.store("c", image("c", 200));
+        assertEquals(1000, cache.getTotalWeight());
+        // Needs room for 500 bytes, evicts "a" and "b"
+        cache.store("d", image("d", 500));
+        assertFalse(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+        assertEquals(700, cache.getTotalWeight());
+
+        // Replacing an entry accounts for the old weight
+        cache.store("d", image("d", 900));
+        assertFalse(cache.contains("c"));
+        assertEquals(900, cache.getTotalWeight());
+
+        // Too big to ever fit
+        cache.store("e", image("e", 2000));
+        assertFalse(cache.contains("e"));
+
+        cache.setMaxWeight(500);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getTotalWeight());
+    }
+
+    @Test
+    void testExpireAfterWrite() {
+        FakeClockCache cache = new FakeClockCache();
+        cache.setExpireAfterWrite(Duration.ofSeconds(10));
+        fill(cache, "a", "b");
+        cache.advance(Duration.ofSeconds(5));
+        cache.store("b", image("b"));
+        // Reads don't extend the write TTL
+        assertTrue(cache.get("a").isPresent());
+
+        cache.advance(Duration.ofSeconds(6));
+        assertFalse(cache.contains("a"));
+        assertTrue(cache.get("a").isEmpty());
+        assertTrue(cache.contains("b"));
+        assertEquals(1, cache.size());
+
+        cache.advance(Duration.ofSeconds(5));
+        cache.cleanUp();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getTotalWeight());
+    }
+
+    @Test
+    void testExpireAfterAccess() {
+        FakeClockCache cache = new FakeClockCache();
+        cache.setExpireAfterAccess(Duration.ofMinutes(1));
+        fill(cache, "a", "b");
+        for (int i = 0; i < 10; i++) {
+            cache.advance(Duration.ofSeconds(40));
+            assertTrue(cache.get("a").isPresent());
+        }
+        assertTrue(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+
+        // The write TTL still applies
+        cache.setExpireAfterWrite(Duration.ofMinutes(2));
+        assertFalse(cache.contains("a"));
+        cache.store("a", image("a"));
+        cache.advance(Duration.ofSeconds(40));
+        assertTrue(cache.get("a").isPresent());
+        cache.advance(Duration.ofSeconds(40));
+        assertTrue(cache.get("a").isPresent());
+        cache.advance(Duration.ofSeconds(50));
+        assertTrue(cache.get("a").isEmpty());
+    }
+
+    @Test
+    void testPerEntryExpiry() {
+        FakeClockCache cache = new FakeClockCache();
+        cache.setExpireAfterWrite(Duration.ofHours(1));
+        cache.store("a", image("a"), Duration.ofSeconds(30));
+        cache.store("b", image("b"), Duration.ZERO);
+        cache.store("c", image("c"));
+
+        cache.advance(Duration.ofMinutes(1));
+        cache.store("d", image("d"));
+        assertEquals(3, cache.size());
+        assertFalse(cache.contains("a"));
+
+        cache.advance(Duration.ofDays(10));
+        cache.store("e", image("e"));
+        assertEquals(2, cache.size());
+        assertTrue(cache.contains("b"));
+        assertTrue(cache.contains("e"));
+
+        // Replacing resets the entry's TTL
+        assertTrue(cache.setExpiry("e", Duration.ofSeconds(1)));
+        cache.store("e", image("e"));
+        cache.advance(Duration.ofSeconds(2));
+        assertTrue(cache.contains("e"));
+        assertFalse(cache.setExpiry("x", Duration.ofSeconds(1)));
+    }
+
+    @Test
+    void testDiskCacheExpiryUsesFileAge() throws Exception {
+        Path dir = Files.createTempDirectory("imcache-tests");
+        try {
+            DiskCache cache = new DiskCache(dir);
+            fill(cache, "old", "new");
+            File old = cache.get("old").orElseThrow();
+            assertTrue(old.setLastModified(System.currentTimeMillis() - Duration.ofHours(2).toMillis()));
+
+            DiskCache reloaded = DiskCache.load(dir);
+            assertEquals(2, reloaded.size());
+            reloaded.setExpireAfterWrite(Duration.ofHours(1));
+            assertEquals(1, reloaded.size());
+            assertFalse(reloaded.contains("old"));
+            assertFalse(old.exists());
+            assertTrue(reloaded.contains("new"));
+        } finally {
+            deleteDir(dir);
+        }
+    }
+
+    @Test
+    void testDiskCacheRejectedReplacement() throws Exception {
+        Path dir = Files.createTempDirectory("imcache-tests");
+        try {
+            DiskCache cache = new DiskCache(dir);
+            cache.store("a", image("a", 100));
+            cache.store("b", image("b", 100));
+            cache.setMaxWeight(cache.getTotalWeight() + 500);
+
+            // Too heavy, the cached files are left untouched
+            cache.store("a", image("a", 5000));
+            cache.storeImages(Map.of("b", image("b", 5000)));
+            assertEquals(100, cache.getImage("a").orElseThrow().rawData().length);
+            assertEquals(100, cache.getImage("b").orElseThrow().rawData().length);
+            try (Stream<Path> files = Files.list(dir)) {
+                assertEquals(2, files.count());
+            }
+        } finally {
+            deleteDir(dir);
+        }
+    }
+
+    @Test
+    void testOffHeapCache() {
+        OffHeapMemoryCache cache = new OffHeapMemoryCache(new OffHeapArena(1024));
+        byte[] data = new byte[300];
+        ThreadLocalRandom.current().nextBytes(data);
+        cache.store("a", ImImage.wrap(image("a").url(), data));
+        OffHeapImage img = (OffHeapImage) cache.get("a").orElseThrow();
+        assertArrayEquals(data, img.rawData());
+        assertTrue(img.buffer().isReadOnly());
+        assertTrue(img.read(ByteBuffer::isDirect));
+        assertEquals(300, cache.getTotalWeight());
+        assertEquals(320, cache.getArena().getUsed());
+
+        // Images handed out by getImage() live on the heap
+        ImImage copy = cache.getImage("a").orElseThrow();
+        assertFalse(copy instanceof OffHeapImage);
+        assertArrayEquals(data, copy.rawData());
+
+        // Images handed out by probeImage() read the off-heap memory in place
+        OffHeapImage.Pinned pinned = (OffHeapImage.Pinned) cache.probeImage(Key.of("a")).orElseThrow();
+        assertTrue(pinned.buffer().isDirect());
+        assertTrue(pinned.buffer().isReadOnly());
+        assertEquals(300, pinned.size());
+        assertTrue(img.getBlock().isPinned());
+
+        // Replacing and removing release the memory, the off-heap image fails fast while the copy is unaffected
+        // The pinned image stays valid, and its memory is reclaimed only once it's closed
+        cache.store("a", image("a", 100));
+        assertThrows(ImCacheException.class, img::rawData);
+        assertThrows(ImCacheException.class, img::buffer);
+        assertThrows(ImCacheException.class, () -> img.read(ByteBuffer::remaining));
+        assertArrayEquals(data, copy.rawData());
+        assertEquals(448, cache.getArena().getUsed());
+        byte[] view = new byte[300];
+        pinned.buffer().get(view);
+        assertArrayEquals(data, view);
+        pinned.close();
+        assertFalse(img.getBlock().isPinned());
+        assertEquals(128, cache.getArena().getUsed());
+        cache.remove("a");
+        assertEquals(0, cache.getArena().getUsed());
+        assertTrue(cache.probeImage(Key.of("a")).isEmpty());
+
+        // Rejected entries release the memory too
+        cache.setMaxWeight(2000);
+        cache.store("big", image("big", 3000));
+        assertEquals(0, cache.getArena().getUsed());
+    }
+
+    @Test
+    void testOffHeapArenaCompaction() {
+        OffHeapArena arena = new OffHeapArena(1024);
+        List<OffHeapArena.Block> blocks = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            byte[] data = new byte[200];
+            Arrays.fill(data, (byte) i);
+            blocks.add(arena.allocate(data));
+        }
+        // 4 blocks of 256 bytes per slab
+        assertEquals(4, arena.getSlabCount());
+
+        // Free-list reuse
+        blocks.get(1).release();
+        OffHeapArena.Block reused = arena.allocate(new byte[10]);
+        assertEquals(4, arena.getSlabCount());
+        reused.release();
+
+        // Leave a single block per slab, compaction packs them into one
+        for (int i = 0; i < 16; i++) {
+            if (i % 4 != 0) blocks.get(i).release();
+        }
+        assertEquals(4, arena.getSlabCount());
+        arena.compact();
+        assertEquals(1, arena.getSlabCount());
+        assertEquals(1024, arena.getReserved());
+        for (int i = 0; i < 16; i += 4) {
+            byte[] expected = new byte[200];
+            Arrays.fill(expected, (byte) i);
+            assertArrayEquals(expected, blocks.get(i).copy());
+        }
+
+        // Pinned blocks are neither moved nor reused, the compaction works around them
+        blocks.get(0).release();
+        OffHeapArena.Pin pin = blocks.get(8).pin();
+        arena.compact();
+        List<OffHeapArena.Block> fillers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            byte[] data = new byte[200];
+            Arrays.fill(data, (byte) 0x7F);
+            fillers.add(arena.allocate(data));
+        }
+        byte[] expected = new byte[200];
+        Arrays.fill(expected, (byte) 8);
+        byte[] view = new byte[200];
+        pin.buffer().get(view);
+        assertArrayEquals(expected, view);
+
+        // Released while pinned, the memory is reclaimed once the pin is closed
+        blocks.get(8).release();
+        assertThrows(ImCacheException.class, () -> blocks.get(8).copy());
+        pin.buffer().get(0, view);
+        assertArrayEquals(expected, view);
+        long used = arena.getUsed();
+        pin.close();
+        pin.close();
+        assertEquals(used - 256, arena.getUsed());
+        fillers.forEach(OffHeapArena.Block::release);
+        blocks.get(4).release();
+        blocks.get(12).release();
+        assertEquals(1, arena.getSlabCount());
+        assertEquals(0, arena.getUsed());
+
+        // Blocks bigger than a slab get their own
+        OffHeapArena.Block big = arena.allocate(new byte[5000]);
+        assertEquals(2, arena.getSlabCount());
+        big.release();
+        assertEquals(1, arena.getSlabCount());
+    }
+
+    @Test
+    void testBitmapCache() throws Exception {
+        BitmapCache bitmaps = new BitmapCache();
+        byte[] png = ImageUtils.toBytes("png", new BufferedImage(40, 20, BufferedImage.TYPE_INT_ARGB));
+        BufferedImage decoded = bitmaps.decode(ImImage.wrap(image("a").url(), png));
+        assertSame(decoded, bitmaps.decode(ImImage.wrap(image("a").url(), png.clone())));
+        assertEquals(40 * 20 * 4, bitmaps.getTotalWeight());
+
+        // Same url, different content
+        byte[] gray = ImageUtils.toBytes("png", new BufferedImage(10, 10, BufferedImage.TYPE_BYTE_GRAY));
+        assertNotSame(decoded, bitmaps.decode(ImImage.wrap(image("a").url(), gray)));
+        assertEquals(2, bitmaps.size());
+        assertEquals(40 * 20 * 4 + 10 * 10, bitmaps.getTotalWeight());
+
+        // Content keys are 128-bit MurmurHash3 (reference vector), computed once per image
+        byte[] fox = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(new Key(0xe34bbc7bbc071b6cL, 0x7a433ca9c49a9347L), Key.of(ByteBuffer.wrap(fox)));
+        assertEquals(Key.of(ByteBuffer.wrap(fox, 4, 5)), Key.of(ByteBuffer.wrap("quick".getBytes(StandardCharsets.US_ASCII))));
+        ImImage hashed = ImImage.wrap(image("a").url(), png);
+        assertSame(hashed.contentKey(), hashed.contentKey());
+        assertEquals(BitmapCache.key(hashed), BitmapCache.key(ImImage.wrap(image("b").url(), png.clone())));
+        assertNotEquals(BitmapCache.key(hashed), BitmapCache.key(ImImage.wrap(image("a").url(), gray)));
+
+        // Requests reuse the bitmaps, as well as the images they produce
+        Path file = Files.createTempFile("imcache-bitmap", ".png");
+        try {
+            Files.write(file, png);
+            ImCache imCache = new ImCache().bitmapConfig(BitmapCache::new);
+            List<BufferedImage> inputs = new ArrayList<>();
+            Transform recorder = new Transform() {
+                @Override
+                public BufferedImage transform(BufferedImage src) {
+                    inputs.add(src);
+                    return src;
+                }
+
+                @Override
+                public boolean mutatesInput() {
+                    return false;
+                }
+            };
+            ImRequest.Result first = imCache.request(file).transform(recorder).execute().result();
+            ImRequest.Result second = imCache.request(file).transform(recorder).execute().result();
+            assertEquals(ImRequest.RequestState.CACHE_HIT, second.state());
+            assertEquals(2, inputs.size());
+            assertSame(inputs.get(0), inputs.get(1));
+            assertSame(inputs.get(0), second.unwrapSrc().sharedImage());
+            assertEquals(1, imCache.bitmaps().size());
+            assertSame(first.unwrapOut().sharedImage(), second.unwrapOut().sharedImage());
+
+            // asImage() always returns a new bitmap
+            BufferedImage own = second.unwrapSrc().asImage();
+            assertNotSame(inputs.get(0), own);
+            own.setRGB(0, 0, 0xFFFF0000);
+            assertEquals(0, inputs.get(0).getRGB(0, 0));
+
+            // Transforms that may draw on their input get a copy, the shared bitmap is untouched
+            Transform painter = src -> {
+                inputs.add(src);
+                src.setRGB(0, 0, 0xFF00FF00);
+                return src;
+            };
+            ImRequest painted = imCache.request(file).transform(recorder).transform(painter).execute();
+            assertEquals(0xFF00FF00, painted.result().unwrapOut().asImage().getRGB(0, 0));
+            assertNotSame(inputs.get(0), inputs.getLast());
+            assertEquals(0, inputs.get(0).getRGB(0, 0));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testTieredCacheWriteThrough() throws Exception {
+        Path dir = Files.createTempDirectory("imcache-tests");
+        try {
+            TieredCache cache = new TieredCache(dir);
+            cache.setCapacity(2);
+            fill(cache, "a", "b", "c");
+            assertEquals(2, cache.size());
+            assertEquals(3, cache.getDisk().size());
+            assertTrue(cache.contains("a"));
+
+            // Disk hit, promoted
+            assertTrue(cache.get("a").isPresent());
+            assertEquals(List.of("c", "a"), List.copyOf(cache.asMap().keySet()));
+            assertTrue(cache.get("a").isPresent());
+            assertTrue(cache.get("x").isEmpty());
+            assertEquals(new TieredCache.Stats(1, 1, 1, 1, 0), cache.getStats());
+
+            cache.remove("a");
+            assertFalse(cache.contains("a"));
+            assertEquals(2, cache.getDisk().size());
+        } finally {
+            deleteDir(dir);
+        }
+    }
+
+    @Test
+    void testTieredCacheWriteBack() throws Exception {
+        Path dir = Files.createTempDirectory("imcache-tests");
+        try {
+            TieredCache cache = new TieredCache(dir).setWritePolicy(TieredCache.WritePolicy.WRITE_BACK);
+            // Demotions are written by the operation that caused them, right after releasing the lock
+            cache.setListenerExecutor(Runnable::run);
+            cache.setCapacity(2);
+            fill(cache, "a", "b");
+            assertEquals(0, cache.getDisk().size());
+
+            // Eviction demotes "a"
+            fill(cache, "c");
+            assertEquals(Set.of("a"), cache.getDisk().asMap().keySet());
+
+            // Promotion of "a" demotes "b"
+            assertTrue(cache.get("a").isPresent());
+            assertEquals(Set.of("a", "b"), cache.getDisk().asMap().keySet());
+            // "a" is already on the disk, no need to write it again
+            fill(cache, "d", "e");
+            assertEquals(Set.of("a", "b", "c"), cache.getDisk().asMap().keySet());
+            assertEquals(3, cache.getStats().demotions());
+            assertEquals(1, cache.getStats().promotions());
+
+            // Stores invalidate the stale version on the disk
+            cache.store("b", image("b", 10));
+            assertFalse(cache.getDisk().contains("b"));
+            assertEquals(10, cache.get("b").orElseThrow().size());
+
+            // Demotions are written without holding the memory tier's lock, and are found while queued
+            CountDownLatch writing = new CountDownLatch(1);
+            CountDownLatch resume = new CountDownLatch(1);
+            DiskCache slowDisk = new DiskCache(dir.resolve("slow")) {
+                @Override
+                public void store(String id, ImImage img) {
+                    writing.countDown();
+                    try {
+                        resume.await();
+                    } catch (InterruptedException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                    super.store(id, img);
+                }
+            };
+            TieredCache slow = new TieredCache(slowDisk).setWritePolicy(TieredCache.WritePolicy.WRITE_BACK);
+            slow.setCapacity(1);
+            fill(slow, "x", "y");
+            assertTrue(writing.await(5, TimeUnit.SECONDS));
+            fill(slow, "z");
+            assertEquals(Set.of("z"), slow.asMap().keySet());
+            assertTrue(slow.contains("x"));
+            assertTrue(slow.contains("y"));
+            resume.countDown();
+            slow.flushDemotions();
+            assertEquals(Set.of("x", "y"), slowDisk.asMap().keySet());
+            assertEquals(2, slow.getStats().demotions());
+        } finally {
+            deleteDir(dir);
+        }
+    }
+
+    @Test
+    void testShardedCache() {
+        ShardedCache cache = ShardedCache.memory(6);
+        assertEquals(8, cache.getShards().size());
+        cache.setCapacity(THREADS * 10 + 3);
+        assertEquals(THREADS * 10 + 3, cache.getCapacity());
+        // Each shard gets its own instance of the policy
+        EvictionPolicy arc = EvictionPolicy.arc();
+        cache.setEvictionPolicy(arc);
+        assertSame(arc, cache.getEvictionPolicy());
+        assertEquals(8, cache.getShards().stream().map(ImgCache::getEvictionPolicy).distinct().count());
+        assertTrue(cache.getShards().stream().allMatch(s -> s.getEvictionPolicy().getClass() == arc.getClass()));
+        cache.setEvictionPolicy(EvictionPolicy::lru);
+        assertEquals(8, cache.getShards().stream().map(ImgCache::getEvictionPolicy).distinct().count());
+
+        runConcurrently(t -> {
+            for (int i = 0; i < 100; i++) {
+                String id = t + "-" + i;
+                cache.store(id, image(id));
+                assertTrue(cache.get(id).isPresent());
+            }
+        });
+        assertTrue(cache.size() <= cache.getCapacity());
+        for (ImgCache<ImImage> shard : cache.getShards()) {
+            assertTrue(shard.size() <= shard.getCapacity());
+            assertTrue(shard.size() > 0);
+        }
+        Map<String, ImImage> map = cache.asMap();
+        assertEquals(cache.size(), map.size());
+        map.keySet().forEach(id -> assertTrue(cache.shard(id).contains(id)));
+        int iterated = 0;
+        for (Map.Entry<String, ImImage> ignored : cache) iterated++;
+        assertEquals(map.size(), iterated);
+
+        String id = map.keySet().iterator().next();
+        assertTrue(cache.remove(id));
+        assertFalse(cache.contains(id));
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testCacheStats() throws Exception {
+        FakeClockCache cache = new FakeClockCache();
+        cache.setCapacity(2);
+        cache.setExpireAfterWrite(Duration.ofMinutes(1));
+        fill(cache, "a", "b", "c");
+        cache.store("c", image("c", 10));
+        cache.get("b");
+        cache.get("a");
+        cache.remove("b");
+        cache.advance(Duration.ofMinutes(2));
+        cache.cleanUp();
+        fill(cache, "d");
+        cache.clear();
+
+        CacheStats stats = cache.stats();
+        assertEquals(1, stats.hitCount());
+        assertEquals(1, stats.missCount());
+        assertEquals(0.5, stats.hitRate(), 0.0);
+        assertEquals(5, stats.storeCount());
+        assertEquals(3 * 4 + 10, stats.bytesStored());
+        assertEquals(1, stats.removalCount(RemovalCause.SIZE));
+        assertEquals(1, stats.removalCount(RemovalCause.REPLACED));
+        assertEquals(1, stats.removalCount(RemovalCause.EXPLICIT));
+        assertEquals(1, stats.removalCount(RemovalCause.EXPIRED));
+        assertEquals(1, stats.removalCount(RemovalCause.CLEARED));
+        assertEquals(2, stats.evictionCount());
+        assertEquals(stats, stats.plus(CacheStats.empty()));
+        assertEquals(CacheStats.empty(), stats.minus(stats));
+
+        cache.resetStats();
+        cache.setRecordStats(false);
+        fill(cache, "e");
+        cache.get("e");
+        assertEquals(CacheStats.empty(), cache.stats());
+
+        // Loads are recorded by the requests
+        Path file = Files.createTempFile("imcache-stats", ".png");
+        try {
+            Files.write(file, ImageUtils.toBytes("png", new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB)));
+            ImCache imCache = new ImCache();
+            imCache.request(file).transform(src -> src).execute();
+            imCache.request(file).transform(src -> src).execute();
+            imCache.request("file:///imcache/missing.png").execute();
+            CacheStats loads = imCache.stats();
+            assertEquals(1, loads.hitCount());
+            assertEquals(2, loads.missCount());
+            assertEquals(1, loads.loadSuccessCount());
+            assertEquals(1, loads.loadFailureCount());
+            assertTrue(loads.loadTime(CacheStats.Stage.RESOLVE).toNanos() > 0);
+            assertTrue(loads.loadTime(CacheStats.Stage.DECODE).toNanos() > 0);
+            assertTrue(loads.loadTime(CacheStats.Stage.ENCODE).toNanos() > 0);
+            // Decoding, transforming and encoding happen on hits too, they don't count towards the load penalty
+            assertEquals(loads.loadTime(CacheStats.Stage.RESOLVE).dividedBy(2), loads.averageLoadPenalty());
+            assertTrue(loads.averageLoadPenalty().compareTo(loads.totalLoadTime().dividedBy(2)) < 0);
+
+            // Requests record a single lookup each, even if they look up both a variant and its original
+            ImCache variants = new ImCache().setStoreStrategy(ImCache.StoreStrategy.SAVE_ALL);
+            variants.request(file).transform(new Resize(4, 4)).execute();
+            variants.request(file).transform(new Resize(2, 2)).execute();
+            variants.request(file).transform(new Resize(2, 2)).execute();
+            variants.request(file).overwrite(true).execute();
+            CacheStats lookups = variants.stats();
+            assertEquals(2, lookups.hitCount());
+            assertEquals(1, lookups.missCount());
+            assertEquals(2, lookups.loadSuccessCount());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testRemovalListener() throws Exception {
+        FakeClockCache cache = new FakeClockCache();
+        BlockingQueue<String> notifications = new LinkedBlockingQueue<>();
+        CountDownLatch slow = new CountDownLatch(1);
+        try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
+            cache.setListenerExecutor(executor);
+            cache.setRemovalListener((id, img, cause) -> {
+                try {
+                    slow.await();
+                } catch (InterruptedException ignored) {}
+                notifications.add(id + ":" + cause + ":" + img.size());
+            });
+            cache.setCapacity(2);
+            cache.setExpireAfterWrite(Duration.ofMinutes(1));
+            fill(cache, "a", "b", "c");
+            cache.store("c", image("c", 10));
+            cache.remove("b");
+            cache.advance(Duration.ofMinutes(2));
+            cache.cleanUp();
+            fill(cache, "d");
+            cache.setCapacity(0);
+            fill(cache, "e");
+            cache.setCapacity(1);
+            fill(cache, "f");
+            cache.clear();
+
+            // The listener is blocked, but the cache is not
+            assertTrue(notifications.isEmpty());
+            slow.countDown();
+            List<String> expected = List.of(
+                "a:SIZE:3", "c:REPLACED:3", "b:EXPLICIT:3", "c:EXPIRED:10", "d:SIZE:3", "f:CLEARED:3"
+            );
+            List<String> received = new ArrayList<>();
+            for (int i = 0; i < expected.size(); i++) {
+                received.add(notifications.poll(5, TimeUnit.SECONDS));
+            }
+            assertEquals(expected, received);
+        }
+    }
+
+    @Test
+    void testRemovalListenerReadsValue() throws Exception {
+        // Off-heap memory is released only after the listener
+        OffHeapMemoryCache offHeap = new OffHeapMemoryCache(new OffHeapArena(1024));
+        List<String> received = new CopyOnWriteArrayList<>();
+        CountDownLatch gate = new CountDownLatch(1);
+        try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
+            offHeap.setListenerExecutor(executor);
+            offHeap.setRemovalListener((id, img, cause) -> {
+                try {
+                    gate.await();
+                } catch (InterruptedException ignored) {}
+                received.add(id + ":" + cause + ":" + img.rawData().length);
+            });
+            offHeap.store("a", image("a", 100));
+            offHeap.store("b", image("b", 200));
+            offHeap.store("a", image("a", 50));
+            offHeap.remove("b");
+            offHeap.clear();
+            assertTrue(offHeap.getArena().getUsed() > 0);
+            gate.countDown();
+        }
+        assertEquals(List.of("a:REPLACED:100", "b:EXPLICIT:200", "a:CLEARED:50"), received);
+        assertEquals(0, offHeap.getArena().getUsed());
+
+        // Files are moved aside for the listener, so that the id can be stored again meanwhile
+        Path dir = Files.createTempDirectory("imcache-tests");
+        try {
+            DiskCache disk = new DiskCache(dir);
+            List<String> read = new CopyOnWriteArrayList<>();
+            CountDownLatch diskGate = new CountDownLatch(1);
+            try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
+                disk.setListenerExecutor(executor);
+                disk.setRemovalListener((id, file, cause) -> {
+                    try {
+                        diskGate.await();
+                        read.add(id + ":" + cause + ":" + ImageUtils.deserialize(file).rawData().length);
+                    } catch (Exception ex) {
+                        read.add(id + ":" + cause + ":" + ex);
+                    }
+                });
+                disk.store("a", image("a", 100));
+                disk.store("b", image("b", 200));
+                disk.store("a", image("a", 50));
+                disk.remove("b");
+                disk.store("b", image("b", 70));
+                disk.clear(DiskCache.ClearMode.DISK_AND_MEMORY);
+                diskGate.countDown();
+            }
+            assertEquals(List.of("a:REPLACED:100", "b:EXPLICIT:200"), read.subList(0, 2));
+            assertEquals(Set.of("a:CLEARED:50", "b:CLEARED:70"), Set.copyOf(read.subList(2, 4)));
+            try (Stream<Path> files = Files.list(dir)) {
+                assertEquals(0, files.count());
+            }
+
+            // Clearing the memory only keeps the files
+            disk.setListenerExecutor(Runnable::run);
+            disk.store("c", image("c", 30));
+            File file = disk.get("c").orElseThrow();
+            disk.clear();
+            assertEquals("c:CLEARED:30", read.getLast());
+            assertTrue(file.exists());
+        } finally {
+            deleteDir(dir);
+        }
+    }
+
+    @Test
+    void testBulkOperations() throws Exception {
+        MemoryCache memory = new MemoryCache();
+        memory.setCapacity(3);
+        Map<String, ImImage> images = new LinkedHashMap<>();
+        for (String id : List.of("a", "b", "c", "d")) {
+            images.put(id, image(id));
+        }
+        memory.storeAll(images);
+        assertEquals(3, memory.size());
+        assertEquals(List.of("b", "c", "d"), List.copyOf(memory.getAll(List.of("a", "b", "c", "d")).keySet()));
+        assertEquals(2, memory.removeAll(List.of("a", "b", "c")));
+        assertEquals(Set.of("d"), memory.asMap().keySet());
+
+        ShardedCache sharded = ShardedCache.memory(4);
+        sharded.storeAll(images);
+        assertEquals(4, sharded.size());
+        assertEquals(images.keySet(), sharded.getAll(images.keySet()).keySet());
+        assertEquals(4, sharded.removeAll(images.keySet()));
+        assertTrue(sharded.isEmpty());
+
+        Path dir = Files.createTempDirectory("imcache-tests");
+        try {
+            DiskCache disk = new DiskCache(dir.resolve("nested"));
+            disk.setCapacity(3);
+            disk.storeImages(images);
+            assertEquals(3, disk.size());
+            assertFalse(Files.exists(dir.resolve("nested").resolve("a")));
+            for (String id : List.of("b", "c", "d")) {
+                assertArrayEquals(images.get(id).rawData(), disk.getImage(id).orElseThrow().rawData());
+            }
+            try (Stream<Path> files = Files.list(dir.resolve("nested"))) {
+                assertEquals(3, files.count());
+            }
+            assertEquals(3, disk.removeAll(images.keySet()));
+            try (Stream<Path> files = Files.list(dir.resolve("nested"))) {
+                assertEquals(0, files.count());
+            }
+        } finally {
+            deleteDir(dir);
+        }
+    }
+
+    @Test
+    void testKeyIndex() {
+        assertEquals(new Key(0, 0), Key.of(""));
+        assertEquals(Key.of("https://imcache.test/a"), Key.of(new StringBuilder("https://imcache.test/a")));
+        assertNotEquals(Key.of("abcdefgh1"), Key.of("abcdefgh2"));
+        assertEquals(32, Key.of("a").toString().length());
+
+        // Requests keep their ids (which are also the file names of a DiskCache), keys are derived from them
+        ImRequest request = new ImCache().request("https://imcache.test/a");
+        String id = WithID.generateId(request.url());
+        assertEquals(id, request.id());
+        assertEquals(Key.of(id), request.key());
+        request.transform(new Resize(10, 10));
+        assertNotEquals(id, request.id());
+        assertEquals(id, request.baseId());
+        assertEquals(Key.of(id), request.baseKey());
+        assertEquals(request.key(), Key.of(request.id()));
+
+        // Caches created with a map start with its entries
+        SequencedMap<String, ImImage> initial = new LinkedHashMap<>();
+        initial.put("a", image("a"));
+        initial.put("b", image("b"));
+        MemoryCache seeded = new MemoryCache(initial) {};
+        assertEquals(List.of("a", "b"), List.copyOf(seeded.asMap().keySet()));
+        assertEquals(2L * image("a").size(), seeded.getTotalWeight());
+
+        KeyIndex<String> index = new KeyIndex<>();
+        int n = 10_000;
+        String[] values = new String[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = "v" + i;
+            assertNull(index.put(Key.of("id" + i), values[i]));
+        }
+        assertEquals(n, index.size());
+        for (int i = 0; i < n; i += 2) {
+            assertTrue(index.remove(Key.of("id" + i), values[i]));
+        }
+        assertFalse(index.remove(Key.of("id1"), "other"));
+        assertEquals(n / 2, index.size());
+        for (int i = 0; i < n; i++) {
+            assertEquals((i % 2 == 0) ? null : "v" + i, index.get(Key.of("id" + i)));
+        }
+        assertEquals("v1", index.put(Key.of("id1"), "new"));
+        assertEquals("new", index.get(Key.of("id1")));
+    }
+
+    @Test
+    void testLookupByKey() throws Exception {
+        MemoryCache memory = new MemoryCache();
+        memory.setCapacity(2);
+        fill(memory, "a", "b");
+        assertEquals(memory.get("a"), memory.get(Key.of("a")));
+        assertTrue(memory.contains(Key.of("b")));
+        assertEquals(Optional.of("b"), memory.idOf(Key.of("b")));
+        fill(memory, "c");
+        assertFalse(memory.contains(Key.of("a")));
+        assertTrue(memory.remove(Key.of("b")));
+        assertTrue(memory.getImage(Key.of("b")).isEmpty());
+        assertTrue(memory.getImage(Key.of("c")).isPresent());
+
+        ShardedCache sharded = ShardedCache.memory(8);
+        fill(sharded, "a", "b", "c");
+        for (String id : List.of("a", "b", "c")) {
+            assertSame(sharded.shard(id), sharded.shard(Key.of(id)));
+            assertTrue(sharded.get(Key.of(id)).isPresent());
+        }
+
+        // Keys are derived from the ids, which are still the file names, so they survive a reload
+        Path dir = Files.createTempDirectory("imcache-tests");
+        try {
+            DiskCache disk = new DiskCache(dir);
+            fill(disk, "a");
+            DiskCache reloaded = DiskCache.load(dir);
+            assertArrayEquals(image("a").rawData(), reloaded.getImage(Key.of("a")).orElseThrow().rawData());
+
+            TieredCache tiered = new TieredCache(reloaded);
+            assertTrue(tiered.get(Key.of("a")).isPresent());
+            assertEquals(1, tiered.getStats().diskHits());
+            assertTrue(tiered.get(Key.of("a")).isPresent());
+            assertEquals(1, tiered.getStats().memoryHits());
+        } finally {
+            deleteDir(dir);
+        }
+    }
+
+    @Test
+    void testTransformVariants() throws Exception {
+        assertEquals(new Resize(100, 100).fingerprint(), new Resize(100, 100).fingerprint());
+        assertNotEquals(new Resize(100, 100).fingerprint(), new Resize(400, 400).fingerprint());
+        assertNull(((Transform) src -> src).fingerprint());
+        assertEquals("flip", Transform.of("flip", src -> src).fingerprint());
+
+        Path file = Files.createTempFile("imcache-variants", ".png");
+        try {
+            Files.write(file, ImageUtils.toBytes("png", new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB)));
+            ImCache imCache = new ImCache().setStoreStrategy(ImCache.StoreStrategy.SAVE_ALL);
+
+            ImRequest small = imCache.request(file).transform(new Resize(2, 2));
+            ImRequest big = imCache.request(file).transform(new Resize(4, 4));
+            assertTrue(small.isVariant());
+            assertNotEquals(small.id(), big.id());
+            assertEquals(small.baseId(), big.baseId());
+
+            // The first request loads the original, the second one reuses it from the cache
+            assertEquals(RequestState.SUCCEEDED, small.execute().result().state());
+            assertEquals(RequestState.CACHE_HIT, big.execute().result().state());
+            assertEquals(3, imCache.storage().size());
+            assertEquals(1, imCache.stats().loadSuccessCount());
+
+            // Variants are served independently, without transforming again
+            ImRequest.Result result = imCache.request(file).transform(new Resize(2, 2)).execute().result();
+            assertEquals(RequestState.CACHE_HIT, result.state());
+            assertEquals(2, result.unwrapOut().asImage().getWidth());
+            assertTrue(result.src().optional().isEmpty());
+            result = imCache.request(file).transform(new Resize(4, 4)).execute().result();
+            assertEquals(4, result.unwrapOut().asImage().getWidth());
+
+            // Chains that cannot be identified are not cached as variants
+            ImRequest opaque = imCache.request(file).transform(src -> src);
+            assertFalse(opaque.isVariant());
+            assertEquals(opaque.baseId(), opaque.id());
+            imCache.setStoreStrategy(ImCache.StoreStrategy.SAVE_TRANSFORMED);
+            opaque.execute();
+            assertEquals(3, imCache.storage().size());
+
+            // The converter is part of the variant, and it must be identified too
+            ImRequest jpg = imCache.request(file).transform(new Resize(2, 2))
+                .setImageConverter("jpg", i -> ImageUtils.toBytes("jpg", i));
+            assertTrue(jpg.isVariant());
+            assertNotEquals(small.id(), jpg.id());
+            ImRequest custom = imCache.request(file).transform(new Resize(2, 2))
+                .setImageConverter(i -> ImageUtils.toBytes("jpg", i));
+            assertFalse(custom.isVariant());
+            assertNotEquals(small.id(), custom.id());
+
+            // Transforms changed between executions produce a new variant
+            AddText text = new AddText("a", AddText.Position.CENTER);
+            ImRequest mutable = imCache.request(file).transform(text);
+            String before = mutable.id();
+            text.setXOffset(1);
+            mutable.execute();
+            assertNotEquals(before, mutable.id());
+            assertTrue(imCache.storage().contains(mutable.id()));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testRefreshAfterWrite() throws Exception {
+        Path file = Files.createTempFile("imcache-refresh", ".png");
+        try {
+            Files.write(file, ImageUtils.toBytes("png", new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB)));
+            FakeClockCache storage = new FakeClockCache();
+            ImCache imCache = new ImCache()
+                .cacheConfig(() -> storage)
+                .setRefreshAfterWrite(Duration.ofMinutes(1))
+                .setRefreshBeta(0.0);
+            imCache.request(file).execute();
+            storage.advance(Duration.ofSeconds(30));
+            assertEquals(RequestState.CACHE_HIT, imCache.request(file).execute().result().state());
+            assertEquals(Duration.ofSeconds(30), storage.getAge(imCache.request(file).baseKey()).orElseThrow());
+
+            // The stale image is served immediately, the new one replaces it later
+            Files.write(file, ImageUtils.toBytes("png", new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB)));
+            storage.advance(Duration.ofMinutes(1));
+            ImRequest.Result result = imCache.request(file).execute().result();
+            assertEquals(RequestState.CACHE_HIT, result.state());
+            assertEquals(8, result.unwrapSrc().asImage().getWidth());
+            Key key = result.request().baseKey();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!storage.getAge(key).orElseThrow().isZero() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(2, imCache.stats().loadSuccessCount());
+            result = imCache.request(file).execute().result();
+            assertEquals(RequestState.CACHE_HIT, result.state());
+            assertEquals(4, result.unwrapSrc().asImage().getWidth());
+
+            // Failed refreshes are not remembered, the stale image is still served
+            imCache.negativeCacheConfig(NegativeCache::new);
+            Files.delete(file);
+            storage.advance(Duration.ofMinutes(2));
+            assertEquals(RequestState.CACHE_HIT, imCache.request(file).execute().result().state());
+            deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (imCache.stats().loadFailureCount() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, imCache.stats().loadFailureCount());
+            assertEquals(0, imCache.negatives().size());
+            assertEquals(RequestState.CACHE_HIT, imCache.request(file).execute().result().state());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testNegativeCache() {
+        assertEquals(FailureKind.TRANSIENT, NegativeCache.classify(new ImCacheException("x", new SocketTimeoutException())));
+        assertEquals(FailureKind.PERMANENT, NegativeCache.classify(new ImCacheException("x", new FileNotFoundException())));
+        assertEquals(FailureKind.PERMANENT, NegativeCache.classify(new UnsupportedMediaTypeException("x")));
+        assertNull(NegativeCache.classify(new ImCacheException("x", new InterruptedException())));
+        assertNull(NegativeCache.classify(new CancellationException()));
+
+        long[] now = {0L};
+        NegativeCache negatives = new NegativeCache(2) {
+            @Override
+            protected long now() {
+                return now[0];
+            }
+        }.setTransientTtl(Duration.ofSeconds(1)).setPermanentTtl(Duration.ofSeconds(10));
+        negatives.record("io", new IOException());
+        negatives.record("404", new FileNotFoundException());
+        now[0] = Duration.ofSeconds(2).toNanos();
+        assertTrue(negatives.get("io").isEmpty());
+        assertInstanceOf(FileNotFoundException.class, negatives.get("404").orElseThrow());
+        negatives.record("a", new IOException());
+        negatives.record("b", new IOException());
+        assertEquals(2, negatives.size());
+        assertTrue(negatives.get("404").isEmpty());
+        negatives.record("interrupted", new ImCacheException("x", new InterruptedException()));
+        assertTrue(negatives.get("interrupted").isEmpty());
+
+        // Requests fail fast with the remembered exception
+        ImCache imCache = new ImCache().negativeCacheConfig(NegativeCache::new);
+        ImRequest.Result first = imCache.request("file:///imcache/missing.png").execute().result();
+        ImRequest.Result second = imCache.request("file:///imcache/missing.png").execute().result();
+        assertTrue(first.isFailed());
+        assertTrue(second.isFailed());
+        assertSame(first.unwrapError(), second.unwrapError());
+        assertEquals(1, imCache.stats().loadFailureCount());
+        assertTrue(imCache.negatives().remove(imCache.request("file:///imcache/missing.png").baseId()));
+        imCache.request("file:///imcache/missing.png").execute();
+        assertEquals(2, imCache.stats().loadFailureCount());
+    }
+
+    @Test
+    void testSingleFlight() throws Exception {
+        Path file = Files.createTempFile("imcache-flight", ".png");
+        try {
+            Files.write(file, ImageUtils.toBytes("png", new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB)));
+            ImCache imCache = new ImCache();
+            CountDownLatch fetching = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            ThrowingConsumer<URLConnection> held = c -> {
+                fetching.countDown();
+                release.await();
+            };
+            // The load is held open until all the requests are waiting for it
+            List<CompletableFuture<ImRequest>> futures = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                int size = (i % 2 == 0) ? 2 : 4;
+                futures.add(supplyBlocked(() -> imCache.request(file)
+                    .urlConfig(held)
+                    .transform(new Resize(size, size))
+                    .execute()));
+                if (i == 0) assertTrue(fetching.await(5, TimeUnit.SECONDS));
+            }
+            release.countDown();
+            for (int i = 0; i < futures.size(); i++) {
+                ImRequest.Result result = futures.get(i).get(5, TimeUnit.SECONDS).result();
+                assertTrue(result.isSuccess());
+                assertEquals((i % 2 == 0) ? 2 : 4, result.unwrapOut().asImage().getWidth());
+            }
+            assertEquals(1, imCache.stats().loadSuccessCount());
+            assertEquals(1, imCache.stats().storeCount());
+
+            // Requests arriving after the load, but before its owner stored the image, join it too
+            imCache.clear();
+            CountDownLatch transforming = new CountDownLatch(1);
+            CountDownLatch store = new CountDownLatch(1);
+            Transform holding = src -> {
+                transforming.countDown();
+                try {
+                    store.await();
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+                return src;
+            };
+            CompletableFuture<ImRequest> owner = supplyBlocked(() -> imCache.request(file).transform(holding).execute());
+            assertTrue(transforming.await(5, TimeUnit.SECONDS));
+            ImRequest late = imCache.request(file).execute();
+            assertEquals(RequestState.SUCCEEDED, late.state());
+            store.countDown();
+            assertTrue(owner.get(5, TimeUnit.SECONDS).result().isSuccess());
+            assertEquals(2, imCache.stats().loadSuccessCount());
+            assertEquals(2, imCache.stats().storeCount());
+            assertEquals(RequestState.CACHE_HIT, imCache.request(file).execute().state());
+
+            // The load is aborted only when all the waiters give up
+            imCache.clear();
+            imCache.negativeCacheConfig(NegativeCache::new);
+            CountDownLatch block = new CountDownLatch(1);
+            CountDownLatch loading = new CountDownLatch(1);
+            CountDownLatch aborted = new CountDownLatch(1);
+            AtomicReference<Thread> loader = new AtomicReference<>();
+            ThrowingConsumer<URLConnection> config = c -> {
+                loader.set(Thread.currentThread());
+                loading.countDown();
+                try {
+                    block.await();
+                } catch (InterruptedException ex) {
+                    aborted.countDown();
+                    throw ex;
+                }
+            };
+            Future<ImRequest> first = imCache.request(file).urlConfig(config).executeAsync(null);
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            Thread second = Thread.ofVirtual().start(() -> imCache.request(file).urlConfig(config).execute());
+            awaitWaiting(second);
+            first.cancel(true);
+            assertFalse(aborted.await(100, TimeUnit.MILLISECONDS));
+            second.interrupt();
+            assertTrue(aborted.await(5, TimeUnit.SECONDS));
+
+            // An abandoned load is not a failure
+            loader.get().join(5000);
+            assertFalse(loader.get().isAlive());
+            assertEquals(0, imCache.stats().loadFailureCount());
+            assertEquals(0, imCache.negatives().size());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testComputeIfAbsent() throws Exception {
+        MemoryCache cache = new MemoryCache();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        Function<String, ImImage> slow = id -> {
+            loads.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+            return image(id);
+        };
+
+        List<CompletableFuture<ImImage>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(cache.getAsync("slow", slow));
+        }
+        // Other ids are not blocked by the pending load
+        assertEquals(image("fast").size(), cache.get("fast", CacheTests::image).size());
+        release.countDown();
+        ImImage first = futures.getFirst().get(5, TimeUnit.SECONDS);
+        for (CompletableFuture<ImImage> f : futures) {
+            assertSame(first, f.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertSame(first, cache.get("slow").orElseThrow());
+        assertTrue(cache.getAsync("slow", slow).isDone());
+        assertEquals(2, cache.stats().loadSuccessCount());
+
+        // Failures are propagated and nothing is stored
+        assertThrows(ImCacheException.class, () -> cache.get("fail", id -> {
+            throw new ImCacheException("failed");
+        }));
+        assertFalse(cache.contains("fail"));
+        assertEquals(1, cache.stats().loadFailureCount());
+
+        // Waiters can be interrupted
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch unblock = new CountDownLatch(1);
+        CompletableFuture<ImImage> owner = cache.getAsync("blocked", id -> {
+            blocked.countDown();
+            try {
+                unblock.await();
+            } catch (InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+            return image(id);
+        });
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        AtomicBoolean interrupted = new AtomicBoolean(false);
+        Thread waiter = Thread.ofVirtual().start(() -> {
+            try {
+                cache.get("blocked", CacheTests::image);
+            } catch (ImCacheException ex) {
+                interrupted.set(Thread.currentThread().isInterrupted());
+            }
+        });
+        awaitWaiting(waiter);
+        waiter.interrupt();
+        waiter.join(5000);
+        assertTrue(interrupted.get());
+        unblock.countDown();
+        assertNotNull(owner.get(5, TimeUnit.SECONDS));
+
+        // A load that completes right after the lookup is found again without recording another lookup
+        MemoryCache racy = new MemoryCache() {
+            private boolean raced = false;
+
+            @Override
+            public Optional<ImImage> getImage(String id) {
+                Optional<ImImage> img = super.getImage(id);
+                if (!raced) {
+                    raced = true;
+                    store(id, image(id));
+                }
+                return img;
+            }
+        };
+        assertNotNull(racy.get("a", id -> {
+            throw new AssertionError("The entry was already loaded");
+        }));
+        assertEquals(1, racy.stats().missCount());
+        assertEquals(0, racy.stats().hitCount());
+    }
+
+    @Test
+    void testSubmit() throws Exception {
+        Path file = Files.createTempFile("imcache-submit", ".png");
+        try (ExecutorService pool = Executors.newFixedThreadPool(2)) {
+            Files.write(file, ImageUtils.toBytes("png", new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB)));
+            AtomicInteger submitted = new AtomicInteger();
+            ImCache imCache = new ImCache().setExecutor(r -> {
+                submitted.incrementAndGet();
+                pool.execute(r);
+            });
+
+            // Composition
+            CompletableFuture<ImRequest.Result> small = imCache.request(file).transform(new Resize(2, 2)).submit();
+            CompletableFuture<ImRequest.Result> big = imCache.request(file).transform(new Resize(4, 4)).submit();
+            int width = small.thenCombine(big, (s, b) -> s.unwrapOut().asImage().getWidth() + b.unwrapOut().asImage().getWidth())
+                .get(5, TimeUnit.SECONDS);
+            assertEquals(6, width);
+            assertEquals(2, submitted.get());
+            ImRequest.Result failed = imCache.request(file.resolveSibling("missing.png")).submit(pool).get(5, TimeUnit.SECONDS);
+            assertEquals(RequestState.FAILED, failed.state());
+            assertEquals(2, submitted.get());
+
+            // Cancellation and timeouts interrupt the request
+            imCache.clear();
+            CountDownLatch block = new CountDownLatch(1);
+            CountDownLatch started = new CountDownLatch(1);
+            List<CountDownLatch> aborted = List.of(new CountDownLatch(1), new CountDownLatch(1));
+            AtomicInteger calls = new AtomicInteger();
+            ThrowingConsumer<URLConnection> config = c -> {
+                CountDownLatch latch = aborted.get(calls.getAndIncrement());
+                started.countDown();
+                try {
+                    block.await();
+                } catch (InterruptedException ex) {
+                    latch.countDown();
+                    throw ex;
+                }
+            };
+            CompletableFuture<ImRequest.Result> cancelled = imCache.request(file).urlConfig(config).submit();
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertTrue(cancelled.cancel(true));
+            assertTrue(aborted.get(0).await(5, TimeUnit.SECONDS));
+            CompletableFuture<ImRequest.Result> timed = imCache.request(file).urlConfig(config).submit()
+                .orTimeout(100, TimeUnit.MILLISECONDS);
+            assertThrows(Exception.class, () -> timed.get(5, TimeUnit.SECONDS));
+            assertTrue(aborted.get(1).await(5, TimeUnit.SECONDS));
+            assertFalse(imCache.storage().contains(imCache.request(file)));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testBatch() throws Exception {
+        Path dir = Files.createTempDirectory("imcache-batch");
+        try {
+            List<URL> urls = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                Path file = dir.resolve(i + ".png");
+                if (i != 5) Files.write(file, ImageUtils.toBytes("png", new BufferedImage(i + 1, 1, BufferedImage.TYPE_INT_RGB)));
+                urls.add(URLHandler.toURL(file.toFile()).orElseThrow());
+            }
+            ImCache imCache = new ImCache();
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger peak = new AtomicInteger();
+            List<ImRequest.Result> completed = new ArrayList<>();
+            List<ImRequest.Result> results = imCache.requestAll(urls)
+                .parallelism(3)
+                .urlConfig(c -> {
+                    peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    Thread.sleep(20);
+                    running.decrementAndGet();
+                })
+                .execute(completed::add);
+            assertEquals(20, results.size());
+            assertEquals(20, completed.size());
+            assertTrue(peak.get() <= 3);
+            for (int i = 0; i < results.size(); i++) {
+                ImRequest.Result result = results.get(i);
+                assertEquals(urls.get(i), result.request().url());
+                if (i == 5) {
+                    assertEquals(RequestState.FAILED, result.state());
+                } else {
+                    assertEquals(i + 1, result.unwrapSrc().asImage().getWidth());
+                }
+            }
+
+            // Fail fast skips the remaining requests
+            imCache.clear();
+            List<ImRequest.Result> aborted = imCache.requestAll(urls).parallelism(1).failFast(true).execute();
+            assertEquals(RequestState.FAILED, aborted.get(5).state());
+            assertEquals(RequestState.READY, aborted.getLast().state());
+
+            // Cancelling the batch interrupts its children
+            imCache.clear();
+            CountDownLatch started = new CountDownLatch(4);
+            CountDownLatch interrupted = new CountDownLatch(4);
+            CompletableFuture<List<ImRequest.Result>> future = imCache.requestAll(urls)
+                .parallelism(4)
+                .urlConfig(c -> {
+                    started.countDown();
+                    try {
+                        new CountDownLatch(1).await();
+                    } catch (InterruptedException ex) {
+                        interrupted.countDown();
+                        throw ex;
+                    }
+                })
+                .submit();
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            future.cancel(true);
+            assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+
+            // The batch also fails if interrupted after all the requests were submitted
+            imCache.clear();
+            CountDownLatch waiting = new CountDownLatch(3);
+            AtomicBoolean failed = new AtomicBoolean(false);
+            Thread batch = Thread.ofVirtual().start(() -> {
+                try {
+                    imCache.requestAll(urls.subList(0, 3))
+                        .parallelism(3)
+                        .urlConfig(c -> {
+                            waiting.countDown();
+                            new CountDownLatch(1).await();
+                        })
+                        .execute();
+                } catch (ImCacheException ex) {
+                    failed.set(Thread.currentThread().isInterrupted());
+                }
+            });
+            assertTrue(waiting.await(5, TimeUnit.SECONDS));
+            batch.interrupt();
+            batch.join(5000);
+            assertTrue(failed.get());
+        } finally {
+            deleteDir(dir);
+        }
+    }
+
+    @Test
+    void testScheduler() throws Exception {
+        Path dir = Files.createTempDirectory("imcache-scheduler");
+        try {
+            List<Path> files = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                Path file = dir.resolve(i + ".png");
+                Files.write(file, ImageUtils.toBytes("png", new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB)));
+                files.add(file);
+            }
+            ImCache imCache = new ImCache().setScheduler(new RequestScheduler(1));
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            List<Path> order = new CopyOnWriteArrayList<>();
+            Function<Integer, ImRequest> request = i -> imCache.request(files.get(i))
+                .transform(new Resize(2, 2))
+                .urlConfig(c -> {
+                    order.add(files.get(i));
+                    started.countDown();
+                    release.await();
+                });
+
+            // The first request blocks the only slot, the others are queued
+            ImRequest running = request.apply(0);
+            CompletableFuture<ImRequest.Result> first = running.schedule();
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            ImRequest low = request.apply(1).priority(Priority.LOW);
+            ImRequest normal = request.apply(2);
+            ImRequest offScreen = request.apply(3);
+            CompletableFuture<ImRequest.Result> lowF = low.schedule();
+            CompletableFuture<ImRequest.Result> normalF = normal.schedule();
+            CompletableFuture<ImRequest.Result> offScreenF = offScreen.schedule();
+            assertEquals(3, imCache.getScheduler().queued());
+            low.priority(Priority.HIGH);
+            offScreen.cancel();
+            assertEquals(RequestState.CANCELLED, offScreenF.get(1, TimeUnit.SECONDS).state());
+            assertEquals(2, imCache.getScheduler().queued());
+
+            // The running request stops at the next stage boundary
+            running.cancel();
+            release.countDown();
+            ImRequest.Result cancelled = first.get(5, TimeUnit.SECONDS);
+            assertEquals(RequestState.CANCELLED, cancelled.state());
+            assertInstanceOf(CancellationException.class, cancelled.unwrapError());
+            assertFalse(imCache.storage().contains(running));
+            assertTrue(lowF.get(5, TimeUnit.SECONDS).isSuccess());
+            assertTrue(normalF.get(5, TimeUnit.SECONDS).isSuccess());
+            assertEquals(List.of(files.get(0), files.get(1), files.get(2)), order);
+            assertEquals(0, imCache.getScheduler().running());
+        } finally {
+            deleteDir(dir);
+        }
+    }
+
+    @Test
+    void testHostLimiter() throws Exception {
+        AtomicLong time = new AtomicLong();
+        HostLimiter limiter = new HostLimiter() {
+            @Override
+            protected long now() {
+                return time.get();
+            }
+        }.setInitialLimit(2).setFailureThreshold(3).setOpenDuration(Duration.ofSeconds(10));
+        URL url = URLHandler.toURL("https://imcache.test/a.png").orElseThrow();
+        URL same = URLHandler.toURL("https://IMCACHE.test:443/b.png").orElseThrow();
+        IOException timeout = new SocketTimeoutException();
+
+        // Loads beyond the limit wait in line
+        HostLimiter.Permit p1 = limiter.acquire(url);
+        HostLimiter.Permit p2 = limiter.acquire(same);
+        assertEquals(2, limiter.getInFlight(url));
+        CompletableFuture<HostLimiter.Permit> waiting = supplyBlocked(() -> limiter.acquire(url));
+        assertFalse(waiting.isDone());
+        p1.succeeded();
+        p1.close();
+        HostLimiter.Permit p3 = waiting.get(5, TimeUnit.SECONDS);
+        p2.close();
+        p3.close();
+        assertEquals(0, limiter.getInFlight(url));
+
+        // First come, first served: new loads don't overtake the ones already waiting
+        HostLimiter fifo = new HostLimiter().setInitialLimit(1);
+        HostLimiter.Permit held = fifo.acquire(url);
+        CompletableFuture<HostLimiter.Permit> firstInLine = supplyBlocked(() -> fifo.acquire(url));
+        CompletableFuture<HostLimiter.Permit> secondInLine = supplyBlocked(() -> fifo.acquire(url));
+        held.close();
+        CompletableFuture<HostLimiter.Permit> late = supplyBlocked(() -> fifo.acquire(url));
+        HostLimiter.Permit f1 = firstInLine.get(5, TimeUnit.SECONDS);
+        assertFalse(secondInLine.isDone());
+        f1.close();
+        HostLimiter.Permit f2 = secondInLine.get(5, TimeUnit.SECONDS);
+        assertFalse(late.isDone());
+        f2.close();
+        late.get(5, TimeUnit.SECONDS).close();
+        assertEquals(0, fifo.getInFlight(url));
+
+        // Idle hosts are forgotten
+        AtomicLong idleTime = new AtomicLong();
+        HostLimiter idle = new HostLimiter() {
+            @Override
+            protected long now() {
+                return idleTime.get();
+            }
+        }.setIdleTimeout(Duration.ofMinutes(1));
+        URL other = URLHandler.toURL("https://other.imcache.test/a.png").orElseThrow();
+        idle.acquire(url).close();
+        idle.acquire(other).close();
+        assertEquals(2, idle.getHostCount());
+        idleTime.addAndGet(Duration.ofSeconds(30).toNanos());
+        idle.acquire(url).close();
+        idleTime.addAndGet(Duration.ofSeconds(40).toNanos());
+        try (HostLimiter.Permit p = idle.acquire(url)) {
+            assertEquals(1, idle.getHostCount());
+            assertEquals(1, idle.getInFlight(url));
+        }
+
+        // Additive increase when the limit is used, multiplicative decrease on failures
+        for (int i = 0; i < 8; i++) {
+            try (HostLimiter.Permit a = limiter.acquire(url); HostLimiter.Permit b = limiter.acquire(url)) {
+                a.succeeded();
+                b.succeeded();
+            }
+        }
+        int grown = limiter.getLimit(url);
+        assertTrue(grown > 2);
+        try (HostLimiter.Permit p = limiter.acquire(url)) {
+            p.failed(new ImCacheException("Failed", timeout));
+        }
+        assertEquals(grown / 2, limiter.getLimit(url));
+        try (HostLimiter.Permit p = limiter.acquire(url)) {
+            p.failed(new UnsupportedMediaTypeException("Not an image"));
+        }
+        assertEquals(grown / 2, limiter.getLimit(url));
+
+        // The circuit opens after consecutive failures, then lets a single trial through
+        for (int i = 0; i < 3; i++) {
+            try (HostLimiter.Permit p = limiter.acquire(url)) {
+                p.failed(timeout);
+            }
+        }
+        assertEquals(HostLimiter.CircuitState.OPEN, limiter.getState(url));
+        assertEquals(1, limiter.getLimit(url));
+        assertThrows(HostUnavailableException.class, () -> limiter.acquire(url));
+        assertEquals(FailureKind.TRANSIENT, NegativeCache.classify(new HostUnavailableException("Open")));
+        time.addAndGet(Duration.ofSeconds(10).toNanos());
+        HostLimiter.Permit trial = limiter.acquire(url);
+        assertEquals(HostLimiter.CircuitState.HALF_OPEN, limiter.getState(url));
+        CompletableFuture<HostLimiter.Permit> afterTrial = supplyBlocked(() -> limiter.acquire(url));
+        assertFalse(afterTrial.isDone());
+        trial.failed(timeout);
+        trial.close();
+        assertThrows(ExecutionException.class, () -> afterTrial.get(5, TimeUnit.SECONDS));
+        assertEquals(HostLimiter.CircuitState.OPEN, limiter.getState(url));
+        time.addAndGet(Duration.ofSeconds(10).toNanos());
+        try (HostLimiter.Permit p = limiter.acquire(url)) {
+            p.succeeded();
+        }
+        assertEquals(HostLimiter.CircuitState.CLOSED, limiter.getState(url));
+
+        // Local resources are not limited, and loads report their outcome
+        Path file = Files.createTempFile("imcache-host", ".png");
+        try {
+            Files.write(file, ImageUtils.toBytes("png", new BufferedImage(2, 2, BufferedImage.TYPE_INT_RGB)));
+            ImCache imCache = new ImCache().hostLimiterConfig(() -> limiter);
+            assertTrue(imCache.request(file).execute().result().isSuccess());
+            assertEquals(0, limiter.getInFlight(URLHandler.toURL(file.toFile()).orElseThrow()));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testCpuPool() throws Exception {
+        try (CpuPool pool = new CpuPool(1, 1)) {
+            // Transforms run on the pool's platform threads
+            Path file = Files.createTempFile("imcache-cpu", ".png");
+            try {
+                Files.write(file, ImageUtils.toBytes("png", new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB)));
+                List<Thread> threads = new CopyOnWriteArrayList<>();
+                ImCache imCache = new ImCache().setCpuPool(pool);
+                ImRequest.Result result = imCache.request(file)
+                    .transform(img -> {
+                        threads.add(Thread.currentThread());
+                        return img;
+                    })
+                    .submit()
+                    .get(5, TimeUnit.SECONDS);
+                assertTrue(result.isSuccess());
+                assertEquals(1, threads.size());
+                assertFalse(threads.getFirst().isVirtual());
+                assertTrue(threads.getFirst().getName().startsWith("imcache-cpu-"));
+            } finally {
+                Files.deleteIfExists(file);
+            }
+
+            // Callers block when both the thread and the queue are busy
+            CountDownLatch running = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            Supplier<Integer> blocking = () -> {
+                running.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+                return pool.call(() -> 1); // Nested calls run inline
+            };
+            CompletableFuture<Integer> first = AsyncUtils.supplyAsync(() -> pool.call(blocking));
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+            CompletableFuture<Integer> queued = supplyBlocked(() -> pool.call(() -> 2));
+            assertEquals(0, pool.getAvailable());
+            CompletableFuture<Integer> blocked = supplyBlocked(() -> pool.call(() -> 3));
+            assertFalse(blocked.isDone());
+            release.countDown();
+            assertEquals(1, (int) first.get(5, TimeUnit.SECONDS));
+            assertEquals(2, (int) queued.get(5, TimeUnit.SECONDS));
+            assertEquals(3, (int) blocked.get(5, TimeUnit.SECONDS));
+            assertEquals(2, pool.getAvailable());
+        }
+    }
+
+    @Test
+    void testHttpResolver() throws Exception {
+        byte[] png = ImageUtils.toBytes("png", new BufferedImage(3, 3, BufferedImage.TYPE_INT_RGB));
+        Set<Integer> ports = ConcurrentHashMap.newKeySet();
+        List<String> agents = new CopyOnWriteArrayList<>();
+        List<String> tokens = new CopyOnWriteArrayList<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            ports.add(exchange.getRemoteAddress().getPort());
+            agents.add(exchange.getRequestHeaders().getFirst("User-Agent"));
+            Optional.ofNullable(exchange.getRequestHeaders().getFirst("X-Token")).ifPresent(tokens::add);
+            String path = exchange.getRequestURI().getPath();
+            switch (path) {
+                case "/missing" -> exchange.sendResponseHeaders(404, -1);
+                case "/busy" -> exchange.sendResponseHeaders(503, -1);
+                case "/text" -> {
+                    byte[] text = "Not an image".getBytes();
+                    exchange.getResponseHeaders().add("Content-Type", "text/plain");
+                    exchange.sendResponseHeaders(200, text.length);
+                    exchange.getResponseBody().write(text);
+                }
+                default -> {
+                    exchange.getResponseHeaders().add("Content-Type", "image/png");
+                    exchange.sendResponseHeaders(200, png.length);
+                    exchange.getResponseBody().write(png);
+                }
+            }
+            exchange.close();
+        });
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+        try {
+            String base = "http://127.0.0.1:" + server.getAddress().getPort();
+            HttpResolver resolver = new HttpResolver();
+            ImCache imCache = new ImCache().setHttpResolver(resolver);
+
+            // Connections are reused, and requests can be configured
+            for (int i = 0; i < 3; i++) {
+                ImRequest.Result result = imCache.request(base + "/img" + i)
+                    .httpConfig(b -> b.header("X-Token", "secret"))
+                    .execute()
+                    .result();
+                assertTrue(result.isSuccess());
+                assertArrayEquals(png, result.unwrapSrc().rawData());
+            }
+            assertEquals(1, ports.size());
+            assertEquals(List.of("secret", "secret", "secret"), tokens);
+            assertTrue(agents.getFirst().startsWith("Java-http-client"));
+            assertArrayEquals(png, resolver.resolveAsync(URLHandler.toURL(base + "/async").orElseThrow(), null).get(5, TimeUnit.SECONDS));
+
+            // Failures are reported as the URLConnection would
+            ImRequest.Result missing = imCache.request(base + "/missing").execute().result();
+            assertEquals(FailureKind.PERMANENT, NegativeCache.classify(missing.unwrapError()));
+            assertInstanceOf(FileNotFoundException.class, missing.unwrapError().getCause());
+            ImRequest.Result busy = imCache.request(base + "/busy").execute().result();
+            assertEquals(FailureKind.TRANSIENT, NegativeCache.classify(busy.unwrapError()));
+            ImRequest.Result text = imCache.request(base + "/text").execute().result();
+            assertInstanceOf(UnsupportedMediaTypeException.class, text.unwrapError().getCause());
+
+            // A URLConnection config falls back to it
+            assertTrue(imCache.request(base + "/legacy").urlConfig(c -> c.setConnectTimeout(1000)).execute().result().isSuccess());
+            assertFalse(agents.getLast().startsWith("Java-http-client"));
+            imCache.setHttpResolver(null);
+            assertTrue(imCache.request(base + "/plain").execute().result().isSuccess());
+            assertFalse(agents.getLast().startsWith("Java-http-client"));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void testRevalidation() throws Exception {
+        byte[] v1 = ImageUtils.toBytes("png", new BufferedImage(3, 3, BufferedImage.TYPE_INT_RGB));
+        byte[] v2 = ImageUtils.toBytes("png", new BufferedImage(5, 5, BufferedImage.TYPE_INT_RGB));
+        AtomicReference<String> etag = new AtomicReference<>("\"v1\"");
+        AtomicInteger full = new AtomicInteger();
+        AtomicInteger notModified = new AtomicInteger();
+        AtomicInteger maxAge = new AtomicInteger(60);
+        AtomicReference<Runnable> onNotModified = new AtomicReference<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            String current = etag.get();
+            exchange.getResponseHeaders().add("ETag", current);
+            exchange.getResponseHeaders().add("Last-Modified", "Wed, 21 Oct 2015 07:28:00 GMT");
+            exchange.getResponseHeaders().add("Cache-Control", "public, max-age=" + maxAge.get());
+            if (current.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                Runnable action = onNotModified.get();
+                if (action != null) action.run();
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                byte[] body = current.contains("v1") ? v1 : v2;
+                full.incrementAndGet();
+                exchange.getResponseHeaders().add("Content-Type", "image/png");
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+            exchange.close();
+        });
+        server.start();
+        Path dir = Files.createTempDirectory("imcache-revalidation");
+        try {
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/avatar";
+            for (boolean httpClient : new boolean[]{true, false}) {
+                etag.set("\"v1\"");
+                maxAge.set(60);
+                full.set(0);
+                notModified.set(0);
+                ImCache imCache = new ImCache()
+                    .cacheConfig(() -> new DiskCache(dir))
+                    .setHttpResolver(httpClient ? new HttpResolver() : null);
+                imCache.clear();
+
+                // Validators are stored with the image
+                ImRequest first = imCache.request(url).execute();
+                assertEquals(RequestState.SUCCEEDED, first.state());
+                Validators validators = imCache.storage().getImage(first).orElseThrow().validators();
+                assertEquals(new Validators("\"v1\"", "Wed, 21 Oct 2015 07:28:00 GMT", Duration.ofSeconds(60)), validators);
+
+                // A 304 is a cheap hit that only resets the age
+                File file = ((DiskCache) imCache.storage()).get(first.id()).orElseThrow();
+                assertTrue(file.setLastModified(System.currentTimeMillis() - Duration.ofHours(1).toMillis()));
+                ImCache reloaded = new ImCache()
+                    .cacheConfig(() -> DiskCache.load(dir))
+                    .setHttpResolver(httpClient ? new HttpResolver() : null);
+                assertTrue(reloaded.storage().getAge(first.id()).orElseThrow().toMinutes() >= 59);
+                ImRequest revalidated = reloaded.request(url).overwrite(true).execute();
+                assertEquals(RequestState.CACHE_HIT, revalidated.state());
+                assertTrue(revalidated.isRevalidated());
+                assertArrayEquals(v1, revalidated.result().unwrapSrc().rawData());
+                assertTrue(reloaded.storage().getAge(first.id()).orElseThrow().toMinutes() < 1);
+                assertTrue(System.currentTimeMillis() - file.lastModified() < Duration.ofMinutes(1).toMillis());
+                assertEquals(1, full.get());
+                assertEquals(1, notModified.get());
+
+                // A 304 with new validators stores them with the original
+                maxAge.set(120);
+                ImRequest updated = reloaded.request(url).overwrite(true).execute();
+                assertEquals(RequestState.CACHE_HIT, updated.state());
+                assertTrue(updated.isRevalidated());
+                assertEquals(Duration.ofSeconds(120), reloaded.storage().getImage(first).orElseThrow().validators().maxAge());
+
+                // An original removed before the 304 is stored again rather than revalidated
+                onNotModified.set(() -> reloaded.storage().remove(first.id()));
+                ImRequest evicted = reloaded.request(url).overwrite(true).execute();
+                onNotModified.set(null);
+                assertEquals(RequestState.SUCCEEDED, evicted.state());
+                assertFalse(evicted.isRevalidated());
+                assertArrayEquals(v1, reloaded.storage().getImage(first).orElseThrow().rawData());
+                assertEquals(1, full.get());
+                assertEquals(3, notModified.get());
+
+                // Changed resources are downloaded again
+                etag.set("\"v2\"");
+                ImRequest changed = reloaded.request(url).overwrite(true).execute();
+                assertEquals(RequestState.SUCCEEDED, changed.state());
+                assertFalse(changed.isRevalidated());
+                assertArrayEquals(v2, reloaded.storage().getImage(first).orElseThrow().rawData());
+                assertEquals("\"v2\"", reloaded.storage().getImage(first).orElseThrow().validators().etag());
+                assertEquals(2, full.get());
+            }
+        } finally {
+            server.stop(0);
+            deleteDir(dir);
+        }
+
+        // Cache-Control parsing, and files of the previous format are still readable
+        assertEquals(Duration.ofSeconds(300), Validators.maxAge("private, Max-Age=300"));
+        assertEquals(Duration.ZERO, Validators.maxAge("no-cache"));
+        assertNull(Validators.maxAge("public"));
+        Path v1File = Files.createTempFile("imcache-v1", ".imc");
+        try (DataOutputStream dos = new DataOutputStream(Files.newOutputStream(v1File))) {
+            String u = "https://imcache.test/old";
+            dos.writeByte(1);
+            dos.writeInt(u.length());
+            dos.writeInt(3);
+            dos.writeBytes(u);
+            dos.write(new byte[]{1, 2, 3});
+        }
+        try {
+            ImImage old = ImageUtils.deserialize(v1File.toFile());
+            assertArrayEquals(new byte[]{1, 2, 3}, old.rawData());
+            assertNull(old.validators());
+        } finally {
+            Files.deleteIfExists(v1File);
+        }
+    }
+
+    //================================================================================
+    // Common Methods
+    //================================================================================
+    static ImImage image(String id) {
+        return image(id, 3);
+    }
+
+    static ImImage image(String id, int size) {
+        return ImImage.wrap(URLHandler.toURL("https://imcache.test/" + id).orElseThrow(), new byte[size]);
+    }
+
+    static void fill(ImgCache<?> cache, String... ids) {
+        for (String id : ids) {
+            cache.store(id, image(id));
+        }
+    }
+
+    static void deleteDir(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    /// Waits (up to 5 seconds) until the given thread is parked, e.g. on a lock or a latch.
+    static void awaitWaiting(Thread thread) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (thread.getState() != Thread.State.WAITING) {
+            if (System.nanoTime() > deadline) throw new AssertionError("Thread did not block: " + thread.getState());
+            Thread.sleep(1);
+        }
+    }
+
+    /// Runs the task on a new virtual thread and returns once that thread is parked waiting.
+    static <T> CompletableFuture<T> supplyBlocked(Supplier<T> task) throws InterruptedException {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Thread thread = Thread.ofVirtual().start(() -> {
+            try {
+                future.complete(task.get());
+            } catch (Throwable ex) {
+                future.completeExceptionally(ex);
+            }
+        });
+        awaitWaiting(thread);
+        return future;
+    }
+
+    static void runConcurrently(IntConsumer task) {
+        List<Future<?>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int t = 0; t < THREADS; t++) {
+                int idx = t;
+                futures.add(executor.submit(() -> task.accept(idx)));
+            }
+        }
+        // Propagate failures
+        for (Future<?> f : futures) {
+            assertDoesNotThrow(() -> f.get());
+        }
+    }
+
+    //================================================================================
+    // Inner Classes
+    //================================================================================
+
+    /// A [MemoryCache] whose time is advanced manually.
+    static class FakeClockCache extends MemoryCache {
+        private long now = 0;
+
+        void advance(Duration duration) {
+            now += duration.toNanos();
+        }
+
+        @Override
+        protected long now() {
+            return now;
+        }
+    }
+}